@@ -0,0 +1,79 @@
+package com.example.splitwise.service;
+
+import com.example.splitwise.model.Debitor;
+import com.example.splitwise.model.Event;
+import com.example.splitwise.model.Money;
+import com.example.splitwise.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Balance aggregation and split creation over a synthetic entity graph.
+ * {@code size} is the number of debitors and of created events; each event has {@code splits} participants.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BalanceBenchmark {
+
+    @Param({"100", "10000"})
+    public int size;
+
+    @Param({"10"})
+    public int splits;
+
+    private UserService userService;
+    private EventService eventService;
+    private User user;
+    private List<User> participants;
+
+    @Setup
+    public void setup() {
+        // the aggregation methods never touch their repositories
+        userService = new UserService(null, null, null, null, null);
+        eventService = new EventService(null, null, null, null, null, null, null);
+        user = SyntheticGraph.user(size, size, splits, 42);
+        participants = SyntheticGraph.participants(size);
+    }
+
+    @Benchmark
+    public Money computeYouOwe() {
+        return userService.computeYouOwe(user);
+    }
+
+    @Benchmark
+    public Money computeOwedToYou() {
+        return userService.computeOwedToYou(user);
+    }
+
+    @Benchmark
+    public void debitorGetRemaining(Blackhole bh) {
+        for (Debitor d : user.getDebitors()) {
+            bh.consume(d.getRemaining());
+        }
+    }
+
+    @Benchmark
+    public List<Debitor> createEqualSplits() {
+        Event e = new Event();
+        e.setTotal(new BigDecimal("100000.00"));
+        return eventService.createEqualSplits(e, participants);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.splitwise.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmailBenchmark {
+
+    private static final String NAME = "bench-user";
+    private static final String LINK =
+            "http://localhost:8080/api/auth/verify-email?token=0f8fad5b-d9cb-469f-a165-70867728950e";
+
+    private MailTemplateEngine templates;
+    private Map<String, String> values;
+
+    @Setup
+    public void setup() {
+        templates = new MailTemplateEngine();
+        values = Map.of("name", NAME, "verifyLink", LINK);
+    }
+
+    @Benchmark
+    public String builderVerificationHtml() {
+        return legacyVerificationHtml(NAME, LINK);
+    }
+
+    @Benchmark
+    public MailTemplateEngine.Rendered templateVerificationHtml() {
+        return templates.render("verification", values);
+    }
+
+    // the StringBuilder renderer EmailService used before templates were precompiled
+    static String legacyVerificationHtml(String username, String verifyLink) {
+        String name = (username != null && !username.isBlank()) ? username : "there";
+
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("<!doctype html>");
+        sb.append("<html>");
+        sb.append("<head>");
+        sb.append("<meta charset=\"UTF-8\" />");
+        sb.append("<title>Verify your SplitEase account</title>");
+        sb.append("</head>");
+        sb.append("<body style=\"margin:0;padding:0;background-color:#0b1120;")
+                .append("font-family:system-ui,-apple-system,BlinkMacSystemFont,'Segoe UI',sans-serif;\">");
+
+        sb.append("<table width=\"100%\" cellpadding=\"0\" cellspacing=\"0\" style=\"padding:40px 0;\">")
+                .append("<tr><td align=\"center\">");
+
+        sb.append("<table width=\"520\" cellpadding=\"0\" cellspacing=\"0\" ")
+                .append("style=\"background:rgba(255,255,255,0.05);")
+                .append(" border:1px solid rgba(255,255,255,0.07);")
+                .append(" border-radius:16px;padding:32px;")
+                .append(" box-shadow:0px 0px 35px rgba(0,0,0,0.55);\">");
+
+        /* ===========================
+   ✨ STYLISH TEXT HEADER (NO LOGO)
+   =========================== */
+        sb.append("<tr><td align=\"center\" style=\"padding-bottom:28px;\">")
+                .append("<div style=\"font-size:28px;font-weight:800;color:#38f8b0;")
+                .append("letter-spacing:1px;font-family:'Poppins','Inter',sans-serif;")
+                .append("text-shadow:0px 0px 12px rgba(0,255,180,0.45);\">")
+                .append("₹ SplitEase")
+                .append("</div>")
+                .append("<div style=\"color:#94a3b8;font-size:13px;margin-top:6px;\">Smart Expense Sharing</div>")
+                .append("</td></tr>");
+
+        /* Heading */
+        sb.append("<tr><td style=\"padding-bottom:8px;\">")
+                .append("<h1 style=\"margin:0;color:#e5e7eb;font-size:20px;font-weight:600;\">")
+                .append("Verify your email address")
+                .append("</h1></td></tr>");
+
+        /* Body */
+        sb.append("<tr><td style=\"padding-bottom:18px;\">")
+                .append("<p style=\"margin:0;color:#9ca3af;font-size:14px;line-height:1.6;\">")
+                .append("Hey ").append(name).append(",<br><br>")
+                .append("Welcome to SplitEase — your smart, transparent bill-splitting wallet.<br>")
+                .append("Click below to activate your account and start tracking expenses smoothly.")
+                .append("</p></td></tr>");
+
+        /* CTA BUTTON */
+        sb.append("<tr><td align=\"center\" style=\"padding:20px 0 28px;\">")
+                .append("<a href=\"").append(verifyLink).append("\" ")
+                .append("style=\"background:linear-gradient(135deg,#00E5FF,#00FF7F);")
+                .append(" padding:14px 34px;border-radius:8px;color:#001B22;")
+                .append(" font-weight:700;font-size:15px;text-decoration:none;")
+                .append(" box-shadow:0 0 22px rgba(0,255,204,0.45);\">")
+                .append("Verify Email")
+                .append("</a></td></tr>");
+
+        /* Extra link */
+        sb.append("<tr><td style=\"padding-bottom:20px;\">")
+                .append("<p style=\"margin:0;color:#6b7280;font-size:12px;line-height:1.6;\">")
+                .append("Or copy and paste this link manually:<br>")
+                .append("<a href=\"").append(verifyLink).append("\" style=\"color:#00E5FF;text-decoration:none;\">")
+                .append(verifyLink).append("</a></p></td></tr>");
+
+        sb.append("<tr><td><p style=\"margin:0;color:#475569;font-size:11px;\">")
+                .append("If this wasn't you, ignore the email safely.")
+                .append("</p></td></tr>");
+
+        sb.append("</table></td></tr></table></body></html>");
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.splitwise.service;
+
+import com.example.splitwise.model.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Money} against the {@link BigDecimal} arithmetic it replaced, on the same values:
+ * summing remaining shares over {@code size} splits and dividing a total into {@code splits}
+ * equal shares (now {@link SplitEngine#equal} on minor units).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    @Param({"100", "10000"})
+    public int size;
+
+    @Param({"10"})
+    public int splits;
+
+    private BigDecimal[] debDecimal;
+    private BigDecimal[] paidDecimal;
+    private Money[] debMoney;
+    private Money[] paidMoney;
+    private final BigDecimal totalDecimal = new BigDecimal("100000.00");
+    private final long totalMinor = Money.of(totalDecimal).minor();
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        debDecimal = new BigDecimal[size];
+        paidDecimal = new BigDecimal[size];
+        debMoney = new Money[size];
+        paidMoney = new Money[size];
+        for (int i = 0; i < size; i++) {
+            long share = 100 + random.nextLong(100_000);
+            long paid = random.nextBoolean() ? 0 : random.nextLong(share + 1);
+            debDecimal[i] = BigDecimal.valueOf(share, 2);
+            paidDecimal[i] = BigDecimal.valueOf(paid, 2);
+            debMoney[i] = Money.ofMinor(share);
+            paidMoney[i] = Money.ofMinor(paid);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal remainingSumBigDecimal() {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int i = 0; i < size; i++) sum = sum.add(debDecimal[i].subtract(paidDecimal[i]));
+        return sum;
+    }
+
+    @Benchmark
+    public Money remainingSumMoney() {
+        // summed in minor units, as UserService does
+        long sum = 0;
+        for (int i = 0; i < size; i++) sum = Math.addExact(sum, debMoney[i].minus(paidMoney[i]).minor());
+        return Money.ofMinor(sum);
+    }
+
+    @Benchmark
+    public BigDecimal[] equalSharesBigDecimal() {
+        // the BigDecimal version EventService.equalShares used before Money
+        BigDecimal share = totalDecimal.divide(BigDecimal.valueOf(splits), 2, RoundingMode.HALF_UP);
+        BigDecimal remainder = totalDecimal.subtract(share.multiply(BigDecimal.valueOf(splits)));
+        BigDecimal[] shares = new BigDecimal[splits];
+        Arrays.fill(shares, share);
+        if (remainder.compareTo(BigDecimal.ZERO) > 0) shares[0] = share.add(remainder);
+        return shares;
+    }
+
+    @Benchmark
+    public long[] equalSharesMinor() {
+        return SplitEngine.equal(totalMinor, splits);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.splitwise.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SettlementEngine} folding {@code splits} random open splits between
+ * {@code members} users and simplifying them into a transfer plan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SettlementBenchmark {
+
+    @Param({"1000", "10000"})
+    public int members;
+
+    @Param({"1000000"})
+    public int splits;
+
+    private long[] debtor;
+    private long[] creditor;
+    private long[] cents;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        debtor = new long[splits];
+        creditor = new long[splits];
+        cents = new long[splits];
+        for (int i = 0; i < splits; i++) {
+            debtor[i] = random.nextInt(members) + 1;
+            creditor[i] = random.nextInt(members) + 1;
+            cents[i] = random.nextInt(1, 100_000);
+        }
+    }
+
+    @Benchmark
+    public List<SettlementEngine.Transfer> foldAndSimplify() {
+        SettlementEngine engine = new SettlementEngine(members);
+        for (int i = 0; i < splits; i++) engine.addDebt(debtor[i], creditor[i], cents[i]);
+        return engine.simplify();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.splitwise.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SplitEngine} strategies over {@code participants} participants; itemised splits
+ * have one item per ten participants, each shared by twenty of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SplitBenchmark {
+
+    @Param({"1000", "100000"})
+    public int participants;
+
+    private final long total = 123_456_789_01L;
+    private long[] weights;
+    private long[] itemAmounts;
+    private int[] itemOffsets;
+    private int[] itemMembers;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        weights = new long[participants];
+        for (int i = 0; i < participants; i++) weights[i] = 1 + random.nextLong(100);
+
+        int items = Math.max(participants / 10, 1);
+        int perItem = Math.min(20, participants);
+        itemAmounts = new long[items];
+        itemOffsets = new int[items + 1];
+        itemMembers = new int[items * perItem];
+        long left = total;
+        for (int i = 0; i < items; i++) {
+            itemAmounts[i] = i == items - 1 ? left : total / items;
+            left -= itemAmounts[i];
+            itemOffsets[i] = i * perItem;
+            for (int j = 0; j < perItem; j++) itemMembers[i * perItem + j] = random.nextInt(participants);
+        }
+        itemOffsets[items] = items * perItem;
+    }
+
+    @Benchmark
+    public long[] equal() {
+        return SplitEngine.equal(total, participants);
+    }
+
+    @Benchmark
+    public long[] weighted() {
+        return SplitEngine.weighted(total, weights);
+    }
+
+    @Benchmark
+    public long[] itemised() {
+        return SplitEngine.itemised(total, participants, itemAmounts, itemOffsets, itemMembers);
+    }
+}
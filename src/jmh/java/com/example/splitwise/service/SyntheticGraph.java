@@ -0,0 +1,75 @@
+package com.example.splitwise.service;
+
+import com.example.splitwise.model.Debitor;
+import com.example.splitwise.model.Event;
+import com.example.splitwise.model.User;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Builds detached, in-memory entity graphs for the benchmarks. No database involved.
+ */
+final class SyntheticGraph {
+
+    private SyntheticGraph() {
+    }
+
+    /**
+     * A user who participates in {@code debitors} splits and created {@code events} events
+     * with {@code splitsPerEvent} participants each.
+     */
+    static User user(int debitors, int events, int splitsPerEvent, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        User u = new User();
+        u.setId(1L);
+        u.setEmail("bench@example.com");
+
+        List<User> others = participants(Math.max(splitsPerEvent, 1));
+        for (int i = 0; i < debitors; i++) {
+            Event foreign = new Event();
+            foreign.setId(100_000L + i);
+            foreign.setCreator(others.get(i % others.size()));
+            Debitor d = debitor(random);
+            foreign.addSplit(d);
+            u.addDebitor(d);
+        }
+
+        for (int i = 0; i < events; i++) {
+            Event e = new Event();
+            e.setId((long) i);
+            e.setTotal(BigDecimal.ZERO);
+            u.addEvent(e);
+            for (int j = 0; j < splitsPerEvent; j++) {
+                Debitor d = debitor(random);
+                d.setUser(others.get(j));
+                e.addSplit(d);
+                e.setTotal(e.getTotal().add(d.getDebAmount()));
+            }
+            e.setCancelled(random.nextInt(20) == 0);
+        }
+        return u;
+    }
+
+    static List<User> participants(int n) {
+        List<User> users = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            User p = new User();
+            p.setId(10L + i);
+            users.add(p);
+        }
+        return users;
+    }
+
+    private static Debitor debitor(SplittableRandom random) {
+        Debitor d = new Debitor();
+        long share = random.nextLong(100, 100_000);
+        long paid = random.nextInt(3) == 0 ? share : random.nextLong(0, share);
+        d.setDebAmount(BigDecimal.valueOf(share, 2));
+        d.setAmountPaid(BigDecimal.valueOf(paid, 2));
+        d.setSettled(paid == share);
+        return d;
+    }
+}
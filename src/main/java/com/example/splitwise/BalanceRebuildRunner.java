@@ -0,0 +1,59 @@
+package com.example.splitwise;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+import com.example.splitwise.service.BalanceService;
+import com.example.splitwise.service.LedgerService;
+
+/**
+ * Rebuilds the user_balances and pair_balances read models from debitors/events.
+ *
+ * Runs when the application is started with {@code --rebuild-balances}, and on the
+ * first start after the read model was introduced (table still empty). With
+ * {@code --replay-ledger} the read models are rebuilt from the ledger instead.
+ * {@code --check-balances} only diffs the read models against a full recomputation
+ * and logs what differs; it runs the full-table joins, so it is an operator task.
+ */
+@Component
+public class BalanceRebuildRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(BalanceRebuildRunner.class);
+
+    private final BalanceService balanceService;
+    private final LedgerService ledgerService;
+
+    public BalanceRebuildRunner(BalanceService balanceService, LedgerService ledgerService) {
+        this.balanceService = balanceService;
+        this.ledgerService = ledgerService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (args.containsOption("check-balances")) {
+            List<BalanceService.Mismatch> mismatches = balanceService.findMismatches(100);
+            if (mismatches.isEmpty()) {
+                log.info("Balance read models are consistent");
+            } else {
+                mismatches.forEach(m -> log.warn("Balance mismatch: {}", m));
+                log.warn("Found {} balance mismatches (listing stops at 100); run with --rebuild-balances to repair",
+                        mismatches.size());
+            }
+            return;
+        }
+        if (args.containsOption("replay-ledger")) {
+            ledgerService.replayAll();
+            return;
+        }
+        if (args.containsOption("rebuild-balances") || balanceService.isEmpty()) {
+            long start = System.currentTimeMillis();
+            int rows = balanceService.rebuildAll();
+            log.info("Rebuilt balance read models for {} users in {} ms", rows, System.currentTimeMillis() - start);
+        }
+    }
+}
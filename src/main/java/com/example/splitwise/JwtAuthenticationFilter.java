@@ -1,13 +1,18 @@
 package com.example.splitwise;
 
+import com.example.splitwise.config.ReplicaPool;
+import com.example.splitwise.service.AuthenticatedUser;
 import com.example.splitwise.service.JwtService;
+import com.example.splitwise.service.JwtTokenCache;
 import com.example.splitwise.service.MyUserDetailsService;
+import com.nimbusds.jwt.JWTClaimsSet;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.*;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -17,10 +22,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final MyUserDetailsService userDetailsService;
+    private final JwtTokenCache tokenCache;
+    // when true, principals are built from token claims only (no UserRepo hit)
+    private final boolean statelessClaims;
 
-    public JwtAuthenticationFilter(JwtService jwtService, MyUserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtService jwtService, MyUserDetailsService userDetailsService,
+                                   JwtTokenCache tokenCache, boolean statelessClaims) {
         this.jwtService = jwtService;
         this.userDetailsService = userDetailsService;
+        this.tokenCache = tokenCache;
+        this.statelessClaims = statelessClaims;
     }
 
     @Override
@@ -33,25 +44,40 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
-        final String token = authHeader.substring(7);
-        String username;
-        try {
-            username = jwtService.extractUsername(token);
-        } catch (Exception e) {
+        if (SecurityContextHolder.getContext().getAuthentication() != null) {
             chain.doFilter(req, res);
             return;
         }
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails ud = userDetailsService.loadUserByUsername(username);
-            if (jwtService.isTokenValid(token, ud.getUsername())) {
-                UsernamePasswordAuthenticationToken auth =
-                        new UsernamePasswordAuthenticationToken(ud, null, ud.getAuthorities());
-                auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(req));
-                SecurityContextHolder.getContext().setAuthentication(auth);
+        final String token = authHeader.substring(7);
+        JwtTokenCache.Entry entry = tokenCache.get(token);
+        if (entry == null) {
+            // cache miss: parse + verify once, resolve the user once, remember both until expiry
+            JWTClaimsSet claims = jwtService.verify(token);
+            if (claims == null || claims.getSubject() == null) {
+                chain.doFilter(req, res);
+                return;
             }
+            UserDetails ud;
+            try {
+                // tokens issued before identity claims existed still go through the lookup,
+                // on the primary since the result is cached until the token expires
+                ud = statelessClaims && AuthenticatedUser.hasIdentityClaims(claims)
+                        ? AuthenticatedUser.fromClaims(claims)
+                        : ReplicaPool.onPrimary(() -> userDetailsService.loadUserByUsername(claims.getSubject()));
+            } catch (UsernameNotFoundException | IllegalArgumentException e) {
+                chain.doFilter(req, res);
+                return;
+            }
+            entry = tokenCache.put(token, claims, ud);
         }
 
+        UserDetails ud = entry.userDetails();
+        UsernamePasswordAuthenticationToken auth =
+                new UsernamePasswordAuthenticationToken(ud, null, ud.getAuthorities());
+        auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(req));
+        SecurityContextHolder.getContext().setAuthentication(auth);
+
         chain.doFilter(req, res);
     }
 }
@@ -19,6 +19,7 @@ import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import com.example.splitwise.service.JwtService;
+import com.example.splitwise.service.JwtTokenCache;
 import com.example.splitwise.service.MyUserDetailsService;
 
 @Configuration
@@ -26,19 +27,25 @@ public class SecurityConfig {
 
     private final JwtService jwtService;
     private final MyUserDetailsService userDetailsService;
+    private final JwtTokenCache tokenCache;
     private final String frontendOrigin;
+    private final boolean statelessClaims;
 
     public SecurityConfig(JwtService jwtService,
             MyUserDetailsService userDetailsService,
-            @Value("${app.frontend.url:https://spliteaseapp.atul.codes}") String frontendOrigin) {
+            JwtTokenCache tokenCache,
+            @Value("${app.frontend.url:https://spliteaseapp.atul.codes}") String frontendOrigin,
+            @Value("${jwt.stateless:false}") boolean statelessClaims) {
         this.jwtService = jwtService;
         this.userDetailsService = userDetailsService;
+        this.tokenCache = tokenCache;
         this.frontendOrigin = frontendOrigin;
+        this.statelessClaims = statelessClaims;
     }
 
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
-        JwtAuthenticationFilter jwtFilter = new JwtAuthenticationFilter(jwtService, userDetailsService);
+        JwtAuthenticationFilter jwtFilter = new JwtAuthenticationFilter(jwtService, userDetailsService, tokenCache, statelessClaims);
 
         http
                 // CORS must be enabled before CSRF/authorize configuration
@@ -96,7 +103,7 @@ public class SecurityConfig {
         ));
         conf.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH"));
         conf.setAllowedHeaders(List.of("*")); // Allow all headers for Swagger compatibility
-        conf.setExposedHeaders(List.of("Authorization", "Content-Type")); // headers that frontend can read
+        conf.setExposedHeaders(List.of("Authorization", "Content-Type", "Idempotent-Replayed")); // headers that frontend can read
         conf.setAllowCredentials(true); // required for allowedOriginPatterns
         conf.setMaxAge(3600L);
         UrlBasedCorsConfigurationSource src = new UrlBasedCorsConfigurationSource();
@@ -0,0 +1,59 @@
+package com.example.splitwise.config;
+
+import com.example.splitwise.service.BalanceEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps balances in process when {@code balance.engine.enabled=true}; see {@link BalanceEngine}.
+ * Only for deployments where a single instance handles writes.
+ */
+@Configuration
+@ConditionalOnProperty(name = "balance.engine.enabled", havingValue = "true")
+public class BalanceEngineConfig {
+
+    @Bean(destroyMethod = "close")
+    public BalanceEngine balanceEngine(JdbcTemplate jdbcTemplate,
+                                       @Value("${balance.engine.dir:data/balance-engine}") Path dir,
+                                       @Value("${balance.engine.wal-size:64MB}") DataSize walSize,
+                                       @Value("${balance.engine.wal-sync:false}") boolean walSync) {
+        return BalanceEngine.open(dir, Math.toIntExact(walSize.toBytes()), walSync, new JdbcSource(jdbcTemplate));
+    }
+
+    private record JdbcSource(JdbcTemplate jdbc) implements BalanceEngine.Source {
+
+        @Override
+        public void users(UserRow row) {
+            jdbc.query("select user_id, owes, owed from user_balances", rs -> {
+                row.accept(rs.getLong(1), rs.getBigDecimal(2), rs.getBigDecimal(3));
+            });
+        }
+
+        @Override
+        public void pairs(PairRow row) {
+            jdbc.query("select debtor_id, creditor_id, amount from pair_balances", rs -> {
+                row.accept(rs.getLong(1), rs.getLong(2), rs.getBigDecimal(3));
+            });
+        }
+
+        @Override
+        public Set<Long> committed(List<Long> seqs) {
+            return new HashSet<>(jdbc.queryForList("select seq from ledger_events where seq = any(?)", Long.class,
+                    (Object) seqs.toArray(new Long[0])));
+        }
+
+        @Override
+        public long ledgerHead() {
+            return jdbc.queryForObject("select coalesce(max(seq), 0) from ledger_events", Long.class);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.splitwise.config;
+
+import com.example.splitwise.service.AuthenticatedUser;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Pins requests to the primary where a replica could serve stale data: every
+ * writing request (its own reads must see its writes), and every request of a
+ * caller who wrote within the last {@code window}.
+ *
+ * Runs after the security chain so the caller is known.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private final Cache<Long, Boolean> recentWriters;
+
+    public ReadYourWritesFilter(Duration window) {
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(window)
+                .maximumSize(100_000)
+                .build();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Long userId = currentUserId();
+        boolean write = !SAFE_METHODS.contains(request.getMethod());
+        ReplicaPool.pin(write || (userId != null && recentWriters.getIfPresent(userId) != null));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReplicaPool.pin(false);
+            if (write && userId != null) recentWriters.put(userId, Boolean.TRUE);
+        }
+    }
+
+    private static Long currentUserId() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth != null && auth.getPrincipal() instanceof AuthenticatedUser u ? u.getId() : null;
+    }
+}
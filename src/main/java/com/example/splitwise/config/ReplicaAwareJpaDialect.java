@@ -0,0 +1,58 @@
+package com.example.splitwise.config;
+
+import jakarta.persistence.CacheStoreMode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+
+import java.sql.SQLException;
+
+/**
+ * Keeps rows read from a replica out of the second-level and query caches.
+ *
+ * A cached entity outlives the replica lag it was read with, so a lagging replica
+ * could put a row back into the cache right after a write evicted it. Read-only
+ * transactions that are not pinned to the primary therefore never add to the caches:
+ * {@code find} still reads cached entities, while queries and lazy loads skip the
+ * caches entirely ({@link CacheMode#IGNORE}; Hibernate fills the query cache on a
+ * miss whenever it may read from it). Read-write and pinned transactions read from the
+ * primary and fill the caches as before.
+ */
+public class ReplicaAwareJpaDialect extends HibernateJpaDialect {
+
+    // find() resolves its cache mode from this session property, everything else from Session#getCacheMode
+    private static final String STORE_MODE = "jakarta.persistence.cache.storeMode";
+
+    private record ReplicaRead(Object delegate, Session session, Object previousStoreMode, CacheMode previousMode) {
+    }
+
+    @Override
+    public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+            throws PersistenceException, SQLException, TransactionException {
+        Object data = super.beginTransaction(entityManager, definition);
+        if (!definition.isReadOnly() || ReplicaPool.isPinned()) return data;
+        Session session = entityManager.unwrap(Session.class);
+        ReplicaRead read = new ReplicaRead(data, session, session.getProperties().get(STORE_MODE),
+                session.getCacheMode());
+        session.setProperty(STORE_MODE, CacheStoreMode.BYPASS);
+        session.setCacheMode(CacheMode.IGNORE);
+        return read;
+    }
+
+    @Override
+    public void cleanupTransaction(Object transactionData) {
+        if (transactionData instanceof ReplicaRead r) {
+            // the session can outlive the transaction (open-in-view)
+            r.session().setProperty(STORE_MODE,
+                    r.previousStoreMode() != null ? r.previousStoreMode() : CacheStoreMode.USE);
+            r.session().setCacheMode(r.previousMode());
+            super.cleanupTransaction(r.delegate());
+        } else {
+            super.cleanupTransaction(transactionData);
+        }
+    }
+}
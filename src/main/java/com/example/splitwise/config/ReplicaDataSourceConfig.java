@@ -0,0 +1,103 @@
+package com.example.splitwise.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.flyway.autoconfigure.FlywayDataSource;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends read-only transactions to replicas when {@code app.datasource.replica.urls} is set.
+ *
+ * The application datasource becomes a {@link LazyConnectionDataSourceProxy} over the
+ * primary: a connection is only fetched at the first statement, once the transaction
+ * has marked it read-only, and read-only connections come from the {@link ReplicaPool}.
+ * Flyway keeps migrating the primary directly. Rows read from a replica are kept out
+ * of the Hibernate caches ({@link ReplicaAwareJpaDialect}).
+ */
+@Configuration
+@ConditionalOnExpression("!'${app.datasource.replica.urls:}'.isBlank()")
+public class ReplicaDataSourceConfig {
+
+    // zero unless the replica is replaying WAL it has received but not yet applied
+    static final String POSTGRES_LAG_QUERY = """
+            select case
+                when not pg_is_in_recovery() then 0
+                when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0
+                else coalesce((extract(epoch from now() - pg_last_xact_replay_timestamp()) * 1000)::bigint, 0)
+            end
+            """;
+
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaPool replicaPool(HikariDataSource primaryDataSource, DataSourceProperties properties,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${app.datasource.replica.urls}") List<String> urls,
+                                   @Value("${app.datasource.replica.pool-size:10}") int poolSize,
+                                   @Value("${app.datasource.replica.max-lag-ms:5000}") long maxLagMs,
+                                   @Value("${app.datasource.replica.check-interval-ms:2000}") long checkIntervalMs,
+                                   @Value("${app.datasource.replica.lag-query:}") String lagQuery) {
+        List<DataSource> replicas = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource ds = new HikariDataSource();
+            ds.setPoolName("replica-" + i);
+            ds.setJdbcUrl(urls.get(i).trim());
+            ds.setUsername(properties.determineUsername());
+            ds.setPassword(properties.determinePassword());
+            ds.setMaximumPoolSize(poolSize);
+            ds.setReadOnly(true);
+            // an unreachable replica must not block startup; the health check takes it out
+            ds.setInitializationFailTimeout(-1);
+            replicas.add(ds);
+        }
+        ReplicaPool pool = new ReplicaPool(primaryDataSource, replicas,
+                lagQuery.isBlank() ? POSTGRES_LAG_QUERY : lagQuery, Duration.ofMillis(maxLagMs), meterRegistry);
+        pool.start(Duration.ofMillis(checkIntervalMs));
+        return pool;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaPool replicaPool) {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(primaryDataSource);
+        proxy.setReadOnlyDataSource(replicaPool);
+        return proxy;
+    }
+
+    // set before the factory initialises, so the vendor adapter's default dialect is not used
+    @Bean
+    public static BeanPostProcessor replicaAwareJpaDialect() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof AbstractEntityManagerFactoryBean emf) emf.setJpaDialect(new ReplicaAwareJpaDialect());
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(
+            @Value("${app.datasource.replica.read-your-writes-ms:5000}") long windowMs) {
+        return new ReadYourWritesFilter(Duration.ofMillis(windowMs));
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.splitwise.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Read-only side of the datasource: hands out connections from a healthy replica,
+ * round-robin, and from the primary when no replica qualifies or the current
+ * request is pinned to the primary.
+ *
+ * A background check runs the lag query on every replica; a replica that fails it,
+ * or lags more than {@code maxLag}, is skipped until a later check passes.
+ */
+public class ReplicaPool extends AbstractDataSource implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaPool.class);
+
+    // set for the duration of a request that must see its own (or the caller's recent) writes
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    static final class Replica {
+        final String name;
+        final DataSource dataSource;
+        volatile boolean healthy;
+        volatile long lagMs = -1;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final String lagQuery;
+    private final long maxLagMs;
+    private final AtomicInteger next = new AtomicInteger();
+    private ScheduledExecutorService checker;
+
+    public ReplicaPool(DataSource primary, List<DataSource> replicas, String lagQuery, Duration maxLag,
+                       MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.lagQuery = lagQuery;
+        this.maxLagMs = maxLag.toMillis();
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica r = new Replica("replica-" + i, replicas.get(i));
+            this.replicas.add(r);
+            Gauge.builder("db.replica.lag", r, x -> x.lagMs).baseUnit("milliseconds")
+                    .tag("replica", r.name).register(meterRegistry);
+            Gauge.builder("db.replica.healthy", r, x -> x.healthy ? 1 : 0)
+                    .tag("replica", r.name).register(meterRegistry);
+        }
+    }
+
+    /**
+     * Route reads of the current thread to the primary (or stop doing so).
+     */
+    public static void pin(boolean pinned) {
+        if (pinned) PINNED.set(Boolean.TRUE);
+        else PINNED.remove();
+    }
+
+    public static boolean isPinned() {
+        return PINNED.get() != null;
+    }
+
+    /**
+     * Run {@code read} against the primary. For loads whose result is cached beyond the
+     * current request, where a lagging replica's row would be kept past the lag.
+     * Only takes effect if {@code read} opens its own connection.
+     */
+    public static <T> T onPrimary(Supplier<T> read) {
+        if (isPinned()) return read.get();
+        pin(true);
+        try {
+            return read.get();
+        } finally {
+            pin(false);
+        }
+    }
+
+    /**
+     * Run the first check synchronously, then every {@code interval} in the background.
+     */
+    public void start(Duration interval) {
+        checkNow();
+        checker = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("replica-health").daemon().factory());
+        checker.scheduleWithFixedDelay(this::checkNow, interval.toMillis(), interval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Probe every replica once and update its health and lag.
+     */
+    public void checkNow() {
+        for (Replica r : replicas) {
+            boolean wasHealthy = r.healthy;
+            try (Connection c = r.dataSource.getConnection();
+                 Statement st = c.createStatement()) {
+                st.setQueryTimeout(2);
+                try (ResultSet rs = st.executeQuery(lagQuery)) {
+                    r.lagMs = rs.next() ? rs.getLong(1) : 0;
+                }
+                r.healthy = r.lagMs <= maxLagMs;
+            } catch (SQLException | RuntimeException e) {
+                r.lagMs = -1;
+                r.healthy = false;
+            }
+            if (wasHealthy != r.healthy) {
+                log.warn("{} is now {} (lag {} ms)", r.name, r.healthy ? "in rotation" : "out of rotation", r.lagMs);
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!isPinned()) {
+            int n = replicas.size();
+            int start = Math.floorMod(next.getAndIncrement(), Math.max(n, 1));
+            for (int i = 0; i < n; i++) {
+                Replica r = replicas.get((start + i) % n);
+                if (!r.healthy) continue;
+                try {
+                    return r.dataSource.getConnection();
+                } catch (SQLException e) {
+                    // take it out until the next check brings it back
+                    r.healthy = false;
+                    log.warn("{} refused a connection, falling back: {}", r.name, e.getMessage());
+                }
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        // replicas are pooled with the configured credentials; anyone else talks to the primary
+        return primary.getConnection(username, password);
+    }
+
+    @Override
+    public void close() {
+        if (checker != null) checker.shutdownNow();
+        for (Replica r : replicas) {
+            if (r.dataSource instanceof AutoCloseable c) {
+                try {
+                    c.close();
+                } catch (Exception e) {
+                    log.debug("closing {} failed", r.name, e);
+                }
+            }
+        }
+    }
+}
@@ -4,17 +4,23 @@ import java.util.Map;
 
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.splitwise.model.User;
 import com.example.splitwise.repo.UserRepo;
+import com.example.splitwise.service.AuthenticatedUser;
 import com.example.splitwise.service.JwtService;
+import com.example.splitwise.service.UserService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -32,13 +38,15 @@ public class AuthController {
     private final UserRepo userRepo;
     private final PasswordEncoder encoder;
     private final JwtService jwt;
+    private final UserService userService;
 
     public AuthController(AuthenticationManager authManager, UserRepo userRepo,
-            PasswordEncoder encoder, JwtService jwt) {
+            PasswordEncoder encoder, JwtService jwt, UserService userService) {
         this.authManager = authManager;
         this.userRepo = userRepo;
         this.encoder = encoder;
         this.jwt = jwt;
+        this.userService = userService;
     }
 
     @Operation(summary = "Register new user", description = "Create a new user account and receive JWT token")
@@ -71,10 +79,11 @@ public class AuthController {
         u.setEmail(email);
         u.setUsername(username);
         u.setPassword(encoder.encode(password));
-        u.setEmailVerified(false);
-        userRepo.save(u);
+        // verification mail is queued in the outbox; signup no longer waits on SMTP
+        userService.registerUser(u);
 
-        String token = jwt.generateToken(u.getEmail());
+        String token = jwt.generateToken(new AuthenticatedUser(u.getId(), u.getEmail(), u.getUsername(), null,
+                AuthorityUtils.createAuthorityList("USER")));
         return ResponseEntity.ok(Map.of("token", token));
     }
 
@@ -100,18 +109,38 @@ public class AuthController {
             return ResponseEntity.badRequest().body(Map.of("error", "email_and_password_required"));
         }
 
+        Authentication authentication;
         try {
-            authManager.authenticate(
+            authentication = authManager.authenticate(
                     new UsernamePasswordAuthenticationToken(email, password)
             );
         } catch (BadCredentialsException ex) {
             return ResponseEntity.status(401).body(Map.of("error", "invalid_credentials"));
         }
 
-        String token = jwt.generateToken(email);
+        // principal comes from MyUserDetailsService, so the id is already resolved
+        String token = jwt.generateToken((AuthenticatedUser) authentication.getPrincipal());
         return ResponseEntity.ok(Map.of("token", token));
     }
 
+    @Operation(summary = "Verify email", description = "Confirm the email address using the link from the verification mail")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Email verified"),
+        @ApiResponse(responseCode = "400", description = "Invalid token"),
+        @ApiResponse(responseCode = "410", description = "Token expired")
+    })
+    @GetMapping("/verify-email")
+    public ResponseEntity<?> verifyEmail(@RequestParam String token) {
+        try {
+            User u = userService.verifyEmail(token);
+            return ResponseEntity.ok(Map.of("status", "email_verified", "email", u.getEmail()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(410).body(Map.of("error", e.getMessage()));
+        }
+    }
+
     // DTOs for request bodies
     @Schema(description = "User signup request")
     public static class SignupRequest {
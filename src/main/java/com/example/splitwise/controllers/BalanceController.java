@@ -0,0 +1,66 @@
+package com.example.splitwise.controllers;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.splitwise.model.UserBalance;
+import com.example.splitwise.service.AuthenticatedUser;
+import com.example.splitwise.service.BalanceService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+@RestController
+@RequestMapping("/api/balances")
+@Tag(name = "Balances", description = "Pairwise balance endpoints")
+@SecurityRequirement(name = "bearerAuth")
+public class BalanceController {
+
+    private final BalanceService balanceService;
+
+    public BalanceController(BalanceService balanceService) {
+        this.balanceService = balanceService;
+    }
+
+    @Operation(summary = "My totals", description = "What the caller owes, is owed and the net, across all events")
+    @GetMapping("/me")
+    public ResponseEntity<?> myTotals(@AuthenticationPrincipal AuthenticatedUser principal) {
+        if (principal == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "not_authenticated"));
+        }
+
+        UserBalance b = balanceService.getBalance(principal.getId());
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("userId", principal.getId());
+        resp.put("youOwe", b.getOwes());
+        resp.put("owedToYou", b.getOwed());
+        resp.put("net", b.getNet());
+        return ResponseEntity.ok(resp);
+    }
+
+    @Operation(summary = "Balance with user", description = "What the caller and the given user owe each other across all events")
+    @GetMapping("/with/{userId}")
+    public ResponseEntity<?> balanceWith(@AuthenticationPrincipal AuthenticatedUser principal,
+            @PathVariable Long userId) {
+        if (principal == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "not_authenticated"));
+        }
+
+        BigDecimal[] pair = balanceService.getPairBalance(principal.getId(), userId);
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("userId", userId);
+        resp.put("youOwe", pair[0]);
+        resp.put("owesYou", pair[1]);
+        resp.put("net", pair[1].subtract(pair[0]));
+        return ResponseEntity.ok(resp);
+    }
+}
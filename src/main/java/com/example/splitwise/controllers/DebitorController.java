@@ -1,17 +1,21 @@
 package com.example.splitwise.controllers;
 
+import java.util.HashMap;
 import java.util.Map;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.splitwise.model.Debitor;
+import com.example.splitwise.service.CursorPage;
 import com.example.splitwise.service.DebitorService;
 
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -29,6 +33,31 @@ public class DebitorController {
         this.debitorService = debitorService;
     }
 
+    // List all debitors, keyset-paginated
+    @GetMapping("/debitors")
+    public ResponseEntity<?> listDebitors(@RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after) {
+        CursorPage<Debitor> debitors;
+        try {
+            debitors = debitorService.getAllDebitors(limit, after);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+        var page = debitors.map(d -> {
+            Map<String, Object> m = new HashMap<>();
+            m.put("debitorId", d.getId());
+            m.put("eventId", d.getEvent() != null ? d.getEvent().getId() : null);
+            m.put("userId", d.getUser() != null ? d.getUser().getId() : null);
+            m.put("debAmount", d.getDebAmount());
+            m.put("paid", d.getAmountPaid());
+            m.put("remaining", d.getRemaining());
+            m.put("included", d.isIncluded());
+            m.put("settled", d.isSettled());
+            return m;
+        });
+        return ResponseEntity.ok(page);
+    }
+
     // Canonical path: POST /api/events/{eventId}/debitors
     @PostMapping("/events/{eventId}/debitors")
     public ResponseEntity<?> addDebitorToEventByEventPath(
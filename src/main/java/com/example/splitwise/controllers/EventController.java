@@ -1,26 +1,44 @@
 package com.example.splitwise.controllers;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.splitwise.model.Event;
+import com.example.splitwise.model.Money;
 import com.example.splitwise.model.User;
+import com.example.splitwise.service.CursorPage;
+import com.example.splitwise.service.AuthenticatedUser;
 import com.example.splitwise.service.EventService;
+import com.example.splitwise.service.ExpenseImportService;
+import com.example.splitwise.service.IdempotencyService;
+import com.example.splitwise.service.SplitStrategy;
 import com.example.splitwise.service.UserService;
 
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -34,10 +52,15 @@ public class EventController {
 
     private final EventService eventService;
     private final UserService userService;
+    private final ExpenseImportService expenseImportService;
+    private final IdempotencyService idempotencyService;
 
-    public EventController(EventService eventService, UserService userService) {
+    public EventController(EventService eventService, UserService userService,
+                           ExpenseImportService expenseImportService, IdempotencyService idempotencyService) {
         this.eventService = eventService;
         this.userService = userService;
+        this.expenseImportService = expenseImportService;
+        this.idempotencyService = idempotencyService;
     }
 
     // DTOs (simple, nested)
@@ -45,7 +68,18 @@ public class EventController {
 
         public Long userId;
         public boolean included = true;
-        // optional custom share omitted for simplicity
+        // per-strategy input: PERCENTAGE (e.g. 33.33), SHARES (weight), EXACT (amount)
+        public BigDecimal percent;
+        public Long shares;
+        public BigDecimal amount;
+    }
+
+    // ITEMISED: one item split equally among the given (included) participants
+    public static class ItemDto {
+
+        public String name;
+        public BigDecimal amount;
+        public List<Long> userIds = new ArrayList<>();
     }
 
     public static class CreateEventDto {
@@ -53,14 +87,24 @@ public class EventController {
         public String title;
         public Long creatorId;
         public BigDecimal total;
+        public SplitStrategy.Type split = SplitStrategy.Type.EQUAL;
         public List<ParticipantDto> participants = new ArrayList<>();
+        public List<ItemDto> items = new ArrayList<>();
     }
 
-    // Create event with participants (equal split among included)
+    // Create event with participants, split among the included ones by dto.split (equal by
+    // default); retries with the same Idempotency-Key get the first response back instead of a second event
     @PostMapping
-    public ResponseEntity<Event> createEvent(@RequestBody CreateEventDto dto) {
+    public ResponseEntity<?> createEvent(@RequestBody CreateEventDto dto,
+                                         @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                         @AuthenticationPrincipal AuthenticatedUser principal) {
+        String scope = "events.create:" + (principal != null ? principal.getId() : "anonymous");
+        return idempotencyService.execute(idempotencyKey, scope, dto, () -> createEvent(dto));
+    }
+
+    private ResponseEntity<?> createEvent(CreateEventDto dto) {
         // validate creator
-        User creator = userService.getUser(dto.creatorId).orElse(null);
+        User creator = dto.creatorId == null ? null : userService.findById(dto.creatorId).orElse(null);
         if (creator == null) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
@@ -73,22 +117,88 @@ public class EventController {
         e.setCreator(creator);
         e.setTotal(dto.total);
 
-        // build participant users list (only included)
-        List<User> includedUsers = dto.participants.stream()
-                .filter(p -> p.included)
-                .map(p -> userService.getUser(p.userId).orElse(null))
-                .collect(Collectors.toList());
-
-        if (includedUsers.isEmpty()) {
+        // build participant list (only included, first entry per user), resolved with a single query
+        Map<Long, ParticipantDto> included = new LinkedHashMap<>();
+        for (ParticipantDto p : dto.participants) {
+            if (p.included && p.userId != null) included.putIfAbsent(p.userId, p);
+        }
+        List<Long> includedIds = new ArrayList<>(included.keySet());
+        Map<Long, User> found = userService.findAllById(includedIds).stream()
+                .collect(Collectors.toMap(User::getId, u -> u));
+        if (includedIds.isEmpty() || found.size() != includedIds.size()) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
         }
+        List<User> includedUsers = includedIds.stream().map(found::get).toList();
+
+        // shares are computed by the strategy; the splits are only built when persisting
+        try {
+            SplitStrategy strategy = splitStrategy(dto, new ArrayList<>(included.values()));
+            Event saved = eventService.createEvent(e, includedUsers, strategy);
+            return ResponseEntity.status(HttpStatus.CREATED).body(saved);
+        } catch (IllegalArgumentException | ArithmeticException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+    }
+
+    // per-participant inputs of the chosen strategy, as primitive arrays in participant order
+    private static SplitStrategy splitStrategy(CreateEventDto dto, List<ParticipantDto> participants) {
+        int n = participants.size();
+        long[] values = new long[n];
+        switch (dto.split == null ? SplitStrategy.Type.EQUAL : dto.split) {
+            case EQUAL:
+                return SplitStrategy.equal();
+            case PERCENTAGE:
+                for (int i = 0; i < n; i++) {
+                    BigDecimal percent = required(participants.get(i).percent, "Every participant needs a percent");
+                    if (percent.stripTrailingZeros().scale() > 2) {
+                        throw new IllegalArgumentException("Percentages can have at most 2 decimals");
+                    }
+                    values[i] = percent.movePointRight(2).longValueExact();
+                }
+                return SplitStrategy.percentages(values);
+            case SHARES:
+                for (int i = 0; i < n; i++) values[i] = required(participants.get(i).shares, "Every participant needs shares");
+                return SplitStrategy.shares(values);
+            case EXACT:
+                for (int i = 0; i < n; i++) {
+                    values[i] = Money.of(required(participants.get(i).amount, "Every participant needs an amount")).minor();
+                }
+                return SplitStrategy.exact(values);
+            case ITEMISED:
+                return itemised(dto.items, participants);
+            default:
+                throw new IllegalArgumentException("Unsupported split: " + dto.split);
+        }
+    }
 
-        // create equal splits and attach to event
-        eventService.createEqualSplits(e, includedUsers);
+    private static SplitStrategy itemised(List<ItemDto> items, List<ParticipantDto> participants) {
+        if (items == null || items.isEmpty()) throw new IllegalArgumentException("ITEMISED split needs items");
+        Map<Long, Integer> index = new HashMap<>();
+        for (int i = 0; i < participants.size(); i++) index.put(participants.get(i).userId, i);
+
+        long[] amounts = new long[items.size()];
+        int[] offsets = new int[items.size() + 1];
+        int[] members = new int[items.stream().mapToInt(item -> item.userIds == null ? 0 : item.userIds.size()).sum()];
+        int m = 0;
+        for (int i = 0; i < items.size(); i++) {
+            ItemDto item = items.get(i);
+            amounts[i] = Money.of(required(item.amount, "Every item needs an amount")).minor();
+            offsets[i] = m;
+            if (item.userIds != null) {
+                for (Long userId : new LinkedHashSet<>(item.userIds)) {
+                    Integer p = index.get(userId);
+                    if (p == null) throw new IllegalArgumentException("Item user is not an included participant: " + userId);
+                    members[m++] = p;
+                }
+            }
+        }
+        offsets[items.size()] = m;
+        return SplitStrategy.itemised(amounts, offsets, members);
+    }
 
-        // persist event + splits
-        Event saved = eventService.createEvent(e, e.getSplits());
-        return ResponseEntity.status(HttpStatus.CREATED).body(saved);
+    private static <T> T required(T value, String message) {
+        if (value == null) throw new IllegalArgumentException(message);
+        return value;
     }
 
     // Get event by id
@@ -189,10 +299,19 @@ public class EventController {
 //        }
 //    }
 //
-    // List events
+    // List events, keyset-paginated; userId narrows to events the user takes part in
     @GetMapping
-    public ResponseEntity<List<Event>> getAllEvents() {
-        return ResponseEntity.ok(eventService.getAllEvents());
+    public ResponseEntity<?> getEvents(@RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Long userId) {
+        try {
+            CursorPage<Event> page = userId != null
+                    ? eventService.getEventsForUser(userId, limit, after)
+                    : eventService.getEvents(limit, after);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
     }
 
     // Delete event (hard delete)
@@ -217,6 +336,40 @@ public class EventController {
         }
     }
 
+    // Email every participant who still owes on the event; creator only, once per cooldown
+    @PostMapping("/{id}/remind")
+    public ResponseEntity<?> remind(@PathVariable Long id, @AuthenticationPrincipal AuthenticatedUser principal) {
+        try {
+            int queued = eventService.sendReminders(id, principal.getId());
+            return ResponseEntity.ok(Map.of("eventId", id, "queued", queued));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", ex.getMessage()));
+        } catch (AccessDeniedException ex) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", ex.getMessage()));
+        } catch (EventService.ReminderCooldownException ex) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfter().toSeconds()))
+                    .body(Map.of("error", ex.getMessage()));
+        } catch (IllegalStateException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", ex.getMessage()));
+        }
+    }
+
+    // Bulk import: one equally split event per CSV/NDJSON row, streamed from the request body, created by the caller
+    @PostMapping("/import")
+    public ResponseEntity<?> importExpenses(InputStream body, @AuthenticationPrincipal AuthenticatedUser principal,
+                                            @RequestHeader(value = "Content-Type", required = false) String contentType,
+                                            @RequestParam(required = false) String format,
+                                            @RequestParam(required = false) Integer chunkSize) throws IOException {
+        try {
+            ExpenseImportService.Format f = ExpenseImportService.Format.of(format, contentType);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8), 64 * 1024);
+            return ResponseEntity.ok(expenseImportService.importExpenses(reader, f, chunkSize, principal.getId()));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+    }
+
     @GetMapping("/{eventId}/debitors")
     public ResponseEntity<?> getDebitorsByEvent(@PathVariable Long eventId) {
         Event e;
@@ -4,13 +4,18 @@ import java.math.BigDecimal;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.example.splitwise.model.Transaction;
+import com.example.splitwise.service.AuthenticatedUser;
+import com.example.splitwise.service.IdempotencyService;
+import com.example.splitwise.service.PaymentReceipt;
 import com.example.splitwise.service.PaymentService;
+import com.example.splitwise.service.SettleUpReceipt;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -25,9 +30,11 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 public class PaymentController {
 
     private final PaymentService paymentService;
+    private final IdempotencyService idempotencyService;
 
-    public PaymentController(PaymentService paymentService) {
+    public PaymentController(PaymentService paymentService, IdempotencyService idempotencyService) {
         this.paymentService = paymentService;
+        this.idempotencyService = idempotencyService;
     }
 
     public static class PayDto {
@@ -37,38 +44,105 @@ public class PaymentController {
         public BigDecimal amount;
     }
 
-    @Operation(summary = "Make payment", description = "Make a payment towards a split (partial or full settlement)")
+    public static class SettleDto {
+
+        // optional; must be the caller when given
+        public Long payerUserId;
+        public Long counterpartyUserId;
+        public BigDecimal amount;
+    }
+
+    @Operation(summary = "Make payment", description = "Make a payment towards a split (partial or full settlement). "
+            + "Send an Idempotency-Key header to make retries safe: a repeated key returns the first response.")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "201", description = "Payment successful"),
-        @ApiResponse(responseCode = "400", description = "Invalid payment data or debitor not found"),
-        @ApiResponse(responseCode = "500", description = "Payment failed (optimistic lock or server error)")
+        @ApiResponse(responseCode = "400", description = "Invalid payment data, debitor not found or amount exceeds remaining share"),
+        @ApiResponse(responseCode = "409", description = "Split already settled, has no receiver, or the same key is still being processed"),
+        @ApiResponse(responseCode = "422", description = "Idempotency-Key was already used for a different request")
     })
     @PostMapping("/pay")
-    public ResponseEntity<?> pay(@RequestBody PayDto dto) {
+    public ResponseEntity<?> pay(@RequestBody PayDto dto,
+                                 @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                 @AuthenticationPrincipal AuthenticatedUser principal) {
         if (dto.debitorId == null || dto.payerUserId == null || dto.amount == null) {
             return ResponseEntity.badRequest().build();
         }
+        String scope = "payments.pay:" + (principal != null ? principal.getId() : "anonymous");
+        return idempotencyService.execute(idempotencyKey, scope, dto, () -> pay(dto));
+    }
+
+    @Operation(summary = "Settle up with a user", description = "Pay an amount towards everything the payer owes the "
+            + "counterparty. The amount is allocated over the payer's open splits in events created by the counterparty, "
+            + "oldest event first, and recorded as one transaction per event. Honours Idempotency-Key like /pay.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "201", description = "Settlement applied"),
+        @ApiResponse(responseCode = "400", description = "Invalid data, unknown user or amount exceeds the open balance"),
+        @ApiResponse(responseCode = "403", description = "payerUserId is not the caller"),
+        @ApiResponse(responseCode = "409", description = "Nothing is owed to the counterparty, or the same key is still being processed"),
+        @ApiResponse(responseCode = "422", description = "Idempotency-Key was already used for a different request")
+    })
+    @PostMapping("/settle")
+    public ResponseEntity<?> settle(@RequestBody SettleDto dto,
+                                    @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                    @AuthenticationPrincipal AuthenticatedUser principal) {
+        if (dto.counterpartyUserId == null || dto.amount == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        // the caller can only settle their own debts
+        if (dto.payerUserId == null) {
+            dto.payerUserId = principal.getId();
+        } else if (!dto.payerUserId.equals(principal.getId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(java.util.Map.of("error", "You can only settle your own debts"));
+        }
+        String scope = "payments.settle:" + principal.getId();
+        return idempotencyService.execute(idempotencyKey, scope, dto, () -> settle(dto));
+    }
+
+    private ResponseEntity<?> settle(SettleDto dto) {
+        try {
+            SettleUpReceipt receipt = paymentService.settleUp(dto.payerUserId, dto.counterpartyUserId, dto.amount);
+            var response = java.util.Map.of(
+                "fromUserId", receipt.fromUserId(),
+                "toUserId", receipt.toUserId(),
+                "amount", receipt.amount(),
+                "remaining", receipt.remaining(),
+                "splitsPaid", receipt.splitsPaid(),
+                "splitsSettled", receipt.splitsSettled(),
+                "payments", receipt.payments()
+            );
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(java.util.Map.of("error", ex.getMessage()));
+        } catch (IllegalStateException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(java.util.Map.of("error", ex.getMessage()));
+        }
+    }
+
+    private ResponseEntity<?> pay(PayDto dto) {
         try {
-            Transaction tx = paymentService.payDebitor(dto.debitorId, dto.payerUserId, dto.amount);
-            
+            PaymentReceipt receipt = paymentService.payDebitor(dto.debitorId, dto.payerUserId, dto.amount);
+
             // Return safe DTO instead of full entity
             var response = java.util.Map.of(
-                "id", tx.getId(),
-                "amount", tx.getAmount(),
-                "fromUserId", tx.getFromUser().getId(),
-                "toUserId", tx.getToUser().getId(),
-                "eventId", tx.getEventId() != null ? tx.getEventId() : 0L,
-                "timestamp", tx.getTs(),
-                "note", tx.getNote() != null ? tx.getNote() : ""
+                "id", receipt.transactionId(),
+                "amount", receipt.amount(),
+                "fromUserId", receipt.fromUserId(),
+                "toUserId", receipt.toUserId(),
+                "eventId", receipt.eventId(),
+                "timestamp", receipt.ts(),
+                "remaining", receipt.remaining(),
+                "settled", receipt.settled()
             );
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
-        } catch (IllegalArgumentException | IllegalStateException ex) {
+        } catch (IllegalArgumentException ex) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                 .body(java.util.Map.of("error", ex.getMessage()));
-        } catch (Exception ex) {
-            // generic fallback (e.g., optimistic lock)
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                .body(java.util.Map.of("error", "payment_failed", "message", ex.getMessage()));
+        } catch (IllegalStateException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(java.util.Map.of("error", ex.getMessage()));
         }
     }
 }
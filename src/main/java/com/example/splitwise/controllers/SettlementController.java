@@ -0,0 +1,57 @@
+package com.example.splitwise.controllers;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.splitwise.service.AuthenticatedUser;
+import com.example.splitwise.service.SettlementEngine;
+import com.example.splitwise.service.SettlementService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+@RestController
+@RequestMapping("/api/settlements")
+@Tag(name = "Settlements", description = "Debt simplification endpoints")
+@SecurityRequirement(name = "bearerAuth")
+public class SettlementController {
+
+    private final SettlementService settlementService;
+
+    public SettlementController(SettlementService settlementService) {
+        this.settlementService = settlementService;
+    }
+
+    @Operation(summary = "Settle-up plan",
+            description = "Transfers that clear all open splits between the given users; at most one fewer than the number of users. "
+                    + "The caller must be one of them.")
+    @GetMapping("/plan")
+    public ResponseEntity<?> plan(@AuthenticationPrincipal AuthenticatedUser principal,
+                                  @RequestParam List<Long> userIds) {
+        if (principal == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "not_authenticated"));
+        }
+        // the plan exposes what every member owes every other; only a member may see it
+        if (!userIds.contains(principal.getId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "forbidden"));
+        }
+        try {
+            List<SettlementEngine.Transfer> plan = settlementService.plan(userIds);
+            return ResponseEntity.ok(Map.of(
+                    "userIds", userIds,
+                    "transfers", plan
+            ));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", ex.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.splitwise.controllers;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.splitwise.service.AuthenticatedUser;
+import com.example.splitwise.service.CursorPage;
+import com.example.splitwise.service.TransactionHistoryService;
+import com.example.splitwise.service.TransactionView;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+@RestController
+@RequestMapping("/api/transactions")
+@Tag(name = "Transactions", description = "Payment history endpoints")
+@SecurityRequirement(name = "bearerAuth")
+public class TransactionController {
+
+    private final TransactionHistoryService transactionHistoryService;
+
+    public TransactionController(TransactionHistoryService transactionHistoryService) {
+        this.transactionHistoryService = transactionHistoryService;
+    }
+
+    @Operation(summary = "Transaction history", description = "Payments made and received by the caller, "
+            + "newest first and keyset-paginated. Narrow with counterparty, eventId and a [from, to) time range. "
+            + "user may only name the caller.")
+    @GetMapping
+    public ResponseEntity<?> list(@AuthenticationPrincipal AuthenticatedUser principal,
+            @RequestParam(required = false) Long user,
+            @RequestParam(required = false) Long counterparty,
+            @RequestParam(required = false) Long eventId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit) {
+        if (principal == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "not_authenticated"));
+        }
+        // history is always the caller's own; someone else's payments are not theirs to page through
+        if (user != null && !user.equals(principal.getId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "forbidden"));
+        }
+        user = principal.getId();
+        try {
+            CursorPage<TransactionView> page = transactionHistoryService.find(
+                    new TransactionHistoryService.Filter(user, counterparty, eventId, from, to), limit, after);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", ex.getMessage()));
+        }
+    }
+}
@@ -1,13 +1,15 @@
 package com.example.splitwise.controllers;
 
-import java.math.BigDecimal;
-import java.security.Principal;
+import java.time.Duration;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -18,12 +20,20 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
 import com.example.splitwise.model.User;
+import com.example.splitwise.service.AuthenticatedUser;
+import com.example.splitwise.service.CursorPage;
+import com.example.splitwise.service.JwtTokenCache;
+import com.example.splitwise.service.LedgerExportService;
+import com.example.splitwise.service.UserDashboard;
+import com.example.splitwise.service.UserDashboardService;
 import com.example.splitwise.service.UserService;
 
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 
 @RestController
 @RequestMapping("/api/users")
@@ -33,10 +43,21 @@ public class UserController {
 
     private final UserService userService;
     private final PasswordEncoder passwordEncoder;
-
-    public UserController(UserService userService, PasswordEncoder passwordEncoder) {
+    private final JwtTokenCache tokenCache;
+    private final LedgerExportService ledgerExportService;
+    private final UserDashboardService userDashboardService;
+    private final Duration exportTimeout;
+
+    public UserController(UserService userService, PasswordEncoder passwordEncoder,
+            JwtTokenCache tokenCache, LedgerExportService ledgerExportService,
+            UserDashboardService userDashboardService,
+            @Value("${export.timeout:30m}") Duration exportTimeout) {
         this.userService = userService;
         this.passwordEncoder = passwordEncoder;
+        this.tokenCache = tokenCache;
+        this.ledgerExportService = ledgerExportService;
+        this.userDashboardService = userDashboardService;
+        this.exportTimeout = exportTimeout;
     }
 
     // health
@@ -74,33 +95,29 @@ public class UserController {
     // Get one user (minimal view)
     @GetMapping("/{id}")
     public ResponseEntity<?> getUser(@PathVariable Long id) {
-        var users = userService.getAllUsers();
-
-        for (var u : users) {
-            if (id.equals(u.getId())) {
-                Map<String, Object> m = new HashMap<>();
-                m.put("id", u.getId());
-                m.put("username", u.getUsername());
-                m.put("total", u.getTotal());
-                return ResponseEntity.ok(m);
-            }
-        }
-
-        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "user not found"));
+        return userService.getUserSummary(id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "user not found")));
     }
 
-    // List users (minimal)
+    // List users (minimal), keyset-paginated
     @GetMapping
-    public ResponseEntity<List<Map<String, Object>>> getAllUsers() {
-        var users = userService.getAllUsers();
-        var list = users.stream().map(u -> {
+    public ResponseEntity<?> getAllUsers(@RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after) {
+        CursorPage<User> users;
+        try {
+            users = userService.getUsers(limit, after);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+        var page = users.map(u -> {
             Map<String, Object> m = new HashMap<>();
             m.put("id", u.getId());
             m.put("username", u.getUsername());
             m.put("total", u.getTotal());
             return m;
-        }).toList();
-        return ResponseEntity.ok(list);
+        });
+        return ResponseEntity.ok(page);
     }
 
     // Update user (partial safe update)
@@ -118,10 +135,15 @@ public class UserController {
                 existing.setTotal(payload.getTotal());
             }
             // if password is provided here, encode it (optional: allow admin to change)
-            if (payload.getPassword() != null && !payload.getPassword().isBlank()) {
+            boolean passwordChanged = payload.getPassword() != null && !payload.getPassword().isBlank();
+            if (passwordChanged) {
                 existing.setPassword(passwordEncoder.encode(payload.getPassword()));
             }
             User updated = userService.updateUser(existing);
+            // after the commit, so a concurrent request cannot re-cache the old principal
+            if (passwordChanged) {
+                tokenCache.evictUser(updated.getEmail());
+            }
 
             Map<String, Object> resp = new HashMap<>();
             resp.put("id", updated.getId());
@@ -134,11 +156,13 @@ public class UserController {
     // Delete user
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteUser(@PathVariable Long id) {
-        if (!userService.existsById(id)) {
+        User existing = userService.findById(id).orElse(null);
+        if (existing == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "user not found"));
         }
         try {
             userService.deleteUser(id);
+            tokenCache.evictUser(existing.getEmail());
             return ResponseEntity.noContent().build();
         } catch (Exception ex) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -146,75 +170,61 @@ public class UserController {
         }
     }
 
-    // Authenticated user's profile (works with JWT; Principal.getName() is email)
+    // Authenticated user's profile (works with JWT; the principal carries the user id)
     @GetMapping("/me")
-    public ResponseEntity<?> me(Principal principal) {
+    public ResponseEntity<?> me(@AuthenticationPrincipal AuthenticatedUser principal) {
         if (principal == null) {
             return ResponseEntity.status(401).build();
         }
 
-        String email = principal.getName();
-        if (email == null) {
-            return ResponseEntity.status(400).body(Map.of("error", "no_email_in_principal"));
-        }
-
-        User u = userService.getUserWithCollectionsByEmail(email);
-        if (u == null) {
+        // two projection queries, independent of how many splits and events the user has
+        UserDashboard dashboard = userDashboardService.getDashboard(principal.getId());
+        if (dashboard == null) {
             return ResponseEntity.status(404).body(Map.of("error", "user not found"));
         }
+        return ResponseEntity.ok(dashboard);
+    }
 
-        BigDecimal youOwe = userService.computeYouOwe(u);
-        BigDecimal owedToYou = userService.computeOwedToYou(u);
-        BigDecimal total = u.getTotal() == null ? BigDecimal.ZERO : u.getTotal();
-
-        var debitors = u.getDebitors().stream()
-                .map(d -> Map.of(
-                "id", d.getId(),
-                "eventId", d.getEvent() != null ? d.getEvent().getId() : null,
-                "userId", d.getUser() != null ? d.getUser().getId() : null,
-                "debAmount", d.getDebAmount(),
-                "amountPaid", d.getAmountPaid(),
-                "remaining", d.getDebAmount().subtract(d.getAmountPaid()),
-                "included", d.isIncluded(),
-                "settled", d.isSettled()
-        ))
-                .toList();
-
-        var events = u.getEvents().stream()
-                .map(e -> Map.of(
-                "id", e.getId(),
-                "title", e.getTitle(),
-                "total", e.getTotal(),
-                "cancelled", e.isCancelled()
-        ))
-                .toList();
+    // Stream the caller's payments and splits; memory stays flat regardless of history size.
+    // Runs as an async task with its own timeout (export.timeout) so that long exports
+    // do not need a long default timeout for every other async request.
+    @GetMapping("/me/export")
+    public WebAsyncTask<ResponseEntity<?>> exportLedger(@AuthenticationPrincipal AuthenticatedUser principal,
+                                                        @RequestParam(required = false) String format,
+                                                        HttpServletResponse response) {
+        if (principal == null) {
+            return new WebAsyncTask<>(() -> ResponseEntity.status(401).build());
+        }
+        LedgerExportService.Format f;
+        try {
+            f = LedgerExportService.Format.of(format);
+        } catch (IllegalArgumentException ex) {
+            return new WebAsyncTask<>(() -> ResponseEntity.badRequest().body(Map.of("error", ex.getMessage())));
+        }
 
-        Map<String, Object> resp = new HashMap<>();
-        resp.put("id", u.getId());
-        resp.put("email", u.getEmail());
-        resp.put("username", u.getUsername());
-        resp.put("total", total);
-        resp.put("emailVerified", u.isEmailVerified());
-        resp.put("youOwe", youOwe);
-        resp.put("owedToYou", owedToYou);
-        resp.put("debitors", debitors);
-        resp.put("events", events);
-
-        return ResponseEntity.ok(resp);
+        Long userId = principal.getId();
+        String filename = "ledger-" + userId + (f == LedgerExportService.Format.CSV ? ".csv" : ".ndjson");
+        response.setContentType(MediaType.parseMediaType(f.getContentType() + ";charset=UTF-8").toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+        // written straight to the response; the null result tells MVC the response is already handled
+        return new WebAsyncTask<>(exportTimeout.toMillis(), () -> {
+            ledgerExportService.export(userId, f, response.getOutputStream());
+            return null;
+        });
     }
 
     // Set username for authenticated user
     @PostMapping("/set-username")
-    public ResponseEntity<?> setUsername(Principal principal, @RequestBody Map<String, String> body) {
+    public ResponseEntity<?> setUsername(@AuthenticationPrincipal AuthenticatedUser principal,
+            @RequestBody Map<String, String> body) {
         if (principal == null) {
             return ResponseEntity.status(401).body(Map.of("error", "not_authenticated"));
         }
 
-        String email = principal.getName();
         String username = body.get("username");
 
         try {
-            User updated = userService.setUsernameForEmail(email, username);
+            User updated = userService.setUsernameForUser(principal.getId(), username);
             return ResponseEntity.ok(Map.of(
                     "id", updated.getId(),
                     "username", updated.getUsername()
@@ -228,12 +238,13 @@ public class UserController {
 
     // Change password for authenticated user
     @PostMapping("/set-password")
-    public ResponseEntity<?> setPassword(Principal principal, @RequestBody Map<String, String> body) {
+    public ResponseEntity<?> setPassword(@AuthenticationPrincipal AuthenticatedUser principal,
+            @RequestBody Map<String, String> body) {
         if (principal == null) {
             return ResponseEntity.status(401).body(Map.of("error", "not_authenticated"));
         }
 
-        String email = principal.getName();
+        String email = principal.getEmail();
         String oldPw = body.get("oldPassword");
         String newPw = body.get("newPassword");
 
@@ -241,7 +252,7 @@ public class UserController {
             return ResponseEntity.badRequest().body(Map.of("error", "new_password_too_short"));
         }
 
-        User u = userService.findByEmail(email);
+        User u = userService.findById(principal.getId()).orElse(null);
         if (u == null) {
             return ResponseEntity.status(404).body(Map.of("error", "user not found"));
         }
@@ -251,6 +262,7 @@ public class UserController {
             // set new password directly
             u.setPassword(passwordEncoder.encode(newPw));
             userService.updateUser(u);
+            tokenCache.evictUser(email);
             return ResponseEntity.ok(Map.of("status", "password_set"));
         }
 
@@ -262,6 +274,7 @@ public class UserController {
         // all good — update
         u.setPassword(passwordEncoder.encode(newPw));
         userService.updateUser(u);
+        tokenCache.evictUser(email);
         return ResponseEntity.ok(Map.of("status", "password_changed"));
     }
 
@@ -272,16 +285,10 @@ public class UserController {
             return ResponseEntity.badRequest().body(Map.of("error", "username required"));
         }
 
-        var opt = userService.findByUsernameIgnoreCaseOptional(username.trim());
+        var opt = userService.findSummaryByUsername(username.trim());
         if (opt.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "user not found"));
         }
-        User u = opt.get();
-        Map<String, Object> resp = Map.of(
-                "id", u.getId(),
-                "username", u.getUsername(),
-                "total", u.getTotal()
-        );
-        return ResponseEntity.ok(resp);
+        return ResponseEntity.ok(opt.get());
     }
 }
@@ -4,8 +4,14 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
@@ -13,15 +19,20 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import jakarta.persistence.Version;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "debitors")
 @Table(name = "debitors")
 public class Debitor {
 
+    // pooled sequence (not IDENTITY) so split inserts can be JDBC-batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "debitors_seq")
+    @SequenceGenerator(name = "debitors_seq", sequenceName = "debitors_seq", allocationSize = 50)
     private Long id;
 
     // who this split row belongs to (the person who owes / participates)
@@ -36,10 +47,12 @@ public class Debitor {
     private Event event;
 
     @Column(precision = 15, scale = 2)
-    private BigDecimal debAmount = BigDecimal.ZERO;   // original share
+    @Convert(converter = MoneyConverter.class)
+    private Money debAmount = Money.ZERO;   // original share
 
     @Column(precision = 15, scale = 2)
-    private BigDecimal amountPaid = BigDecimal.ZERO;  // how much paid so far
+    @Convert(converter = MoneyConverter.class)
+    private Money amountPaid = Money.ZERO;  // how much paid so far
 
     private boolean settled = false;
 
@@ -50,8 +63,8 @@ public class Debitor {
     @Version
     private Long version; // optimistic locking
 
-    public BigDecimal getRemaining() {
-        return debAmount.subtract(amountPaid);
+    public Money getRemaining() {
+        return getDebMoney().minus(getPaidMoney());
     }
 
     // getters / setters
@@ -80,18 +93,39 @@ public class Debitor {
     }
 
     public BigDecimal getDebAmount() {
-        return debAmount;
+        return debAmount == null ? null : debAmount.toBigDecimal();
     }
 
     public void setDebAmount(BigDecimal debAmount) {
-        this.debAmount = debAmount;
+        this.debAmount = Money.of(debAmount);
     }
 
     public BigDecimal getAmountPaid() {
-        return amountPaid;
+        return amountPaid == null ? null : amountPaid.toBigDecimal();
     }
 
     public void setAmountPaid(BigDecimal amountPaid) {
+        this.amountPaid = Money.of(amountPaid);
+    }
+
+    // Money views for the balance paths; a missing amount reads as zero
+    @JsonIgnore
+    public Money getDebMoney() {
+        return debAmount == null ? Money.ZERO : debAmount;
+    }
+
+    @JsonIgnore
+    public void setDebMoney(Money debAmount) {
+        this.debAmount = debAmount;
+    }
+
+    @JsonIgnore
+    public Money getPaidMoney() {
+        return amountPaid == null ? Money.ZERO : amountPaid;
+    }
+
+    @JsonIgnore
+    public void setPaidMoney(Money amountPaid) {
         this.amountPaid = amountPaid;
     }
 
@@ -6,10 +6,16 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
@@ -18,14 +24,19 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "events")
 @Table(name = "events")
 public class Event {
 
+    // pooled sequence (not IDENTITY) so inserts can be JDBC-batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "events_seq")
+    @SequenceGenerator(name = "events_seq", sequenceName = "events_seq", allocationSize = 50)
     private Long id;
 
     private String title;
@@ -37,13 +48,15 @@ public class Event {
     private User creator;
 
     @Column(precision = 15, scale = 2)
-    private BigDecimal total = BigDecimal.ZERO;
+    @Convert(converter = MoneyConverter.class)
+    private Money total = Money.ZERO;
 
     private boolean cancelled = false;
 
     @OneToMany(mappedBy = "event", cascade = CascadeType.ALL,
             orphanRemoval = true, fetch = FetchType.LAZY)
     @JsonManagedReference(value = "event-splits")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "events-splits")
     private List<Debitor> splits = new ArrayList<>();
 
     // helpers
@@ -91,10 +104,21 @@ public class Event {
     }
 
     public BigDecimal getTotal() {
-        return total;
+        return total == null ? null : total.toBigDecimal();
     }
 
     public void setTotal(BigDecimal total) {
+        this.total = Money.of(total);
+    }
+
+    // Money view of the total for the balance paths; a missing total reads as zero
+    @JsonIgnore
+    public Money getTotalMoney() {
+        return total == null ? Money.ZERO : total;
+    }
+
+    @JsonIgnore
+    public void setTotalMoney(Money total) {
         this.total = total;
     }
 
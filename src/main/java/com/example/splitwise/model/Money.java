@@ -0,0 +1,104 @@
+package com.example.splitwise.model;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * Immutable amount of money held as a count of minor units (cents) plus a currency code.
+ * Arithmetic is exact on {@code long} and throws {@link ArithmeticException} on overflow
+ * instead of wrapping; mixing currencies throws {@link IllegalArgumentException}.
+ *
+ * Every currency is assumed to have two minor digits, as the {@code numeric(15, 2)}
+ * columns do. Serialises to JSON as a plain decimal number.
+ *
+ * Arithmetic results are always fresh instances, never {@code this}, so the JIT can
+ * scalar-replace the temporaries of a loop that only reads {@link #minor()}. The
+ * factories {@link #ofMinor} and {@link #of} return the shared {@link #ZERO} for zero.
+ */
+public record Money(long minor, String currency) implements Comparable<Money>, Serializable {
+
+    public static final int SCALE = 2;
+    public static final String DEFAULT_CURRENCY = "INR";
+    public static final Money ZERO = new Money(0, DEFAULT_CURRENCY);
+
+    public Money {
+        if (currency == null || currency.length() != 3) {
+            throw new IllegalArgumentException("Currency must be a 3-letter code: " + currency);
+        }
+    }
+
+    public static Money ofMinor(long minor) {
+        return minor == 0 ? ZERO : new Money(minor, DEFAULT_CURRENCY);
+    }
+
+    /**
+     * Amount in the default currency, rounded half-up to cents the way a
+     * {@code numeric(15, 2)} column rounds on insert; null stays null.
+     */
+    public static Money of(BigDecimal amount) {
+        if (amount == null) return null;
+        return ofMinor(amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    public Money plus(Money other) {
+        check(other);
+        return new Money(Math.addExact(minor, other.minor), currency);
+    }
+
+    public Money minus(Money other) {
+        check(other);
+        return new Money(Math.subtractExact(minor, other.minor), currency);
+    }
+
+    public Money times(long factor) {
+        return new Money(Math.multiplyExact(minor, factor), currency);
+    }
+
+    /**
+     * This amount divided into {@code n} parts, rounded half-up (away from zero) to cents.
+     */
+    public Money divide(int n) {
+        if (n <= 0) throw new IllegalArgumentException("Divisor must be positive");
+        long abs = Math.absExact(minor);
+        long q = abs / n;
+        if ((abs % n) * 2 >= n) q++;
+        return new Money(minor < 0 ? -q : q, currency);
+    }
+
+    public Money negate() {
+        return new Money(Math.negateExact(minor), currency);
+    }
+
+    public int signum() {
+        return Long.signum(minor);
+    }
+
+    public boolean isZero() {
+        return minor == 0;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        check(other);
+        return Long.compare(minor, other.minor);
+    }
+
+    @JsonValue
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+
+    private void check(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " vs " + other.currency);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.splitwise.model;
+
+import java.math.BigDecimal;
+
+import org.hibernate.annotations.Immutable;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Maps {@link Money} to the existing {@code numeric(15, 2)} amount columns. The columns
+ * carry no currency, so values are read back in {@link Money#DEFAULT_CURRENCY}.
+ */
+// immutable: Hibernate compares snapshots with equals() instead of deep-copying them
+@Immutable
+@Converter
+public class MoneyConverter implements AttributeConverter<Money, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(Money money) {
+        return money == null ? null : money.toBigDecimal();
+    }
+
+    @Override
+    public Money convertToEntityAttribute(BigDecimal amount) {
+        return Money.of(amount);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.splitwise.model;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+/**
+ * Read model: what debtor still owes creditor across all events the creditor created.
+ * Rows are maintained by {@link com.example.splitwise.service.BalanceService}.
+ */
+@Entity
+@Table(name = "pair_balances")
+@IdClass(PairBalance.Key.class)
+public class PairBalance {
+
+    @Id
+    @Column(name = "debtor_id")
+    private Long debtorId;
+
+    @Id
+    @Column(name = "creditor_id")
+    private Long creditorId;
+
+    @Column(precision = 15, scale = 2, nullable = false)
+    private BigDecimal amount = BigDecimal.ZERO;
+
+    private LocalDateTime updatedAt;
+
+    public static class Key implements Serializable {
+
+        private Long debtorId;
+        private Long creditorId;
+
+        public Key() {
+        }
+
+        public Key(Long debtorId, Long creditorId) {
+            this.debtorId = debtorId;
+            this.creditorId = creditorId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key k)) return false;
+            return Objects.equals(debtorId, k.debtorId) && Objects.equals(creditorId, k.creditorId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(debtorId, creditorId);
+        }
+    }
+
+    // getters / setters
+    public Long getDebtorId() {
+        return debtorId;
+    }
+
+    public void setDebtorId(Long debtorId) {
+        this.debtorId = debtorId;
+    }
+
+    public Long getCreditorId() {
+        return creditorId;
+    }
+
+    public void setCreditorId(Long creditorId) {
+        this.creditorId = creditorId;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.splitwise.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Read model holding the per-user dashboard totals.
+ * Rows are maintained by {@link com.example.splitwise.service.BalanceService};
+ * never update them directly through JPA.
+ */
+@Entity
+@Table(name = "user_balances")
+public class UserBalance {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    // sum of remaining shares on the user's unsettled splits
+    @Column(precision = 15, scale = 2, nullable = false)
+    private BigDecimal owes = BigDecimal.ZERO;
+
+    // sum of (total - paid) over the user's non-cancelled events
+    @Column(precision = 15, scale = 2, nullable = false)
+    private BigDecimal owed = BigDecimal.ZERO;
+
+    // owed - owes
+    @Column(precision = 15, scale = 2, nullable = false)
+    private BigDecimal net = BigDecimal.ZERO;
+
+    private LocalDateTime updatedAt;
+
+    public UserBalance() {
+    }
+
+    public UserBalance(Long userId) {
+        this.userId = userId;
+    }
+
+    // getters / setters
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public BigDecimal getOwes() {
+        return owes;
+    }
+
+    public void setOwes(BigDecimal owes) {
+        this.owes = owes;
+    }
+
+    public BigDecimal getOwed() {
+        return owed;
+    }
+
+    public void setOwed(BigDecimal owed) {
+        this.owed = owed;
+    }
+
+    public BigDecimal getNet() {
+        return net;
+    }
+
+    public void setNet(BigDecimal net) {
+        this.net = net;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
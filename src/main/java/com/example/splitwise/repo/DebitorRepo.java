@@ -1,10 +1,20 @@
 package com.example.splitwise.repo;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import com.example.splitwise.model.Debitor;
 
 import java.util.List;
 
 public interface DebitorRepo extends JpaRepository<Debitor, Long> {
     List<Debitor> findByUserId(Long userId);
+
+    List<Debitor> findByEventId(Long eventId);
+
+    // keyset pages: callers pass limit + 1 to detect a following page
+    @Query("select d from Debitor d left join fetch d.user left join fetch d.event " +
+            "where d.id > :afterId order by d.id")
+    List<Debitor> findPageAfter(@Param("afterId") Long afterId, Limit limit);
 }
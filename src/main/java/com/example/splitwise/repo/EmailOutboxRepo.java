@@ -0,0 +1,12 @@
+package com.example.splitwise.repo;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import com.example.splitwise.model.EmailOutbox;
+
+public interface EmailOutboxRepo extends JpaRepository<EmailOutbox, Long> {
+
+    @Query("select count(o) from EmailOutbox o where o.status = com.example.splitwise.model.EmailOutbox.Status.PENDING")
+    long countPending();
+}
@@ -1,8 +1,12 @@
 package com.example.splitwise.repo;
 
 import com.example.splitwise.model.Event;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
@@ -14,6 +18,11 @@ public interface EventRepo extends JpaRepository<Event, Long> {
             "left join fetch s.user u " +
             "left join fetch e.creator c " +
             "where e.id = :id")
+    // result ids in the query cache, entities from the second-level cache
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = "events-with-splits")
+    })
     Optional<Event> findByIdWithSplitsAndUsers(@Param("id") Long id);
 
     @Query("""
@@ -25,6 +34,18 @@ public interface EventRepo extends JpaRepository<Event, Long> {
     List<Event> findEventsByUser(@Param("userId") Long userId);
 
 
+    // keyset pages: callers pass limit + 1 to detect a following page
+    List<Event> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+    @Query("""
+    select e
+    from Event e
+    where e.id > :afterId
+      and exists (select 1 from Debitor s where s.event = e and s.user.id = :userId)
+    order by e.id
+    """)
+    List<Event> findEventsByUserAfter(@Param("userId") Long userId, @Param("afterId") Long afterId, Limit limit);
+
     @Query("select e from Event e left join fetch e.splits where e.id = :id")
     Event findWithSplitsById(@Param("id") Long id);
 }
@@ -0,0 +1,19 @@
+package com.example.splitwise.repo;
+
+import com.example.splitwise.model.PairBalance;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface PairBalanceRepo extends JpaRepository<PairBalance, PairBalance.Key> {
+
+    // both directions of one pair, served from the primary key
+    @Query("""
+    select p from PairBalance p
+    where (p.debtorId = :a and p.creditorId = :b)
+       or (p.debtorId = :b and p.creditorId = :a)
+    """)
+    List<PairBalance> findBetween(@Param("a") Long a, @Param("b") Long b);
+}
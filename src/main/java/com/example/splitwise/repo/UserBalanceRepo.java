@@ -0,0 +1,7 @@
+package com.example.splitwise.repo;
+
+import com.example.splitwise.model.UserBalance;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface UserBalanceRepo extends JpaRepository<UserBalance, Long> {
+}
@@ -2,14 +2,24 @@ package com.example.splitwise.repo;
 
 
 import com.example.splitwise.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepo extends JpaRepository<User, Long> {
 
+    // every authenticated request resolves its principal by email (JwtAuthenticationFilter)
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = "users-by-email")
+    })
     Optional<User> findByEmail(String email);
     Optional<User> findByVerificationToken(String verificationToken);
 
@@ -19,5 +29,8 @@ public interface UserRepo extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
 
     boolean existsByUsername(String username);
+
+    // keyset pages: callers pass limit + 1 to detect a following page
+    List<User> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
 }
 
@@ -0,0 +1,92 @@
+package com.example.splitwise.service;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.text.ParseException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Security principal carrying the numeric user id, so controllers never have to
+ * re-resolve the caller by email. {@link #getUsername()} stays the email to keep
+ * {@code Principal.getName()} unchanged.
+ */
+public class AuthenticatedUser implements UserDetails {
+
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_USERNAME = "username";
+    public static final String CLAIM_AUTHORITIES = "roles";
+
+    private final Long id;
+    private final String email;
+    private final String displayName;
+    private final String password;
+    private final List<GrantedAuthority> authorities;
+
+    public AuthenticatedUser(Long id, String email, String displayName, String password,
+                             List<GrantedAuthority> authorities) {
+        this.id = id;
+        this.email = email;
+        this.displayName = displayName;
+        this.password = password;
+        this.authorities = authorities;
+    }
+
+    /**
+     * True if the token was issued with the identity claims needed by {@link #fromClaims}.
+     */
+    public static boolean hasIdentityClaims(JWTClaimsSet claims) {
+        return claims.getSubject() != null && claims.getClaim(CLAIM_USER_ID) != null;
+    }
+
+    /**
+     * Rebuild the principal purely from a verified token; no database access.
+     */
+    public static AuthenticatedUser fromClaims(JWTClaimsSet claims) {
+        try {
+            List<String> roles = claims.getStringListClaim(CLAIM_AUTHORITIES);
+            return new AuthenticatedUser(
+                    claims.getLongClaim(CLAIM_USER_ID),
+                    claims.getSubject(),
+                    claims.getStringClaim(CLAIM_USERNAME),
+                    null,
+                    AuthorityUtils.createAuthorityList(roles == null ? List.of() : roles));
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Malformed identity claims", e);
+        }
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    public List<String> getAuthorityNames() {
+        return AuthorityUtils.authorityListToSet(authorities).stream().sorted().toList();
+    }
+}
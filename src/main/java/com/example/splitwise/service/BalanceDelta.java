@@ -0,0 +1,126 @@
+package com.example.splitwise.service;
+
+import com.example.splitwise.model.Debitor;
+import com.example.splitwise.model.Event;
+import com.example.splitwise.model.User;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Accumulates per-user and per-pair changes to the balance read models.
+ *
+ * Callers record the contribution of an entity before a mutation with sign -1 and
+ * after it with sign +1; whatever did not change cancels out. The contribution rules
+ * mirror {@link UserService#computeYouOwe} and {@link UserService#computeOwedToYou}.
+ * The {@link LedgerEvent} it is created with is what the ledger records it under.
+ */
+public class BalanceDelta {
+
+    // TreeMap keeps user ids ordered so concurrent flushes lock rows in the same order
+    private final Map<Long, BigDecimal> owes = new TreeMap<>();
+    private final Map<Long, BigDecimal> owed = new TreeMap<>();
+    private final Map<Pair, BigDecimal> pairs = new TreeMap<>(Pair.ORDER);
+    private final LedgerEvent cause;
+
+    public BalanceDelta() {
+        this(LedgerEvent.of(LedgerEvent.Type.ADJUSTMENT));
+    }
+
+    public BalanceDelta(LedgerEvent cause) {
+        this.cause = cause;
+    }
+
+    /**
+     * Directed pair: debtor owes creditor.
+     */
+    public record Pair(Long debtorId, Long creditorId) {
+        static final Comparator<Pair> ORDER =
+                Comparator.comparing(Pair::debtorId).thenComparing(Pair::creditorId);
+    }
+
+    /**
+     * Contribution of one split: its remaining share to the participant,
+     * its paid amount (negated) to the event creator, and its remaining share
+     * to the (participant, creator) pair while the event is live.
+     */
+    public BalanceDelta split(Debitor d, int sign) {
+        BigDecimal deb = d.getDebAmount() == null ? BigDecimal.ZERO : d.getDebAmount();
+        BigDecimal paid = d.getAmountPaid() == null ? BigDecimal.ZERO : d.getAmountPaid();
+
+        if (d.getUser() != null && !d.isSettled()) {
+            add(owes, d.getUser().getId(), deb.subtract(paid), sign);
+        }
+        Event e = d.getEvent();
+        if (e != null && !e.isCancelled() && e.getCreator() != null) {
+            Long creditorId = e.getCreator().getId();
+            add(owed, creditorId, paid.negate(), sign);
+
+            if (d.getUser() != null && !d.isSettled() && !creditorId.equals(d.getUser().getId())) {
+                add(pairs, new Pair(d.getUser().getId(), creditorId), deb.subtract(paid), sign);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Contribution of a whole event: its total to the creator plus every split.
+     */
+    public BalanceDelta event(Event e, int sign) {
+        User creator = e.getCreator();
+        if (!e.isCancelled() && creator != null) {
+            add(owed, creator.getId(), e.getTotal() == null ? BigDecimal.ZERO : e.getTotal(), sign);
+        }
+        for (Debitor d : e.getSplits()) {
+            split(d, sign);
+        }
+        return this;
+    }
+
+    /**
+     * Contribution of a stored user_balances row, for changes made by recomputation.
+     */
+    BalanceDelta user(Long userId, BigDecimal userOwes, BigDecimal userOwed, int sign) {
+        add(owes, userId, userOwes, sign);
+        add(owed, userId, userOwed, sign);
+        return this;
+    }
+
+    /**
+     * Contribution of a stored pair_balances row.
+     */
+    BalanceDelta pair(Long debtorId, Long creditorId, BigDecimal amount, int sign) {
+        add(pairs, new Pair(debtorId, creditorId), amount, sign);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return owes.values().stream().allMatch(v -> v.signum() == 0)
+                && owed.values().stream().allMatch(v -> v.signum() == 0)
+                && pairs.values().stream().allMatch(v -> v.signum() == 0);
+    }
+
+    LedgerEvent getCause() {
+        return cause;
+    }
+
+    Map<Long, BigDecimal> getOwes() {
+        return owes;
+    }
+
+    Map<Long, BigDecimal> getOwed() {
+        return owed;
+    }
+
+    Map<Pair, BigDecimal> getPairs() {
+        return pairs;
+    }
+
+    private static <K> void add(Map<K, BigDecimal> target, K key, BigDecimal amount, int sign) {
+        if (key == null || amount.signum() == 0) return;
+        BigDecimal signed = sign < 0 ? amount.negate() : amount;
+        target.merge(key, signed, BigDecimal::add);
+    }
+}
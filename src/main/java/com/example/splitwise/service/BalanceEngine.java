@@ -0,0 +1,348 @@
+package com.example.splitwise.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process copy of the balance read models, kept in primitive maps of minor units
+ * (cents) so totals and pair balances are served without a database round trip.
+ *
+ * Every ledger append is logged to the {@link BalanceWal} as PREPARE inside the
+ * writer's transaction and as COMMIT or ABORT once it completes; only committed
+ * mutations reach the maps, in commit order. A checkpoint writes the maps to disk and
+ * empties the log. On open the engine loads the last checkpoint and replays the log
+ * over it; transactions that prepared but never logged their outcome are resolved
+ * against the ledger. Without a usable checkpoint it loads from the read models.
+ *
+ * The engine only sees writes made by its own process.
+ */
+public class BalanceEngine implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(BalanceEngine.class);
+
+    private static final int MAGIC = 0x42414c31; // "BAL1"
+    private static final long OWES = 0, OWED = 1, PAIR = 2;
+
+    /**
+     * Where the engine reloads from and resolves in-doubt transactions against.
+     */
+    public interface Source {
+
+        interface UserRow {
+            void accept(long userId, BigDecimal owes, BigDecimal owed);
+        }
+
+        interface PairRow {
+            void accept(long debtorId, long creditorId, BigDecimal amount);
+        }
+
+        /** Every stored user_balances row. */
+        void users(UserRow row);
+
+        /** Every stored pair_balances row. */
+        void pairs(PairRow row);
+
+        /** Which of the given ledger seqs exist, i.e. committed. */
+        Set<Long> committed(List<Long> seqs);
+
+        /** Highest ledger seq, to tell whether writes happened while the engine was off. */
+        long ledgerHead();
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongPairLongMap users = new LongPairLongMap(1024);
+    private final LongPairLongMap pairs = new LongPairLongMap(1024);
+    // prepared but not yet committed or aborted, in prepare order
+    private final Map<Long, long[]> pending = new LinkedHashMap<>();
+
+    private final Path checkpointFile;
+    private final BalanceWal wal;
+    private final Source source;
+    private long lastSeq;
+    private volatile boolean ready;
+
+    private BalanceEngine(Path dir, int walSize, boolean sync, Source source) {
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.checkpointFile = dir.resolve("balances.checkpoint");
+        this.wal = new BalanceWal(dir.resolve("balances.wal"), walSize, sync);
+        this.source = source;
+    }
+
+    /**
+     * Open (or create) the engine in {@code dir} and bring it up to date.
+     */
+    public static BalanceEngine open(Path dir, int walSize, boolean sync, Source source) {
+        BalanceEngine engine = new BalanceEngine(dir, walSize, sync, source);
+        engine.recover();
+        return engine;
+    }
+
+    /**
+     * False after a failure the engine could not log; callers then read the database.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Stop serving after a mutation could not be logged; the maps would drift from here on.
+     */
+    public void disable(RuntimeException cause) {
+        ready = false;
+        log.error("Balance engine disabled, reads fall back to the database", cause);
+    }
+
+    /**
+     * {owes, owed} of a user in minor units.
+     */
+    public long[] totals(long userId) {
+        lock.readLock().lock();
+        try {
+            return new long[]{users.get(userId, OWES), users.get(userId, OWED)};
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * What {@code debtorId} owes {@code creditorId}, in minor units.
+     */
+    public long pair(long debtorId, long creditorId) {
+        lock.readLock().lock();
+        try {
+            return pairs.get(debtorId, creditorId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static BigDecimal toAmount(long minor) {
+        return BigDecimal.valueOf(minor, 2);
+    }
+
+    static long toMinor(BigDecimal amount) {
+        return amount.movePointRight(2).longValueExact();
+    }
+
+    /**
+     * Log a ledger append inside the writer's transaction. It takes effect on {@link #commit}.
+     */
+    public void prepare(long seq, BalanceDelta delta) {
+        List<long[]> entries = new ArrayList<>();
+        delta.getOwes().forEach((u, v) -> { if (v.signum() != 0) entries.add(new long[]{OWES, u, 0, toMinor(v)}); });
+        delta.getOwed().forEach((u, v) -> { if (v.signum() != 0) entries.add(new long[]{OWED, u, 0, toMinor(v)}); });
+        delta.getPairs().forEach((p, v) -> {
+            if (v.signum() != 0) entries.add(new long[]{PAIR, p.debtorId(), p.creditorId(), toMinor(v)});
+        });
+        long[] flat = new long[entries.size() * 4];
+        for (int i = 0; i < entries.size(); i++) System.arraycopy(entries.get(i), 0, flat, i * 4, 4);
+
+        lock.writeLock().lock();
+        try {
+            append(BalanceWal.PREPARE, seq, flat);
+            pending.put(seq, flat);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void commit(long seq) {
+        complete(seq, true);
+    }
+
+    public void abort(long seq) {
+        complete(seq, false);
+    }
+
+    private void complete(long seq, boolean committed) {
+        lock.writeLock().lock();
+        try {
+            long[] entries = pending.remove(seq);
+            if (entries == null) return;
+            // applied first: if logging the outcome forces a checkpoint, the checkpoint has it
+            if (committed) applyEntries(seq, entries);
+            append(committed ? BalanceWal.COMMIT : BalanceWal.ABORT, seq, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Throw the maps away and load them from the read models, e.g. after they were
+     * rebuilt behind the engine's back. Transactions prepared before the reload are
+     * forgotten: the rebuild that triggers it already covers them.
+     */
+    public void reload() {
+        lock.writeLock().lock();
+        try {
+            pending.clear();
+            loadFromSource();
+            ready = true;
+            checkpoint();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Write the maps and pending prepares to disk and empty the log.
+     */
+    public void checkpoint() {
+        lock.writeLock().lock();
+        try {
+            Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeLong(lastSeq);
+                writeMap(out, users);
+                writeMap(out, pairs);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write balance checkpoint", e);
+            }
+            try {
+                Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write balance checkpoint", e);
+            }
+            wal.reset();
+            // transactions still in flight keep their PREPARE in the new log
+            pending.forEach((seq, entries) -> wal.append(BalanceWal.PREPARE, seq, entries));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (ready) checkpoint();
+            wal.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // caller holds the write lock
+    private void append(byte type, long seq, long[] entries) {
+        if (!ready) return;
+        if (!wal.append(type, seq, entries)) {
+            checkpoint();
+            if (!wal.append(type, seq, entries)) {
+                ready = false;
+                log.error("Balance WAL record for seq {} does not fit even after a checkpoint; engine disabled", seq);
+            }
+        }
+    }
+
+    private void applyEntries(long seq, long[] entries) {
+        for (int i = 0; i < entries.length; i += 4) {
+            if (entries[i] == PAIR) pairs.add(entries[i + 1], entries[i + 2], entries[i + 3]);
+            else users.add(entries[i + 1], entries[i], entries[i + 3]);
+        }
+        lastSeq = Math.max(lastSeq, seq);
+    }
+
+    private void recover() {
+        lock.writeLock().lock();
+        try {
+            long start = System.currentTimeMillis();
+            boolean loaded = readCheckpoint();
+            Map<Long, long[]> prepared = new LinkedHashMap<>();
+            int records = wal.replay((type, seq, entries) -> {
+                if (type == BalanceWal.PREPARE) {
+                    prepared.put(seq, entries);
+                } else {
+                    long[] e = prepared.remove(seq);
+                    if (type == BalanceWal.COMMIT && e != null) applyEntries(seq, e);
+                }
+            });
+            if (!prepared.isEmpty()) {
+                // crashed between PREPARE and the outcome: the ledger knows what committed
+                Set<Long> committed = source.committed(new ArrayList<>(prepared.keySet()));
+                prepared.forEach((seq, e) -> { if (committed.contains(seq)) applyEntries(seq, e); });
+            }
+            if (!loaded || source.ledgerHead() > lastSeq) {
+                // first start, unreadable checkpoint, or writes while the engine was off
+                loadFromSource();
+            }
+            ready = true;
+            checkpoint();
+            log.info("Balance engine ready: {} user and {} pair entries, {} WAL records replayed in {} ms",
+                    users.size(), pairs.size(), records, System.currentTimeMillis() - start);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void loadFromSource() {
+        users.clear();
+        pairs.clear();
+        source.users((userId, owes, owed) -> {
+            users.add(userId, OWES, toMinor(owes));
+            users.add(userId, OWED, toMinor(owed));
+        });
+        source.pairs((debtorId, creditorId, amount) -> pairs.add(debtorId, creditorId, toMinor(amount)));
+        lastSeq = source.ledgerHead();
+    }
+
+    private boolean readCheckpoint() {
+        if (!Files.exists(checkpointFile)) return false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpointFile)))) {
+            if (in.readInt() != MAGIC) return false;
+            lastSeq = in.readLong();
+            readMap(in, users);
+            readMap(in, pairs);
+            return true;
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable balance checkpoint: {}", e.getMessage());
+            users.clear();
+            pairs.clear();
+            lastSeq = 0;
+            return false;
+        }
+    }
+
+    private static void writeMap(DataOutputStream out, LongPairLongMap map) throws IOException {
+        out.writeInt(map.size());
+        IOException[] failure = {null};
+        map.forEach((a, b, v) -> {
+            if (failure[0] != null) return;
+            try {
+                out.writeLong(a);
+                out.writeLong(b);
+                out.writeLong(v);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+    }
+
+    private static void readMap(DataInputStream in, LongPairLongMap map) throws IOException {
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) map.add(in.readLong(), in.readLong(), in.readLong());
+    }
+}
@@ -0,0 +1,316 @@
+package com.example.splitwise.service;
+
+import com.example.splitwise.model.PairBalance;
+import com.example.splitwise.model.UserBalance;
+import com.example.splitwise.repo.PairBalanceRepo;
+import com.example.splitwise.repo.UserBalanceRepo;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Maintains the balance read models:
+ * user_balances (owes / owed / net per user) and pair_balances (what debtor owes creditor).
+ * Writers call {@link #apply(BalanceDelta)} inside their own transaction so the
+ * read models commit or roll back together with the ledger rows. Every change is also
+ * appended to the {@link LedgerService} log.
+ */
+@Service
+public class BalanceService {
+
+    public record Mismatch(String table, Long debtorId, Long creditorId, BigDecimal stored, BigDecimal expected) {
+    }
+
+    private static final String UPSERT_USER_DELTA = """
+            insert into user_balances (user_id, owes, owed, net, updated_at)
+            values (?, ?, ?, ?, now())
+            on conflict (user_id) do update set
+                owes = user_balances.owes + excluded.owes,
+                owed = user_balances.owed + excluded.owed,
+                net = user_balances.net + excluded.net,
+                updated_at = excluded.updated_at
+            """;
+
+    private static final String UPSERT_PAIR_DELTA = """
+            insert into pair_balances (debtor_id, creditor_id, amount, updated_at)
+            values (?, ?, ?, now())
+            on conflict (debtor_id, creditor_id) do update set
+                amount = pair_balances.amount + excluded.amount,
+                updated_at = excluded.updated_at
+            """;
+
+    // full recomputation from debitors/events, same rules as UserService.computeYouOwe/computeOwedToYou
+    private static final String USER_TOTALS = """
+            select u.id as user_id,
+                   coalesce(o.owes, 0) as owes,
+                   coalesce(w.owed, 0) as owed
+            from users u
+            left join (
+                select d.user_id, sum(coalesce(d.deb_amount, 0) - coalesce(d.amount_paid, 0)) as owes
+                from debitors d
+                where d.settled = false
+                group by d.user_id
+            ) o on o.user_id = u.id
+            left join (
+                select e.creator_id, sum(coalesce(e.total, 0) - coalesce(p.paid, 0)) as owed
+                from events e
+                left join (
+                    select s.event_id, sum(coalesce(s.amount_paid, 0)) as paid
+                    from debitors s
+                    group by s.event_id
+                ) p on p.event_id = e.id
+                where e.cancelled = false
+                group by e.creator_id
+            ) w on w.creator_id = u.id
+            """;
+
+    private static final String RECOMPUTE_USERS = """
+            insert into user_balances (user_id, owes, owed, net, updated_at)
+            select t.user_id, t.owes, t.owed, t.owed - t.owes, now()
+            from (%s) t
+            %s
+            on conflict (user_id) do update set
+                owes = excluded.owes,
+                owed = excluded.owed,
+                net = excluded.net,
+                updated_at = excluded.updated_at
+            """;
+
+    // what each participant still owes each creator over live events
+    private static final String PAIR_TOTALS = """
+            select d.user_id as debtor_id, e.creator_id as creditor_id,
+                   sum(coalesce(d.deb_amount, 0) - coalesce(d.amount_paid, 0)) as amount
+            from debitors d
+            join events e on e.id = d.event_id
+            where d.settled = false
+              and e.cancelled = false
+              and d.user_id <> e.creator_id
+              %s
+            group by d.user_id, e.creator_id
+            """;
+
+    private static final String RECOMPUTE_PAIRS = """
+            insert into pair_balances (debtor_id, creditor_id, amount, updated_at)
+            select t.debtor_id, t.creditor_id, t.amount, now()
+            from (%s) t
+            where t.amount <> 0
+            """;
+
+    private static final String USER_MISMATCHES = """
+            select coalesce(b.user_id, t.user_id), b.owes, t.owes, b.owed, t.owed, b.net
+            from user_balances b
+            full outer join (%s) t on t.user_id = b.user_id
+            where coalesce(b.owes, 0) <> coalesce(t.owes, 0)
+               or coalesce(b.owed, 0) <> coalesce(t.owed, 0)
+               or coalesce(b.net, 0) <> coalesce(t.owed, 0) - coalesce(t.owes, 0)
+            """;
+
+    private static final String PAIR_MISMATCHES = """
+            select coalesce(p.debtor_id, t.debtor_id), coalesce(p.creditor_id, t.creditor_id), p.amount, t.amount
+            from pair_balances p
+            full outer join (%s) t on t.debtor_id = p.debtor_id and t.creditor_id = p.creditor_id
+            where coalesce(p.amount, 0) <> coalesce(t.amount, 0)
+            """;
+
+    private static final String STORED_USERS = "select user_id, owes, owed from user_balances where user_id = any(?)";
+
+    private static final String STORED_PAIRS = """
+            select debtor_id, creditor_id, amount from pair_balances
+            where debtor_id = any(?) and creditor_id = any(?)
+            """;
+
+    private final UserBalanceRepo userBalanceRepo;
+    private final PairBalanceRepo pairBalanceRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final LedgerService ledgerService;
+    private final ObjectProvider<BalanceEngine> balanceEngine;
+
+    public BalanceService(UserBalanceRepo userBalanceRepo, PairBalanceRepo pairBalanceRepo,
+                          JdbcTemplate jdbcTemplate, LedgerService ledgerService,
+                          ObjectProvider<BalanceEngine> balanceEngine) {
+        this.userBalanceRepo = userBalanceRepo;
+        this.pairBalanceRepo = pairBalanceRepo;
+        this.jdbcTemplate = jdbcTemplate;
+        this.ledgerService = ledgerService;
+        this.balanceEngine = balanceEngine;
+    }
+
+    /**
+     * Apply accumulated deltas as JDBC batches and append them to the ledger. Must run
+     * inside the writer's transaction.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void apply(BalanceDelta delta) {
+        ledgerService.append(delta);
+        if (delta.isEmpty()) return;
+
+        Set<Long> userIds = new TreeSet<>(delta.getOwes().keySet());
+        userIds.addAll(delta.getOwed().keySet());
+
+        List<Object[]> userRows = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            BigDecimal owes = delta.getOwes().getOrDefault(userId, BigDecimal.ZERO);
+            BigDecimal owed = delta.getOwed().getOrDefault(userId, BigDecimal.ZERO);
+            if (owes.signum() == 0 && owed.signum() == 0) continue;
+            userRows.add(new Object[]{userId, owes, owed, owed.subtract(owes)});
+        }
+        if (!userRows.isEmpty()) jdbcTemplate.batchUpdate(UPSERT_USER_DELTA, userRows);
+
+        List<Object[]> pairRows = new ArrayList<>(delta.getPairs().size());
+        for (Map.Entry<BalanceDelta.Pair, BigDecimal> e : delta.getPairs().entrySet()) {
+            if (e.getValue().signum() == 0) continue;
+            pairRows.add(new Object[]{e.getKey().debtorId(), e.getKey().creditorId(), e.getValue()});
+        }
+        if (!pairRows.isEmpty()) jdbcTemplate.batchUpdate(UPSERT_PAIR_DELTA, pairRows);
+    }
+
+    /**
+     * Current totals for a user; a missing row means the user has no balance yet.
+     * Served from the {@link BalanceEngine} when it is enabled, which is why this and
+     * {@link #getPairBalance} open no transaction of their own (the repositories do).
+     */
+    public UserBalance getBalance(Long userId) {
+        BalanceEngine engine = balanceEngine.getIfAvailable();
+        if (engine != null && engine.isReady()) {
+            long[] totals = engine.totals(userId);
+            UserBalance b = new UserBalance(userId);
+            b.setOwes(BalanceEngine.toAmount(totals[0]));
+            b.setOwed(BalanceEngine.toAmount(totals[1]));
+            b.setNet(BalanceEngine.toAmount(totals[1] - totals[0]));
+            return b;
+        }
+        return userBalanceRepo.findById(userId).orElseGet(() -> new UserBalance(userId));
+    }
+
+    /**
+     * Both directions between two users, in one primary-key lookup.
+     * Returns [what a owes b, what b owes a].
+     */
+    public BigDecimal[] getPairBalance(Long a, Long b) {
+        BalanceEngine engine = balanceEngine.getIfAvailable();
+        if (engine != null && engine.isReady()) {
+            return new BigDecimal[]{BalanceEngine.toAmount(engine.pair(a, b)), BalanceEngine.toAmount(engine.pair(b, a))};
+        }
+        BigDecimal aOwesB = BigDecimal.ZERO;
+        BigDecimal bOwesA = BigDecimal.ZERO;
+        for (PairBalance p : pairBalanceRepo.findBetween(a, b)) {
+            if (p.getDebtorId().equals(a)) aOwesB = p.getAmount();
+            else bOwesA = p.getAmount();
+        }
+        return new BigDecimal[]{aOwesB, bOwesA};
+    }
+
+    /**
+     * Recompute the given users, and the pairs among them, from the ledger. Used where
+     * the pre-mutation state is not available to build a delta; the ledger gets the
+     * difference between the stored rows before and after. Pending JPA changes must be
+     * flushed first.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recompute(Collection<Long> userIds, LedgerEvent cause) {
+        if (userIds.isEmpty()) return;
+        Long[] ids = userIds.toArray(new Long[0]);
+        BalanceDelta delta = new BalanceDelta(cause);
+        stored(delta, ids, -1);
+
+        jdbcTemplate.update(RECOMPUTE_USERS.formatted(USER_TOTALS, "where t.user_id = any(?)"), (Object) ids);
+
+        jdbcTemplate.update("delete from pair_balances where debtor_id = any(?) and creditor_id = any(?)",
+                ids, ids);
+        jdbcTemplate.update(RECOMPUTE_PAIRS.formatted(
+                PAIR_TOTALS.formatted("and d.user_id = any(?) and e.creator_id = any(?)")), ids, ids);
+        ledgerService.append(stored(delta, ids, +1));
+    }
+
+    // the stored rows of the given users and the pairs among them
+    private BalanceDelta stored(BalanceDelta delta, Long[] ids, int sign) {
+        jdbcTemplate.query(STORED_USERS, rs -> {
+            delta.user(rs.getLong(1), rs.getBigDecimal(2), rs.getBigDecimal(3), sign);
+        }, (Object) ids);
+        jdbcTemplate.query(STORED_PAIRS, rs -> {
+            delta.pair(rs.getLong(1), rs.getLong(2), rs.getBigDecimal(3), sign);
+        }, ids, ids);
+        return delta;
+    }
+
+    /**
+     * Drop and rebuild both read models from debitors/events. Whatever the rebuild
+     * changed is booked to the ledger as one REBUILD entry.
+     */
+    @Transactional
+    public int rebuildAll() {
+        jdbcTemplate.update("delete from user_balances");
+        jdbcTemplate.update("delete from pair_balances");
+        jdbcTemplate.update(RECOMPUTE_PAIRS.formatted(PAIR_TOTALS.formatted("")));
+        int rows = jdbcTemplate.update(RECOMPUTE_USERS.formatted(USER_TOTALS, ""));
+        ledgerService.reconcile(LedgerEvent.of(LedgerEvent.Type.REBUILD));
+        return rows;
+    }
+
+    /**
+     * Consistency checker: diff the stored read models against a full recomputation.
+     * An empty result means both tables are in sync with the ledger.
+     */
+    @Transactional(readOnly = true)
+    public List<Mismatch> findMismatches(int limit) {
+        List<Mismatch> out = new ArrayList<>();
+        jdbcTemplate.query(USER_MISMATCHES.formatted(USER_TOTALS) + " limit ?", rs -> {
+            Long userId = rs.getLong(1);
+            BigDecimal storedOwes = rs.getBigDecimal(2), expectedOwes = rs.getBigDecimal(3);
+            BigDecimal storedOwed = rs.getBigDecimal(4), expectedOwed = rs.getBigDecimal(5);
+            boolean owesDiffers = compare(storedOwes, expectedOwes) != 0;
+            boolean owedDiffers = compare(storedOwed, expectedOwed) != 0;
+            if (owesDiffers) out.add(new Mismatch("user_balances.owes", userId, null, storedOwes, expectedOwes));
+            if (owedDiffers) out.add(new Mismatch("user_balances.owed", userId, null, storedOwed, expectedOwed));
+            if (!owesDiffers && !owedDiffers) {
+                out.add(new Mismatch("user_balances.net", userId, null, rs.getBigDecimal(6), nz(expectedOwed).subtract(nz(expectedOwes))));
+            }
+        }, limit);
+        jdbcTemplate.query(PAIR_MISMATCHES.formatted(PAIR_TOTALS.formatted("")) + " limit ?", rs -> {
+            out.add(new Mismatch("pair_balances", rs.getLong(1), rs.getLong(2),
+                    rs.getBigDecimal(3), rs.getBigDecimal(4)));
+        }, limit);
+        return out;
+    }
+
+    private static BigDecimal nz(BigDecimal v) {
+        return v == null ? BigDecimal.ZERO : v;
+    }
+
+    private static int compare(BigDecimal a, BigDecimal b) {
+        return nz(a).compareTo(nz(b));
+    }
+
+    @Transactional(readOnly = true)
+    public boolean isEmpty() {
+        return userBalanceRepo.count() == 0;
+    }
+
+    /**
+     * Forget a deleted user: its own row and every pair it was part of.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void remove(Long userId) {
+        BalanceDelta delta = new BalanceDelta(new LedgerEvent(LedgerEvent.Type.USER_REMOVED, null, null, userId, null));
+        jdbcTemplate.query("select owes, owed from user_balances where user_id = ?", rs -> {
+            delta.user(userId, rs.getBigDecimal(1), rs.getBigDecimal(2), -1);
+        }, userId);
+        jdbcTemplate.query("select debtor_id, creditor_id, amount from pair_balances where debtor_id = ? or creditor_id = ?", rs -> {
+            delta.pair(rs.getLong(1), rs.getLong(2), rs.getBigDecimal(3), -1);
+        }, userId, userId);
+        ledgerService.append(delta);
+
+        jdbcTemplate.update("delete from user_balances where user_id = ?", userId);
+        jdbcTemplate.update("delete from pair_balances where debtor_id = ? or creditor_id = ?", userId, userId);
+    }
+}
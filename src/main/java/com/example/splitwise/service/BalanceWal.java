@@ -0,0 +1,151 @@
+package com.example.splitwise.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only write-ahead log of {@link BalanceEngine} mutations in one memory-mapped file.
+ *
+ * Each record is {@code [int length][int crc32c][payload]}; a zero length marks the end.
+ * Recovery stops at the first record that is incomplete or fails its checksum, which is
+ * what a write torn by a crash looks like. Writes land in the page cache and survive a
+ * process crash; with {@code sync} they are also forced to disk per commit.
+ * Not thread-safe: the engine serialises access.
+ */
+final class BalanceWal implements AutoCloseable {
+
+    static final byte PREPARE = 1;
+    static final byte COMMIT = 2;
+    static final byte ABORT = 3;
+
+    interface Visitor {
+        /**
+         * One record; {@code entries} holds (kind, a, b, value) quadruples for PREPARE.
+         */
+        void visit(byte type, long seq, long[] entries);
+    }
+
+    private static final int HEADER = 8;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final boolean sync;
+    private final CRC32C crc = new CRC32C();
+
+    BalanceWal(Path file, int capacity, boolean sync) {
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map balance WAL " + file, e);
+        }
+        this.sync = sync;
+    }
+
+    /**
+     * Visit every intact record from the start and leave the write position after the last one.
+     */
+    int replay(Visitor visitor) {
+        buffer.position(0);
+        int records = 0;
+        while (buffer.remaining() >= HEADER) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+            int payload = buffer.position();
+            crc.reset();
+            crc.update(buffer.slice(payload, length));
+            if ((int) crc.getValue() != checksum) {
+                buffer.position(start);
+                break;
+            }
+            byte type = buffer.get();
+            long seq = buffer.getLong();
+            long[] entries = null;
+            if (type == PREPARE) {
+                int n = buffer.getInt();
+                entries = new long[n * 4];
+                for (int i = 0; i < n; i++) {
+                    entries[i * 4] = buffer.get();
+                    entries[i * 4 + 1] = buffer.getLong();
+                    entries[i * 4 + 2] = buffer.getLong();
+                    entries[i * 4 + 3] = buffer.getLong();
+                }
+            }
+            buffer.position(payload + length);
+            visitor.visit(type, seq, entries);
+            records++;
+        }
+        // a torn tail would otherwise be read as garbage after the next append
+        wipe(buffer.position(), Math.min(buffer.capacity(), buffer.position() + HEADER));
+        return records;
+    }
+
+    /**
+     * Append a record; false if it does not fit and the log must be checkpointed first.
+     */
+    boolean append(byte type, long seq, long[] entries) {
+        int n = entries == null ? 0 : entries.length / 4;
+        int length = 1 + 8 + (type == PREPARE ? 4 + n * 25 : 0);
+        // keep room for the end marker
+        if (buffer.remaining() < HEADER + length + HEADER) return false;
+
+        int start = buffer.position();
+        buffer.position(start + HEADER);
+        buffer.put(type);
+        buffer.putLong(seq);
+        if (type == PREPARE) {
+            buffer.putInt(n);
+            for (int i = 0; i < n; i++) {
+                buffer.put((byte) entries[i * 4]);
+                buffer.putLong(entries[i * 4 + 1]);
+                buffer.putLong(entries[i * 4 + 2]);
+                buffer.putLong(entries[i * 4 + 3]);
+            }
+        }
+        crc.reset();
+        crc.update(buffer.slice(start + HEADER, length));
+        // the length goes in last, so a half-written record is never seen as complete
+        buffer.putInt(start + 4, (int) crc.getValue());
+        buffer.putInt(start, length);
+        if (sync && type != PREPARE) buffer.force(0, buffer.position());
+        return true;
+    }
+
+    /**
+     * Drop every record, e.g. after a checkpoint captured them.
+     */
+    void reset() {
+        wipe(0, buffer.position());
+        buffer.position(0);
+        buffer.force();
+    }
+
+    int used() {
+        return buffer.position();
+    }
+
+    private void wipe(int from, int to) {
+        for (int i = from; i < to; i++) buffer.put(i, (byte) 0);
+    }
+
+    @Override
+    public void close() {
+        buffer.force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
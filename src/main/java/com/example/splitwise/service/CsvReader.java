@@ -0,0 +1,100 @@
+package com.example.splitwise.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal streaming RFC 4180 reader: comma separated, double-quote escaping,
+ * quoted fields may span lines. Reads one record at a time from the underlying
+ * reader, so input size is not bounded by memory.
+ */
+class CsvReader {
+
+    private final Reader in;
+    private final StringBuilder field = new StringBuilder();
+    private int pushback = -2;
+    private long line = 1;
+
+    CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Next record, or null at end of input. Blank lines are skipped.
+     */
+    List<String> next() throws IOException {
+        List<String> record = new ArrayList<>();
+        field.setLength(0);
+        boolean quoted = false;
+        boolean any = false;
+
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                if (quoted) throw new IOException("Unterminated quoted field at line " + line);
+                if (!any && record.isEmpty()) return null;
+                record.add(field.toString());
+                return record;
+            }
+            if (quoted) {
+                if (c == '"') {
+                    int n = read();
+                    if (n == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        unread(n);
+                    }
+                } else {
+                    if (c == '\n') line++;
+                    field.append((char) c);
+                }
+                continue;
+            }
+            switch (c) {
+                case '"' -> {
+                    quoted = true;
+                    any = true;
+                }
+                case ',' -> {
+                    record.add(field.toString());
+                    field.setLength(0);
+                    any = true;
+                }
+                case '\r' -> {
+                    int n = read();
+                    if (n != '\n') unread(n);
+                    if (!any && record.isEmpty()) continue;
+                    line++;
+                    record.add(field.toString());
+                    return record;
+                }
+                case '\n' -> {
+                    line++;
+                    if (!any && record.isEmpty()) continue;
+                    record.add(field.toString());
+                    return record;
+                }
+                default -> {
+                    field.append((char) c);
+                    any = true;
+                }
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pushback != -2) {
+            int c = pushback;
+            pushback = -2;
+            return c;
+        }
+        return in.read();
+    }
+
+    private void unread(int c) {
+        pushback = c;
+    }
+}
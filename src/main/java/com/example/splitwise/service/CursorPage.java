@@ -0,0 +1,107 @@
+package com.example.splitwise.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * One page of a keyset-paginated list. {@code nextCursor} is an opaque token for
+ * the {@code after} parameter of the next request, or null on the last page.
+ *
+ * Pages are keyed on the primary key, so every page is an index range scan from the
+ * cursor, however deep it is. Id order is a stable order, not creation order: events
+ * and debitors draw ids from pooled sequences, so each instance hands out its own
+ * block of 50 and a later row can get a lower id. Feeds that must be chronological
+ * page on a {@link Keyset} instead.
+ */
+public record CursorPage<T>(List<T> items, String nextCursor) {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 200;
+
+    private static final String PREFIX = "id:";
+    private static final String TS_PREFIX = "ts:";
+
+    /**
+     * Position in a list ordered by (timestamp, id), for feeds that page through time
+     * rather than by primary key.
+     */
+    public record Keyset(LocalDateTime ts, long id) {
+    }
+
+    /**
+     * Clamp a requested page size into [1, MAX_LIMIT].
+     */
+    public static int limit(Integer requested) {
+        if (requested == null) return DEFAULT_LIMIT;
+        return Math.max(1, Math.min(requested, MAX_LIMIT));
+    }
+
+    /**
+     * Decode an {@code after} token; null or blank means "from the start".
+     */
+    public static long after(String cursor) {
+        if (cursor == null || cursor.isBlank()) return 0L;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!raw.startsWith(PREFIX)) throw new IllegalArgumentException("invalid_cursor");
+            return Long.parseLong(raw.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            // also covers NumberFormatException and bad base64
+            throw new IllegalArgumentException("invalid_cursor");
+        }
+    }
+
+    public static String encode(long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode an {@code after} token of a time-ordered feed; null or blank means "from the start".
+     */
+    public static Keyset afterKeyset(String cursor) {
+        if (cursor == null || cursor.isBlank()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('/');
+            if (!raw.startsWith(TS_PREFIX) || sep < 0) throw new IllegalArgumentException("invalid_cursor");
+            return new Keyset(LocalDateTime.parse(raw.substring(TS_PREFIX.length(), sep)),
+                    Long.parseLong(raw.substring(sep + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("invalid_cursor");
+        }
+    }
+
+    public static String encode(Keyset key) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((TS_PREFIX + key.ts() + "/" + key.id()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Same as {@link #of} for a time-ordered feed.
+     */
+    public static <T> CursorPage<T> ofKeyset(List<T> rows, int limit, Function<T, Keyset> key) {
+        if (rows.size() <= limit) return new CursorPage<>(rows, null);
+        List<T> items = rows.subList(0, limit);
+        return new CursorPage<>(items, encode(key.apply(items.get(limit - 1))));
+    }
+
+    /**
+     * Build a page from rows fetched with {@code limit + 1}: the extra row only
+     * signals that another page exists and is dropped.
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int limit, ToLongFunction<T> id) {
+        if (rows.size() <= limit) return new CursorPage<>(rows, null);
+        List<T> items = rows.subList(0, limit);
+        return new CursorPage<>(items, encode(id.applyAsLong(items.get(limit - 1))));
+    }
+
+    public <R> CursorPage<R> map(Function<T, R> mapper) {
+        return new CursorPage<>(items.stream().map(mapper).toList(), nextCursor);
+    }
+}
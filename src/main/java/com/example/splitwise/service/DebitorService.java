@@ -6,11 +6,11 @@ import com.example.splitwise.model.User;
 import com.example.splitwise.repo.DebitorRepo;
 import com.example.splitwise.repo.EventRepo;
 import com.example.splitwise.repo.UserRepo;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 public class DebitorService {
@@ -18,11 +18,14 @@ public class DebitorService {
     private final DebitorRepo debitorRepo;
     private final EventRepo eventRepo;
     private final UserRepo userRepo;
+    private final BalanceService balanceService;
 
-    public DebitorService(DebitorRepo debitorRepo, EventRepo eventRepo, UserRepo userRepo){
+    public DebitorService(DebitorRepo debitorRepo, EventRepo eventRepo, UserRepo userRepo,
+                          BalanceService balanceService){
         this.debitorRepo = debitorRepo;
         this.eventRepo = eventRepo;
         this.userRepo = userRepo;
+        this.balanceService = balanceService;
     }
 
     /**
@@ -48,6 +51,8 @@ public class DebitorService {
         // keep bidirectional relation consistent (in-memory)
         event.getSplits().add(saved);
 
+        balanceService.apply(new BalanceDelta(LedgerEvent.split(LedgerEvent.Type.SPLIT_CREATED, saved)).split(saved, +1));
+
         return saved;
     }
 
@@ -56,9 +61,10 @@ public class DebitorService {
      */
     @Transactional
     public void deleteDebitor(Long debitorId){
-        if (!debitorRepo.existsById(debitorId))
-            throw new IllegalArgumentException("Debitor not found: " + debitorId);
-        debitorRepo.deleteById(debitorId);
+        Debitor d = debitorRepo.findById(debitorId)
+                .orElseThrow(() -> new IllegalArgumentException("Debitor not found: " + debitorId));
+        balanceService.apply(new BalanceDelta(LedgerEvent.split(LedgerEvent.Type.SPLIT_REMOVED, d)).split(d, -1));
+        debitorRepo.delete(d);
     }
 
     /**
@@ -71,23 +77,21 @@ public class DebitorService {
     }
 
     /**
-     * List all debitors (global).
+     * List debitors (global), one keyset page at a time.
      */
     @Transactional(readOnly = true)
-    public List<Debitor> getAllDebitors(){
-        return debitorRepo.findAll();
+    public CursorPage<Debitor> getAllDebitors(Integer limit, String after){
+        int size = CursorPage.limit(limit);
+        List<Debitor> rows = debitorRepo.findPageAfter(CursorPage.after(after), Limit.of(size + 1));
+        return CursorPage.of(rows, size, Debitor::getId);
     }
 
     /**
-     * List debitors for a specific event.
-     * Uses in-transaction filtering (safe for small datasets).
+     * List debitors for a specific event (served by idx_debitors_event).
      */
     @Transactional(readOnly = true)
     public List<Debitor> getDebitorsByEvent(Long eventId){
-        // if your DebitorRepo has a method like findByEventId, replace this with that call.
-        return debitorRepo.findAll().stream()
-                .filter(d -> d.getEvent() != null && eventId.equals(d.getEvent().getId()))
-                .collect(Collectors.toList());
+        return debitorRepo.findByEventId(eventId);
     }
 
     /**
@@ -97,6 +101,7 @@ public class DebitorService {
     public Debitor updateDebitor(Long id, Debitor payload){
         Debitor existing = debitorRepo.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Debitor not found: " + id));
+        BalanceDelta delta = new BalanceDelta(LedgerEvent.split(LedgerEvent.Type.SPLIT_ADJUSTED, existing)).split(existing, -1);
 
         // update only safe/simple fields
         if (payload.getDebAmount() != null) existing.setDebAmount(payload.getDebAmount());
@@ -105,6 +110,8 @@ public class DebitorService {
         existing.setSettled(payload.isSettled());
         if (payload.getPaidAt() != null) existing.setPaidAt(payload.getPaidAt());
 
-        return debitorRepo.save(existing);
+        Debitor saved = debitorRepo.save(existing);
+        balanceService.apply(delta.split(saved, +1));
+        return saved;
     }
 }
@@ -0,0 +1,163 @@
+package com.example.splitwise.service;
+
+import com.example.splitwise.model.EmailOutbox;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drains the email outbox in the background.
+ *
+ * Each worker is a virtual thread that claims a batch, sends it over one SMTP
+ * connection and records the per-message outcome. Workers coordinate through the
+ * database only, so several instances of the app can run dispatchers side by side.
+ */
+@Component
+@ConditionalOnProperty(name = "app.mail.outbox.enabled", havingValue = "true", matchIfMissing = true)
+public class EmailOutboxDispatcher implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(EmailOutboxDispatcher.class);
+
+    private final EmailOutboxService outboxService;
+    private final EmailService emailService;
+
+    private final int workers;
+    private final int batchSize;
+    private final Duration pollInterval;
+    private final int maxAttempts;
+    private final Duration backoff;
+    private final Duration maxBackoff;
+    private final Duration staleAfter;
+
+    private final Timer lag;
+    private final Timer batchTimer;
+    private final Counter sent;
+    private final Counter retried;
+    private final Counter failed;
+
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    public EmailOutboxDispatcher(EmailOutboxService outboxService, EmailService emailService,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.mail.outbox.workers:2}") int workers,
+                                 @Value("${app.mail.outbox.batch-size:50}") int batchSize,
+                                 @Value("${app.mail.outbox.poll-interval-ms:1000}") long pollIntervalMs,
+                                 @Value("${app.mail.outbox.max-attempts:8}") int maxAttempts,
+                                 @Value("${app.mail.outbox.backoff-ms:30000}") long backoffMs,
+                                 @Value("${app.mail.outbox.max-backoff-ms:3600000}") long maxBackoffMs,
+                                 @Value("${app.mail.outbox.stale-after-ms:300000}") long staleAfterMs) {
+        this.outboxService = outboxService;
+        this.emailService = emailService;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.pollInterval = Duration.ofMillis(pollIntervalMs);
+        this.maxAttempts = maxAttempts;
+        this.backoff = Duration.ofMillis(backoffMs);
+        this.maxBackoff = Duration.ofMillis(maxBackoffMs);
+        this.staleAfter = Duration.ofMillis(staleAfterMs);
+
+        // time from enqueue (user change committed) to hand-off to the SMTP server
+        this.lag = Timer.builder("email.outbox.delivery.lag")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("email.outbox.batch").register(meterRegistry);
+        this.sent = Counter.builder("email.outbox.messages").tag("outcome", "sent").register(meterRegistry);
+        this.retried = Counter.builder("email.outbox.messages").tag("outcome", "retry").register(meterRegistry);
+        this.failed = Counter.builder("email.outbox.messages").tag("outcome", "failed").register(meterRegistry);
+        Gauge.builder("email.outbox.pending", outboxService, EmailOutboxService::countPending)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            threads.add(Thread.ofVirtual().name("email-outbox-" + i).start(this::run));
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        threads.forEach(Thread::interrupt);
+        for (Thread t : threads) {
+            try {
+                t.join(Duration.ofSeconds(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        threads.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                if (drainOnce() == 0) {
+                    Thread.sleep(pollInterval);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // database unavailable or similar; back off and try again
+                log.warn("Email outbox dispatch failed: {}", e.getMessage());
+                try {
+                    Thread.sleep(pollInterval);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Claim, send and record one batch. Returns the number of messages processed.
+     */
+    int drainOnce() {
+        List<EmailOutbox> batch = outboxService.claimBatch(batchSize, staleAfter);
+        if (batch.isEmpty()) return 0;
+
+        long start = System.nanoTime();
+        EmailService.BatchResult result = emailService.sendBatch(batch);
+        batchTimer.record(Duration.ofNanos(System.nanoTime() - start));
+
+        int givenUp = outboxService.recordResult(result, maxAttempts, backoff, maxBackoff);
+
+        LocalDateTime now = LocalDateTime.now();
+        for (EmailOutbox o : batch) {
+            if (!result.failed().containsKey(o.getId())) {
+                lag.record(Duration.between(o.getCreatedAt(), now));
+            }
+        }
+        sent.increment(result.sent().size());
+        retried.increment(result.failed().size() - givenUp);
+        failed.increment(givenUp);
+        if (!result.failed().isEmpty()) {
+            log.warn("Email outbox: {} of {} messages failed ({} given up)",
+                    result.failed().size(), batch.size(), givenUp);
+        }
+        return batch.size();
+    }
+}
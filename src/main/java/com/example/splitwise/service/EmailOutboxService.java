@@ -0,0 +1,104 @@
+package com.example.splitwise.service;
+
+import com.example.splitwise.model.EmailOutbox;
+import com.example.splitwise.repo.EmailOutboxRepo;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Database side of the email outbox: claiming due rows and recording per-message outcomes.
+ */
+@Service
+public class EmailOutboxService {
+
+    // SKIP LOCKED lets several dispatcher threads (or instances) drain the table without
+    // blocking each other; rows left in SENDING by a crashed dispatcher are reclaimed
+    private static final String CLAIM_DUE = """
+            update email_outbox set status = 'SENDING', claimed_at = now()
+            where id in (
+                select id from email_outbox
+                where (status = 'PENDING' and next_attempt_at <= now())
+                   or (status = 'SENDING' and claimed_at < ?)
+                order by id
+                limit ?
+                for update skip locked
+            )
+            returning id
+            """;
+
+    private final EmailOutboxRepo outboxRepo;
+    private final JdbcTemplate jdbcTemplate;
+
+    public EmailOutboxService(EmailOutboxRepo outboxRepo, JdbcTemplate jdbcTemplate) {
+        this.outboxRepo = outboxRepo;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Mark up to {@code limit} due messages as SENDING and return them, oldest first.
+     */
+    @Transactional
+    public List<EmailOutbox> claimBatch(int limit, Duration staleAfter) {
+        List<Long> ids = jdbcTemplate.queryForList(CLAIM_DUE, Long.class,
+                LocalDateTime.now().minus(staleAfter), limit);
+        if (ids.isEmpty()) return List.of();
+        return outboxRepo.findAllById(ids).stream()
+                .sorted((a, b) -> a.getId().compareTo(b.getId()))
+                .toList();
+    }
+
+    /**
+     * Record the outcome of a batch. Failed messages are rescheduled with exponential
+     * backoff until {@code maxAttempts} is reached, then parked as FAILED.
+     * Returns the number of messages that were given up on.
+     */
+    @Transactional
+    public int recordResult(EmailService.BatchResult result, int maxAttempts, Duration baseBackoff,
+                            Duration maxBackoff) {
+        LocalDateTime now = LocalDateTime.now();
+        for (EmailOutbox o : outboxRepo.findAllById(result.sent())) {
+            o.setStatus(EmailOutbox.Status.SENT);
+            o.setAttempts(o.getAttempts() + 1);
+            o.setSentAt(now);
+            o.setLastError(null);
+        }
+
+        int givenUp = 0;
+        Map<Long, Exception> failed = result.failed();
+        for (EmailOutbox o : outboxRepo.findAllById(failed.keySet())) {
+            int attempts = o.getAttempts() + 1;
+            o.setAttempts(attempts);
+            o.setLastError(truncate(String.valueOf(failed.get(o.getId()).getMessage()), 1000));
+            if (attempts >= maxAttempts) {
+                o.setStatus(EmailOutbox.Status.FAILED);
+                givenUp++;
+            } else {
+                o.setStatus(EmailOutbox.Status.PENDING);
+                o.setNextAttemptAt(now.plus(backoff(attempts, baseBackoff, maxBackoff)));
+            }
+        }
+        return givenUp;
+    }
+
+    @Transactional(readOnly = true)
+    public long countPending() {
+        return outboxRepo.countPending();
+    }
+
+    // base * 2^(attempts-1), capped
+    static Duration backoff(int attempts, Duration base, Duration max) {
+        int shift = Math.min(attempts - 1, 20);
+        Duration d = base.multipliedBy(1L << shift);
+        return d.compareTo(max) > 0 ? max : d;
+    }
+
+    private static String truncate(String s, int max) {
+        return s.length() <= max ? s : s.substring(0, max);
+    }
+}
@@ -1,17 +1,49 @@
 package com.example.splitwise.service;
 
+import com.example.splitwise.model.EmailOutbox;
+import com.example.splitwise.model.User;
+import com.example.splitwise.repo.EmailOutboxRepo;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeUtility;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Service
 public class EmailService {
 
+    /**
+     * Outcome of one batch: ids that were handed to the SMTP server, and the error
+     * for every id that was not.
+     */
+    public record BatchResult(List<Long> sent, Map<Long, Exception> failed) {
+    }
+
+    private static final String HTML_CONTENT_TYPE = "text/html; charset=UTF-8";
+
     private final JavaMailSender mailSender;
+    private final EmailOutboxRepo outboxRepo;
+    private final MailTemplateEngine templates;
+
+    // header values that are the same for every recipient are RFC 2047-encoded once
+    private volatile InternetAddress fromAddress;
+    private final Cache<String, String> encodedSubjects = Caffeine.newBuilder().maximumSize(1_000).build();
 
     @Value("${app.mail.from}")
     private String fromEmail;
@@ -22,105 +54,128 @@ public class EmailService {
     @Value("${app.backend.url}")
     private String backendUrl;
 
-    public EmailService(JavaMailSender mailSender) {
+    public EmailService(JavaMailSender mailSender, EmailOutboxRepo outboxRepo, MailTemplateEngine templates) {
         this.mailSender = mailSender;
+        this.outboxRepo = outboxRepo;
+        this.templates = templates;
     }
 
-    public void sendVerificationEmail(String toEmail, String username, String token) {
+    /**
+     * Queue the verification mail in the outbox. Runs inside the caller's transaction,
+     * so the mail exists exactly when the user change commits; delivery happens later
+     * on {@link EmailOutboxDispatcher}.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public EmailOutbox queueVerificationEmail(String toEmail, String username, String token) {
         String verifyLink = backendUrl + "/api/auth/verify-email?token=" + token;
-        String subject = "Verify your SplitEase account";
+        return queue(toEmail, "verification", Map.of(
+                "name", displayName(username),
+                "verifyLink", verifyLink));
+    }
 
-        String html = buildVerificationHtml(username, verifyLink);
+    /**
+     * Tell an event creator that a participant paid towards their split.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public EmailOutbox queuePaymentReceivedEmail(User receiver, User payer, String eventTitle,
+                                                 BigDecimal amount, BigDecimal remaining) {
+        return queue(receiver.getEmail(), "payment-received", Map.of(
+                "name", displayName(receiver.getUsername()),
+                "payer", displayName(payer.getUsername()),
+                "event", eventTitle == null ? "an event" : eventTitle,
+                "amount", amount.toPlainString(),
+                "remaining", remaining.toPlainString()));
+    }
 
-        try {
-            MimeMessage mimeMessage = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, "UTF-8");
+    /**
+     * Nudge a participant about what they still owe on an event.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public EmailOutbox queueReminderEmail(User debtor, User creditor, String eventTitle, BigDecimal amount) {
+        return queue(debtor.getEmail(), "reminder", Map.of(
+                "name", displayName(debtor.getUsername()),
+                "creditor", creditor == null ? "the organiser" : displayName(creditor.getUsername()),
+                "event", eventTitle == null ? "an event" : eventTitle,
+                "amount", amount.toPlainString()));
+    }
 
-            helper.setTo(toEmail);
-            helper.setSubject(subject);
-            helper.setText(html, true); // HTML body
-            helper.setFrom(new InternetAddress(fromEmail, fromName));
+    private EmailOutbox queue(String toEmail, String template, Map<String, ?> values) {
+        MailTemplateEngine.Rendered mail = templates.render(template, values);
+        return outboxRepo.save(new EmailOutbox(toEmail, mail.subject(), mail.html()));
+    }
 
-            mailSender.send(mimeMessage);
-        } catch (MessagingException | java.io.UnsupportedEncodingException e) {
-            throw new RuntimeException("Failed to send verification email", e);
+    private static String displayName(String username) {
+        return (username != null && !username.isBlank()) ? username : "there";
+    }
+
+    /**
+     * Send a batch over a single SMTP connection. A message that cannot be built or is
+     * rejected by the server only fails itself; the rest of the batch still goes out.
+     */
+    public BatchResult sendBatch(List<EmailOutbox> batch) {
+        Map<Long, Exception> failed = new LinkedHashMap<>();
+        Map<MimeMessage, Long> ids = new IdentityHashMap<>();
+        List<MimeMessage> messages = new ArrayList<>(batch.size());
+
+        for (EmailOutbox o : batch) {
+            try {
+                MimeMessage mimeMessage = mailSender.createMimeMessage();
+                mimeMessage.setRecipient(MimeMessage.RecipientType.TO, new InternetAddress(o.getRecipient(), true));
+                mimeMessage.setFrom(fromAddress());
+                mimeMessage.setHeader("Subject", encodedSubject(o.getSubject()));
+                mimeMessage.setContent(o.getBody(), HTML_CONTENT_TYPE);
+
+                messages.add(mimeMessage);
+                ids.put(mimeMessage, o.getId());
+            } catch (MessagingException | UnsupportedEncodingException e) {
+                failed.put(o.getId(), e);
+            }
+        }
+
+        if (!messages.isEmpty()) {
+            try {
+                // JavaMailSender opens one transport for the whole array
+                mailSender.send(messages.toArray(new MimeMessage[0]));
+            } catch (MailSendException e) {
+                if (e.getFailedMessages().isEmpty()) {
+                    messages.forEach(msg -> failed.put(ids.get(msg), e));
+                }
+                e.getFailedMessages().forEach((msg, ex) -> {
+                    Long id = ids.get(msg);
+                    if (id != null) failed.put(id, ex);
+                });
+            } catch (MailException e) {
+                messages.forEach(msg -> failed.put(ids.get(msg), e));
+            }
+        }
+
+        List<Long> sent = new ArrayList<>(ids.size());
+        for (MimeMessage msg : messages) {
+            Long id = ids.get(msg);
+            if (!failed.containsKey(id)) sent.add(id);
         }
+        return new BatchResult(sent, failed);
     }
 
-    private String buildVerificationHtml(String username, String verifyLink) {
-        String name = (username != null && !username.isBlank()) ? username : "there";
-
-        StringBuilder sb = new StringBuilder();
-
-        sb.append("<!doctype html>");
-        sb.append("<html>");
-        sb.append("<head>");
-        sb.append("<meta charset=\"UTF-8\" />");
-        sb.append("<title>Verify your SplitEase account</title>");
-        sb.append("</head>");
-        sb.append("<body style=\"margin:0;padding:0;background-color:#0b1120;")
-                .append("font-family:system-ui,-apple-system,BlinkMacSystemFont,'Segoe UI',sans-serif;\">");
-
-        sb.append("<table width=\"100%\" cellpadding=\"0\" cellspacing=\"0\" style=\"padding:40px 0;\">")
-                .append("<tr><td align=\"center\">");
-
-        sb.append("<table width=\"520\" cellpadding=\"0\" cellspacing=\"0\" ")
-                .append("style=\"background:rgba(255,255,255,0.05);")
-                .append(" border:1px solid rgba(255,255,255,0.07);")
-                .append(" border-radius:16px;padding:32px;")
-                .append(" box-shadow:0px 0px 35px rgba(0,0,0,0.55);\">");
-
-        /* ===========================
-   ✨ STYLISH TEXT HEADER (NO LOGO)
-   =========================== */
-        sb.append("<tr><td align=\"center\" style=\"padding-bottom:28px;\">")
-                .append("<div style=\"font-size:28px;font-weight:800;color:#38f8b0;")
-                .append("letter-spacing:1px;font-family:'Poppins','Inter',sans-serif;")
-                .append("text-shadow:0px 0px 12px rgba(0,255,180,0.45);\">")
-                .append("₹ SplitEase")
-                .append("</div>")
-                .append("<div style=\"color:#94a3b8;font-size:13px;margin-top:6px;\">Smart Expense Sharing</div>")
-                .append("</td></tr>");
-
-        /* Heading */
-        sb.append("<tr><td style=\"padding-bottom:8px;\">")
-                .append("<h1 style=\"margin:0;color:#e5e7eb;font-size:20px;font-weight:600;\">")
-                .append("Verify your email address")
-                .append("</h1></td></tr>");
-
-        /* Body */
-        sb.append("<tr><td style=\"padding-bottom:18px;\">")
-                .append("<p style=\"margin:0;color:#9ca3af;font-size:14px;line-height:1.6;\">")
-                .append("Hey ").append(name).append(",<br><br>")
-                .append("Welcome to SplitEase — your smart, transparent bill-splitting wallet.<br>")
-                .append("Click below to activate your account and start tracking expenses smoothly.")
-                .append("</p></td></tr>");
-
-        /* CTA BUTTON */
-        sb.append("<tr><td align=\"center\" style=\"padding:20px 0 28px;\">")
-                .append("<a href=\"").append(verifyLink).append("\" ")
-                .append("style=\"background:linear-gradient(135deg,#00E5FF,#00FF7F);")
-                .append(" padding:14px 34px;border-radius:8px;color:#001B22;")
-                .append(" font-weight:700;font-size:15px;text-decoration:none;")
-                .append(" box-shadow:0 0 22px rgba(0,255,204,0.45);\">")
-                .append("Verify Email")
-                .append("</a></td></tr>");
-
-        /* Extra link */
-        sb.append("<tr><td style=\"padding-bottom:20px;\">")
-                .append("<p style=\"margin:0;color:#6b7280;font-size:12px;line-height:1.6;\">")
-                .append("Or copy and paste this link manually:<br>")
-                .append("<a href=\"").append(verifyLink).append("\" style=\"color:#00E5FF;text-decoration:none;\">")
-                .append(verifyLink).append("</a></p></td></tr>");
-
-        sb.append("<tr><td><p style=\"margin:0;color:#475569;font-size:11px;\">")
-                .append("If this wasn't you, ignore the email safely.")
-                .append("</p></td></tr>");
-
-        sb.append("</table></td></tr></table></body></html>");
-
-        return sb.toString();
+    private InternetAddress fromAddress() throws UnsupportedEncodingException {
+        InternetAddress from = fromAddress;
+        if (from == null) {
+            from = new InternetAddress(fromEmail, fromName, "UTF-8");
+            fromAddress = from;
+        }
+        return from;
+    }
+
+    private String encodedSubject(String subject) {
+        return encodedSubjects.get(subject, s -> {
+            try {
+                return MimeUtility.fold(9, MimeUtility.encodeText(s, "UTF-8", null));
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        });
     }
+
 }
 
 
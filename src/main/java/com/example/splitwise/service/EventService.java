@@ -2,18 +2,29 @@ package com.example.splitwise.service;
 
 import com.example.splitwise.model.Debitor;
 import com.example.splitwise.model.Event;
+import com.example.splitwise.model.Money;
 import com.example.splitwise.model.User;
 import com.example.splitwise.repo.DebitorRepo;
 import com.example.splitwise.repo.EventRepo;
 import com.example.splitwise.repo.UserRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 public class EventService {
@@ -21,11 +32,45 @@ public class EventService {
     private final EventRepo eventRepo;
     private final DebitorRepo debitorRepo;
     private final UserRepo userRepo;
+    private final BalanceService balanceService;
+    private final EmailService emailService;
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration reminderCooldown;
+
+    // one reminder round per event per cooldown; the row is only claimed if the last round is old enough
+    private static final String CLAIM_REMINDER = """
+            insert into event_reminders (event_id, sent_at) values (?, now())
+            on conflict (event_id) do update set sent_at = excluded.sent_at
+            where event_reminders.sent_at <= now() - make_interval(secs => ?)
+            """;
 
-    public EventService(EventRepo eventRepo, DebitorRepo debitorRepo, UserRepo userRepo){
+    /**
+     * Thrown when reminders for an event were already sent within the cooldown.
+     */
+    public static class ReminderCooldownException extends IllegalStateException {
+
+        private final Duration retryAfter;
+
+        public ReminderCooldownException(Duration retryAfter) {
+            super("Reminders for this event were sent recently");
+            this.retryAfter = retryAfter;
+        }
+
+        public Duration getRetryAfter() {
+            return retryAfter;
+        }
+    }
+
+    public EventService(EventRepo eventRepo, DebitorRepo debitorRepo, UserRepo userRepo,
+                        BalanceService balanceService, EmailService emailService, JdbcTemplate jdbcTemplate,
+                        @Value("${events.reminder-cooldown:24h}") Duration reminderCooldown){
         this.eventRepo = eventRepo;
         this.debitorRepo = debitorRepo;
         this.userRepo = userRepo;
+        this.balanceService = balanceService;
+        this.emailService = emailService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.reminderCooldown = reminderCooldown;
     }
 
     /**
@@ -36,11 +81,15 @@ public class EventService {
     public Event createEvent(Event e, List<Debitor> splits){
         e.setCreatedAt(LocalDateTime.now());
 
-        // ensure each debitor links to a managed User and the event
-        List<Debitor> toPersist = new ArrayList<>();
+        // resolve every participant with one query, then link each debitor to its managed User
+        Map<Long, User> users = new HashMap<>();
+        userRepo.findAllById(splits.stream().map(d -> d.getUser().getId()).collect(Collectors.toSet()))
+                .forEach(u -> users.put(u.getId(), u));
+
+        List<Debitor> toPersist = new ArrayList<>(splits.size());
         for (Debitor d : splits){
-            User u = userRepo.findById(d.getUser().getId())
-                    .orElseThrow(() -> new IllegalArgumentException("Participant user not found: " + d.getUser().getId()));
+            User u = users.get(d.getUser().getId());
+            if (u == null) throw new IllegalArgumentException("Participant user not found: " + d.getUser().getId());
             d.setUser(u);
             d.setEvent(e);      // attach to the unsaved event
             toPersist.add(d);
@@ -51,27 +100,44 @@ public class EventService {
         e.getSplits().addAll(toPersist);
 
         // saving event will cascade and save debitors
-        return eventRepo.save(e);
+        Event saved = eventRepo.save(e);
+        balanceService.apply(new BalanceDelta(LedgerEvent.event(LedgerEvent.Type.EVENT_CREATED, saved)).event(saved, +1));
+        return saved;
+    }
+
+    /**
+     * Create an event split among {@code participants} by {@code strategy}. Shares are
+     * computed on primitive arrays first; the Debitor rows are only built to be persisted.
+     */
+    @Transactional
+    public Event createEvent(Event e, List<User> participants, SplitStrategy strategy){
+        if (participants.isEmpty()) throw new IllegalArgumentException("No participants");
+        long[] shares = strategy.allocate(e.getTotalMoney().minor(), participants.size());
+        return createEvent(e, splits(e, participants, shares));
     }
     @Transactional
     public Debitor addDebitor(Long eventId, Debitor d) {
         Debitor ready = addDebitorLogic(eventId, d);
-        return debitorRepo.save(ready);
+        Debitor saved = debitorRepo.save(ready);
+        balanceService.apply(new BalanceDelta(LedgerEvent.split(LedgerEvent.Type.SPLIT_CREATED, saved)).split(saved, +1));
+        return saved;
     }
 
     @Transactional(readOnly = true)
-    public List<Event> getEventsForUser(Long userId) {
-        return eventRepo.findEventsByUser(userId);
+    public CursorPage<Event> getEventsForUser(Long userId, Integer limit, String after) {
+        int size = CursorPage.limit(limit);
+        List<Event> rows = eventRepo.findEventsByUserAfter(userId, CursorPage.after(after), Limit.of(size + 1));
+        return CursorPage.of(rows, size, Event::getId);
     }
 
 
 
     @Transactional
     public void deleteDebitor(Long debitorId) {
-        if (!debitorRepo.existsById(debitorId)) {
-            throw new IllegalArgumentException("Debitor not found");
-        }
-        debitorRepo.deleteById(debitorId);
+        Debitor d = debitorRepo.findById(debitorId)
+                .orElseThrow(() -> new IllegalArgumentException("Debitor not found"));
+        balanceService.apply(new BalanceDelta(LedgerEvent.split(LedgerEvent.Type.SPLIT_REMOVED, d)).split(d, -1));
+        debitorRepo.delete(d);
     }
 
     /**
@@ -123,43 +189,78 @@ public class EventService {
 //    }
 
     @Transactional(readOnly = true)
-    public List<Event> getAllEvents(){
-        return eventRepo.findAll();
+    public CursorPage<Event> getEvents(Integer limit, String after){
+        int size = CursorPage.limit(limit);
+        List<Event> rows = eventRepo.findByIdGreaterThanOrderByIdAsc(CursorPage.after(after), Limit.of(size + 1));
+        return CursorPage.of(rows, size, Event::getId);
     }
 
     @Transactional
     public void deleteEvent(Long id){
-        if (!eventRepo.existsById(id)) throw new IllegalArgumentException("Event not found");
-        eventRepo.deleteById(id); // cascades to splits (orphanRemoval)
+        Event e = eventRepo.findByIdWithSplitsAndUsers(id)
+                .orElseThrow(() -> new IllegalArgumentException("Event not found"));
+        balanceService.apply(new BalanceDelta(LedgerEvent.event(LedgerEvent.Type.EVENT_DELETED, e)).event(e, -1));
+        eventRepo.delete(e); // cascades to splits (orphanRemoval)
     }
 
     @Transactional
     public Event cancelEvent(Long id){
         Event e = getEvent(id);
+        BalanceDelta delta = new BalanceDelta(LedgerEvent.event(LedgerEvent.Type.EVENT_CANCELLED, e)).event(e, -1);
         e.setCancelled(true);
-        return eventRepo.save(e);
+        Event saved = eventRepo.save(e);
+        balanceService.apply(delta.event(saved, +1));
+        return saved;
+    }
+
+    /**
+     * Queue a reminder mail for every participant with an unsettled share on a live event.
+     * Only the event's creator may send them, at most once per {@code events.reminder-cooldown}.
+     * Returns the number of reminders queued.
+     */
+    @Transactional
+    public int sendReminders(Long eventId, Long callerId){
+        Event e = eventRepo.findByIdWithSplitsAndUsers(eventId)
+                .orElseThrow(() -> new IllegalArgumentException("Event not found"));
+        if (e.getCreator() == null || !e.getCreator().getId().equals(callerId)) {
+            throw new AccessDeniedException("Only the event's creator can send reminders");
+        }
+        if (e.isCancelled()) throw new IllegalStateException("Event is cancelled");
+        // rolled back with the rest if queueing fails, so a failed round does not start the cooldown
+        if (jdbcTemplate.update(CLAIM_REMINDER, eventId, reminderCooldown.toSeconds()) == 0) {
+            throw new ReminderCooldownException(reminderCooldown);
+        }
+
+        int queued = 0;
+        for (Debitor d : e.getSplits()) {
+            User u = d.getUser();
+            if (d.isSettled() || u == null || u.getEmail() == null) continue;
+            if (e.getCreator() != null && e.getCreator().getId().equals(u.getId())) continue;
+            emailService.queueReminderEmail(u, e.getCreator(), e.getTitle(), d.getRemaining().toBigDecimal());
+            queued++;
+        }
+        return queued;
     }
 
     // helper: recompute shares if you want to create splits inside service (equal split)
     @Transactional
     public List<Debitor> createEqualSplits(Event e, List<User> participants){
-        int n = participants.size();
-        if (n == 0) throw new IllegalArgumentException("No participants");
-        BigDecimal share = e.getTotal().divide(BigDecimal.valueOf(n), 2, BigDecimal.ROUND_HALF_UP);
-        BigDecimal remainder = e.getTotal().subtract(share.multiply(BigDecimal.valueOf(n)));
+        long[] shares = SplitEngine.equal(e.getTotalMoney().minor(), participants.size());
+        e.getSplits().addAll(splits(e, participants, shares));
+        return e.getSplits();
+    }
 
-        for (int i = 0; i < participants.size(); i++){
-            User u = participants.get(i);
+    private static List<Debitor> splits(Event e, List<User> participants, long[] shares){
+        List<Debitor> splits = new ArrayList<>(shares.length);
+        for (int i = 0; i < shares.length; i++){
             Debitor d = new Debitor();
-            d.setUser(u);
+            d.setUser(participants.get(i));
             d.setEvent(e);
-            BigDecimal assigned = share;
-            if (i == 0 && remainder.compareTo(BigDecimal.ZERO) > 0) assigned = assigned.add(remainder);
-            d.setDebAmount(assigned);
+            d.setDebMoney(Money.ofMinor(shares[i]));
             d.setIncluded(true);
-            e.getSplits().add(d);
+            splits.add(d);
         }
-        return e.getSplits();
+        return splits;
     }
     @Transactional
     public Event save(Event existing) {
@@ -183,7 +284,15 @@ public class EventService {
             existing.getSplits().addAll(fixed);
         }
         // persist event (will cascade to debitors if mapped)
-        return eventRepo.save(existing);
+        Event saved = eventRepo.saveAndFlush(existing);
+
+        // callers mutate the event before handing it in, so there is no "before" state
+        // to diff against: recompute the creator and participants from the ledger instead
+        Set<Long> affected = new HashSet<>();
+        if (saved.getCreator() != null) affected.add(saved.getCreator().getId());
+        saved.getSplits().forEach(d -> affected.add(d.getUser().getId()));
+        balanceService.recompute(affected, LedgerEvent.event(LedgerEvent.Type.EVENT_UPDATED, saved));
+        return saved;
     }
 
 
@@ -0,0 +1,414 @@
+package com.example.splitwise.service;
+
+import com.example.splitwise.model.Debitor;
+import com.example.splitwise.model.Event;
+import com.example.splitwise.model.Money;
+import com.example.splitwise.model.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bulk import of expenses (one event with equal splits per row) from CSV or NDJSON.
+ *
+ * Rows are parsed one at a time from the request stream and written in chunks: each
+ * chunk resolves its user references with one query (memoised for the whole import),
+ * takes ids from the entity sequences in bulk, inserts events and splits as JDBC
+ * batches and applies the balance deltas, all in its own transaction. A failing
+ * chunk does not roll back the chunks before it.
+ *
+ * CSV needs a header row with {@code title,total,participants} and optional
+ * {@code creator} and {@code createdAt} columns; participants are separated by {@code ;}.
+ * NDJSON uses the same field names with {@code participants} as an array. Users are
+ * referenced by id, email or username. Every imported event is created by the caller:
+ * a row without a creator is the caller's, a row naming anyone else is rejected.
+ */
+@Service
+public class ExpenseImportService {
+
+    public enum Format {
+        CSV, NDJSON;
+
+        /**
+         * Pick the format from an explicit name or else the request content type.
+         */
+        public static Format of(String explicit, String contentType) {
+            String s = (explicit != null ? explicit : contentType == null ? "" : contentType).toLowerCase(Locale.ROOT);
+            if (s.contains("csv")) return CSV;
+            if (s.contains("ndjson") || s.contains("jsonl") || s.contains("json")) return NDJSON;
+            throw new IllegalArgumentException("unsupported_format");
+        }
+    }
+
+    public record RowError(long row, String error) {
+    }
+
+    public record ImportReport(long rows, long imported, long failed, List<RowError> errors, boolean errorsTruncated) {
+    }
+
+    private record Row(long number, String title, String creator, BigDecimal total, List<String> participants,
+                       LocalDateTime createdAt) {
+    }
+
+    // must match allocationSize of the events_seq / debitors_seq generators (pooled: value - 49 .. value)
+    private static final int SEQUENCE_BLOCK = 50;
+
+    private static final String NEXT_IDS = "select nextval('%s') from generate_series(1, ?)";
+
+    private static final String INSERT_EVENT = """
+            insert into events (id, title, created_at, creator_id, total, cancelled)
+            values (?, ?, ?, ?, ?, false)
+            """;
+
+    private static final String INSERT_DEBITOR = """
+            insert into debitors (id, user_id, event_id, deb_amount, amount_paid, settled, included, version)
+            values (?, ?, ?, ?, 0, false, true, 0)
+            """;
+
+    private static final String RESOLVE_USERS = """
+            select id, email, upper(username) from users
+            where id = any(?) or email = any(?) or upper(username) = any(?)
+            """;
+
+    private static final Long UNKNOWN = -1L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BalanceService balanceService;
+    private final ObjectMapper objectMapper;
+    private final EntityManagerFactory entityManagerFactory;
+    private final int defaultChunkSize;
+    private final int maxErrors;
+
+    public ExpenseImportService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                BalanceService balanceService, ObjectMapper objectMapper,
+                                EntityManagerFactory entityManagerFactory,
+                                @Value("${import.chunk-size:1000}") int defaultChunkSize,
+                                @Value("${import.max-errors:1000}") int maxErrors) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.balanceService = balanceService;
+        this.objectMapper = objectMapper;
+        this.entityManagerFactory = entityManagerFactory;
+        this.defaultChunkSize = defaultChunkSize;
+        this.maxErrors = maxErrors;
+    }
+
+    public ImportReport importExpenses(Reader body, Format format, Integer chunkSize, Long callerId)
+            throws IOException {
+        int chunk = chunkSize == null ? defaultChunkSize : Math.max(1, Math.min(chunkSize, 10_000));
+        Run run = new Run(callerId);
+        BufferedReader in = body instanceof BufferedReader b ? b : new BufferedReader(body, 64 * 1024);
+
+        List<Row> pending = new ArrayList<>(chunk);
+        RowSource source = format == Format.CSV ? new CsvSource(in, run) : new NdjsonSource(in, run);
+        Row row;
+        while ((row = source.next()) != null) {
+            pending.add(row);
+            if (pending.size() == chunk) {
+                writeChunk(pending, run);
+                pending.clear();
+            }
+        }
+        if (!pending.isEmpty()) writeChunk(pending, run);
+
+        return new ImportReport(run.rows, run.imported, run.failed, run.errors, run.errorsTruncated);
+    }
+
+    private void writeChunk(List<Row> rows, Run run) {
+        resolve(rows, run);
+
+        List<Row> valid = new ArrayList<>(rows.size());
+        int splitCount = 0;
+        for (Row r : rows) {
+            String error = validate(r, run);
+            if (error != null) {
+                run.fail(r.number(), error, maxErrors);
+            } else {
+                valid.add(r);
+                splitCount += r.participants().size();
+            }
+        }
+        if (valid.isEmpty()) return;
+
+        int splits = splitCount;
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(valid, splits, run));
+            run.imported += valid.size();
+            // rows went in behind Hibernate's back; drop cached query results (e.g. an earlier "not found")
+            entityManagerFactory.getCache().unwrap(org.hibernate.Cache.class).evictQueryRegions();
+        } catch (DataAccessException e) {
+            String message = e.getMostSpecificCause().getMessage();
+            for (Row r : valid) run.fail(r.number(), "chunk_failed: " + message, maxErrors);
+        }
+    }
+
+    private void insert(List<Row> rows, int splitCount, Run run) {
+        long[] eventIds = nextIds("events_seq", rows.size());
+        long[] debitorIds = nextIds("debitors_seq", splitCount);
+
+        List<Object[]> eventArgs = new ArrayList<>(rows.size());
+        List<Object[]> debitorArgs = new ArrayList<>(splitCount);
+        BalanceDelta delta = new BalanceDelta(LedgerEvent.of(LedgerEvent.Type.EXPENSES_IMPORTED));
+        LocalDateTime now = LocalDateTime.now();
+
+        int d = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            Row r = rows.get(i);
+            long eventId = eventIds[i];
+            Long creatorId = r.creator() == null ? run.callerId : run.users.get(r.creator());
+            LocalDateTime createdAt = r.createdAt() != null ? r.createdAt() : now;
+            eventArgs.add(new Object[]{eventId, r.title(), Timestamp.valueOf(createdAt), creatorId, r.total()});
+
+            // transient copies only feed the balance delta; nothing goes through JPA
+            Event e = new Event();
+            e.setId(eventId);
+            e.setCreator(userRef(creatorId));
+            e.setTotal(r.total());
+            long[] shares = SplitEngine.equal(e.getTotalMoney().minor(), r.participants().size());
+            for (int p = 0; p < shares.length; p++) {
+                Long userId = run.users.get(r.participants().get(p));
+                long debitorId = debitorIds[d++];
+                debitorArgs.add(new Object[]{debitorId, userId, eventId, BigDecimal.valueOf(shares[p], Money.SCALE)});
+
+                Debitor split = new Debitor();
+                split.setId(debitorId);
+                split.setUser(userRef(userId));
+                split.setDebMoney(Money.ofMinor(shares[p]));
+                split.setPaidMoney(Money.ZERO);
+                e.addSplit(split);
+            }
+            delta.event(e, +1);
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_EVENT, eventArgs);
+        jdbcTemplate.batchUpdate(INSERT_DEBITOR, debitorArgs);
+        balanceService.apply(delta);
+    }
+
+    // reserve n ids in whole pooled blocks with one round trip
+    private long[] nextIds(String sequence, int n) {
+        long[] ids = new long[n];
+        if (n == 0) return ids;
+        int blocks = (n + SEQUENCE_BLOCK - 1) / SEQUENCE_BLOCK;
+        List<Long> his = jdbcTemplate.queryForList(NEXT_IDS.formatted(sequence), Long.class, blocks);
+        int i = 0;
+        for (Long hi : his) {
+            for (long id = hi - SEQUENCE_BLOCK + 1; id <= hi && i < n; id++) ids[i++] = id;
+        }
+        return ids;
+    }
+
+    private void resolve(List<Row> rows, Run run) {
+        Set<String> missing = new LinkedHashSet<>();
+        for (Row r : rows) {
+            if (r.creator() != null && !run.users.containsKey(r.creator())) missing.add(r.creator());
+            for (String p : r.participants()) {
+                if (!run.users.containsKey(p)) missing.add(p);
+            }
+        }
+        if (missing.isEmpty()) return;
+
+        List<Long> ids = new ArrayList<>();
+        List<String> emails = new ArrayList<>();
+        List<String> usernames = new ArrayList<>();
+        for (String ref : missing) {
+            if (isId(ref)) ids.add(Long.parseLong(ref));
+            else if (ref.indexOf('@') >= 0) emails.add(ref);
+            else usernames.add(ref.toUpperCase(Locale.ROOT));
+        }
+
+        Map<String, Long> found = new HashMap<>();
+        jdbcTemplate.query(RESOLVE_USERS, rs -> {
+            long id = rs.getLong(1);
+            found.put(Long.toString(id), id);
+            if (rs.getString(2) != null) found.put(rs.getString(2), id);
+            if (rs.getString(3) != null) found.put("\u0000" + rs.getString(3), id);
+        }, ids.toArray(new Long[0]), emails.toArray(new String[0]), usernames.toArray(new String[0]));
+
+        for (String ref : missing) {
+            Long id = isId(ref) || ref.indexOf('@') >= 0
+                    ? found.get(ref)
+                    : found.get("\u0000" + ref.toUpperCase(Locale.ROOT));
+            // unknown references are remembered too, so they are not looked up again
+            run.users.put(ref, id == null ? UNKNOWN : id);
+        }
+    }
+
+    private static String validate(Row r, Run run) {
+        if (r.title() == null || r.title().isBlank()) return "title_required";
+        if (r.total() == null || r.total().signum() <= 0) return "invalid_total";
+        if (r.total().scale() > 2) return "total_has_more_than_2_decimals";
+        if (r.creator() != null) {
+            Long creatorId = run.users.get(r.creator());
+            if (UNKNOWN.equals(creatorId)) return "unknown_creator: " + r.creator();
+            if (!creatorId.equals(run.callerId)) return "creator_not_caller: " + r.creator();
+        }
+        if (r.participants().isEmpty()) return "participants_required";
+        for (String p : r.participants()) {
+            if (UNKNOWN.equals(run.users.get(p))) return "unknown_participant: " + p;
+        }
+        return null;
+    }
+
+    private static boolean isId(String ref) {
+        if (ref.isEmpty() || ref.length() > 18) return false;
+        for (int i = 0; i < ref.length(); i++) {
+            if (!Character.isDigit(ref.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private static User userRef(Long id) {
+        User u = new User();
+        u.setId(id);
+        return u;
+    }
+
+    private static Row row(long number, String title, String creator, String total, List<String> participants,
+                           String createdAt) {
+        BigDecimal amount = total == null || total.isBlank() ? null : new BigDecimal(total.trim());
+        LocalDateTime at = createdAt == null || createdAt.isBlank() ? null : LocalDateTime.parse(createdAt.trim());
+        List<String> refs = participants.stream()
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .distinct()
+                .toList();
+        return new Row(number, title == null ? null : title.trim(),
+                creator == null || creator.isBlank() ? null : creator.trim(), amount, refs, at);
+    }
+
+    /**
+     * Per-import state: the caller, counters, the error report and the user reference cache.
+     */
+    private static final class Run {
+        final Long callerId;
+        final Map<String, Long> users = new HashMap<>();
+        final List<RowError> errors = new ArrayList<>();
+        long rows;
+        long imported;
+        long failed;
+        boolean errorsTruncated;
+
+        Run(Long callerId) {
+            this.callerId = callerId;
+        }
+
+        void fail(long row, String error, int maxErrors) {
+            failed++;
+            if (errors.size() < maxErrors) errors.add(new RowError(row, error));
+            else errorsTruncated = true;
+        }
+    }
+
+    private interface RowSource {
+        /**
+         * Next well-formed row; malformed rows are reported and skipped. Null at end of input.
+         */
+        Row next() throws IOException;
+    }
+
+    private final class CsvSource implements RowSource {
+        private final CsvReader csv;
+        private final Run run;
+        private int title = -1, creator = -1, total = -1, participants = -1, createdAt = -1;
+
+        CsvSource(Reader in, Run run) throws IOException {
+            this.csv = new CsvReader(in);
+            this.run = run;
+            List<String> header = csv.next();
+            if (header == null) return;
+            for (int i = 0; i < header.size(); i++) {
+                switch (header.get(i).trim().toLowerCase(Locale.ROOT)) {
+                    case "title" -> title = i;
+                    case "creator" -> creator = i;
+                    case "total" -> total = i;
+                    case "participants" -> participants = i;
+                    case "createdat", "created_at" -> createdAt = i;
+                    default -> { }
+                }
+            }
+            if (title < 0 || total < 0 || participants < 0) {
+                throw new IllegalArgumentException("csv_header_requires_title_total_participants");
+            }
+        }
+
+        @Override
+        public Row next() throws IOException {
+            while (true) {
+                List<String> rec = csv.next();
+                if (rec == null) return null;
+                long number = ++run.rows;
+                try {
+                    return row(number, get(rec, title), get(rec, creator), get(rec, total),
+                            List.of(get(rec, participants, "").split(";")), get(rec, createdAt));
+                } catch (RuntimeException e) {
+                    run.fail(number, "malformed_row: " + e.getMessage(), maxErrors);
+                }
+            }
+        }
+
+        private static String get(List<String> rec, int i) {
+            return get(rec, i, null);
+        }
+
+        private static String get(List<String> rec, int i, String fallback) {
+            return i >= 0 && i < rec.size() ? rec.get(i) : fallback;
+        }
+    }
+
+    private final class NdjsonSource implements RowSource {
+        private final BufferedReader in;
+        private final Run run;
+
+        NdjsonSource(BufferedReader in, Run run) {
+            this.in = in;
+            this.run = run;
+        }
+
+        @Override
+        public Row next() throws IOException {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) continue;
+                long number = ++run.rows;
+                try {
+                    JsonNode n = objectMapper.readTree(line);
+                    List<String> refs = new ArrayList<>();
+                    JsonNode ps = n.path("participants");
+                    if (ps.isArray()) ps.forEach(p -> refs.add(p.asString()));
+                    return row(number, text(n, "title"), text(n, "creator"), text(n, "total"), refs,
+                            text(n, "createdAt"));
+                } catch (RuntimeException e) {
+                    run.fail(number, "malformed_row: " + e.getMessage(), maxErrors);
+                }
+            }
+            return null;
+        }
+
+        private static String text(JsonNode n, String field) {
+            JsonNode v = n.get(field);
+            return v == null || v.isNull() ? null : v.asString();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.splitwise.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Executes a request at most once per {@code Idempotency-Key}.
+ *
+ * The key is claimed in the same transaction as the work it guards and the successful
+ * response is stored there too, so either both commit or neither does. A concurrent
+ * duplicate on another instance blocks on the key's row until the first transaction
+ * ends; duplicates inside this instance wait on the first execution's future instead,
+ * without holding a connection. Completed responses are also kept in memory so most
+ * replays never reach the database. Error responses are not stored: nothing was
+ * committed, so a retry simply runs again.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 200;
+
+    // claims a new key, or takes over one whose previous use has expired
+    private static final String CLAIM = """
+            insert into idempotency_keys (scope, idem_key, fingerprint, expires_at)
+            values (?, ?, ?, ?)
+            on conflict (scope, idem_key) do update set
+                fingerprint = excluded.fingerprint,
+                status_code = null,
+                response = null,
+                created_at = localtimestamp,
+                expires_at = excluded.expires_at
+            where idempotency_keys.expires_at < localtimestamp
+            """;
+
+    private static final String FIND = """
+            select fingerprint, status_code, response from idempotency_keys
+            where scope = ? and idem_key = ?
+            """;
+
+    private static final String COMPLETE = """
+            update idempotency_keys set status_code = ?, response = ? where scope = ? and idem_key = ?
+            """;
+
+    private static final String PURGE = """
+            delete from idempotency_keys where expires_at < localtimestamp
+            """;
+
+    private record Stored(String fingerprint, int status, String body) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration waitTimeout;
+    private final Cache<String, Stored> completed;
+    private final Map<String, CompletableFuture<Stored>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong nextPurge = new AtomicLong();
+
+    public IdempotencyService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                              ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                              @Value("${idempotency.ttl:24h}") Duration ttl,
+                              @Value("${idempotency.cache.max-size:10000}") long maxSize,
+                              @Value("${idempotency.wait-timeout:30s}") Duration waitTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.waitTimeout = waitTimeout;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, completed, "idempotency");
+    }
+
+    /**
+     * Run {@code action} unless this caller already ran a request with the same key, in
+     * which case the stored response is returned. A null key runs the action as is.
+     *
+     * @param scope   who is calling what, e.g. {@code "payments.pay:42"}; keys are unique per scope
+     * @param request the request body, fingerprinted so a key cannot be reused for a different request
+     */
+    public ResponseEntity<?> execute(String key, String scope, Object request,
+                                     Supplier<ResponseEntity<?>> action) {
+        if (key == null) return action.get();
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body(Map.of("error", "invalid_idempotency_key"));
+        }
+        String id = scope + '\u0000' + key;
+        String fingerprint = fingerprint(scope, request);
+
+        while (true) {
+            Stored done = completed.getIfPresent(id);
+            if (done != null) return replay(done, fingerprint);
+
+            CompletableFuture<Stored> mine = new CompletableFuture<>();
+            CompletableFuture<Stored> running = inFlight.putIfAbsent(id, mine);
+            if (running != null) {
+                Stored first;
+                try {
+                    first = running.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return inProgress();
+                } catch (TimeoutException e) {
+                    return inProgress();
+                } catch (ExecutionException e) {
+                    first = null;
+                }
+                if (first != null) return replay(first, fingerprint);
+                // the first execution failed without storing anything: try ourselves
+                continue;
+            }
+
+            Stored stored = null;
+            try {
+                Outcome outcome = runOnce(scope, key, fingerprint, action);
+                stored = outcome.stored();
+                if (stored != null) completed.put(id, stored);
+                return outcome.replayed() ? replay(stored, fingerprint) : outcome.response();
+            } finally {
+                inFlight.remove(id, mine);
+                mine.complete(stored);
+                purgeExpiredOccasionally();
+            }
+        }
+    }
+
+    private record Outcome(ResponseEntity<?> response, Stored stored, boolean replayed) {
+    }
+
+    private Outcome runOnce(String scope, String key, String fingerprint, Supplier<ResponseEntity<?>> action) {
+        return transactionTemplate.execute(status -> {
+            Timestamp expiresAt = Timestamp.valueOf(LocalDateTime.now().plus(ttl));
+            // blocks while another transaction holds an uncommitted claim on the same key
+            if (jdbcTemplate.update(CLAIM, scope, key, fingerprint, expiresAt) == 0) {
+                List<Stored> rows = jdbcTemplate.query(FIND, (rs, i) -> new Stored(
+                        rs.getString(1), rs.getInt(2), rs.getString(3)), scope, key);
+                if (rows.isEmpty() || rows.getFirst().status() == 0) {
+                    // claimed and committed without a response cannot happen; treat as busy
+                    return new Outcome(inProgress(), null, false);
+                }
+                return new Outcome(null, rows.getFirst(), true);
+            }
+
+            ResponseEntity<?> response = action.get();
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                // drop the claim with whatever the action did; a retry runs again
+                status.setRollbackOnly();
+                return new Outcome(response, null, false);
+            }
+            String body = response.getBody() == null ? null : objectMapper.writeValueAsString(response.getBody());
+            int code = response.getStatusCode().value();
+            jdbcTemplate.update(COMPLETE, code, body, scope, key);
+            return new Outcome(response, new Stored(fingerprint, code, body), false);
+        });
+    }
+
+    private ResponseEntity<?> replay(Stored stored, String fingerprint) {
+        if (!stored.fingerprint().equals(fingerprint)) {
+            return ResponseEntity.unprocessableContent().body(Map.of("error", "idempotency_key_reused"));
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(stored.status()).header(REPLAYED_HEADER, "true");
+        if (stored.body() == null) return builder.build();
+        return builder.contentType(MediaType.APPLICATION_JSON).body(stored.body());
+    }
+
+    private static ResponseEntity<?> inProgress() {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "request_in_progress"));
+    }
+
+    // at most once per hour per instance; expired rows are also taken over on claim
+    private void purgeExpiredOccasionally() {
+        long now = System.currentTimeMillis();
+        long next = nextPurge.get();
+        if (now < next || !nextPurge.compareAndSet(next, now + TimeUnit.HOURS.toMillis(1))) return;
+        jdbcTemplate.update(PURGE);
+    }
+
+    private String fingerprint(String scope, Object request) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(scope.getBytes(StandardCharsets.UTF_8));
+            md.update(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -9,6 +9,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -19,12 +20,19 @@ public class JwtService {
 
     private final byte[] secret;
     private final long expirationMs;
+    // MACVerifier is thread-safe; build it once instead of per request
+    private final JWSVerifier verifier;
 
     public JwtService(
             @Value("${jwt.secret}") String secret,
             @Value("${jwt.expirationMs:36000000}") long expirationMs) {
         this.secret = secret.getBytes();
         this.expirationMs = expirationMs;
+        try {
+            this.verifier = new MACVerifier(this.secret);
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Invalid JWT secret", e);
+        }
     }
 
     public String generateToken(String subject, Map<String, Object> extraClaims) {
@@ -53,6 +61,20 @@ public class JwtService {
         return generateToken(subject, Map.of());
     }
 
+    /**
+     * Token carrying the user id, username and authorities as claims, so the
+     * stateless auth mode can rebuild the principal without a database lookup.
+     */
+    public String generateToken(AuthenticatedUser user) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(AuthenticatedUser.CLAIM_USER_ID, user.getId());
+        if (user.getDisplayName() != null) {
+            claims.put(AuthenticatedUser.CLAIM_USERNAME, user.getDisplayName());
+        }
+        claims.put(AuthenticatedUser.CLAIM_AUTHORITIES, user.getAuthorityNames());
+        return generateToken(user.getEmail(), claims);
+    }
+
     public String extractUsername(String token) {
         try {
             SignedJWT signedJWT = SignedJWT.parse(token);
@@ -63,32 +85,40 @@ public class JwtService {
     }
 
     public boolean isTokenValid(String token, String username) {
+        JWTClaimsSet claims = verify(token);
+        if (claims == null) {
+            return false;
+        }
+
+        // Check subject matches
+        String subject = claims.getSubject();
+        return subject != null && subject.equals(username);
+    }
+
+    /**
+     * Parse the token once, verify signature and expiry.
+     * Returns the claims, or null if the token is malformed, forged or expired.
+     */
+    public JWTClaimsSet verify(String token) {
         try {
             SignedJWT signedJWT = SignedJWT.parse(token);
-            
+
             // Verify signature
-            JWSVerifier verifier = new MACVerifier(secret);
             if (!signedJWT.verify(verifier)) {
-                return false;
+                return null;
             }
-            
+
             JWTClaimsSet claims = signedJWT.getJWTClaimsSet();
-            
-            // Check subject matches
-            String subject = claims.getSubject();
-            if (subject == null || !subject.equals(username)) {
-                return false;
-            }
-            
+
             // Check expiration
             Date expiration = claims.getExpirationTime();
             if (expiration == null || expiration.before(new Date())) {
-                return false;
+                return null;
             }
-            
-            return true;
+
+            return claims;
         } catch (Exception e) {
-            return false;
+            return null;
         }
     }
 }
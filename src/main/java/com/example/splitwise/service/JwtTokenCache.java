@@ -0,0 +1,106 @@
+package com.example.splitwise.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.nimbusds.jwt.JWTClaimsSet;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of already-verified bearer tokens and the principal they resolve to.
+ *
+ * Keyed by the SHA-256 digest of the token (raw tokens are never held), bounded in
+ * size, and each entry expires together with its token. A hit skips JWT parsing,
+ * signature verification and the user lookup.
+ */
+@Component
+public class JwtTokenCache {
+
+    public record Entry(JWTClaimsSet claims, UserDetails userDetails, long expiresAtMillis) {
+    }
+
+    private final Cache<String, Entry> cache;
+
+    public JwtTokenCache(@Value("${jwt.cache.max-size:10000}") long maxSize, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        long ttlMs = entry.expiresAtMillis() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(ttlMs, 0));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, entry, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        // exposes cache_gets_total{cache="jwt.auth",result="hit|miss"}, evictions and size on /actuator/prometheus
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt.auth");
+    }
+
+    public Entry get(String token) {
+        Entry entry = cache.getIfPresent(digest(token));
+        if (entry != null && entry.expiresAtMillis() <= System.currentTimeMillis()) {
+            return null;
+        }
+        return entry;
+    }
+
+    public Entry put(String token, JWTClaimsSet claims, UserDetails userDetails) {
+        Entry entry = new Entry(claims, userDetails, claims.getExpirationTime().getTime());
+        cache.put(digest(token), entry);
+        return entry;
+    }
+
+    /**
+     * Drop every cached token of a user, e.g. after a password change or deletion.
+     * Inside a transaction the tokens are dropped again after commit, so a request that
+     * resolved the user before the commit cannot leave its principal cached.
+     */
+    public void evictUser(String username) {
+        if (username == null) return;
+        evict(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(username);
+                }
+            });
+        }
+    }
+
+    private void evict(String username) {
+        cache.asMap().values().removeIf(e -> username.equals(e.userDetails().getUsername()));
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(md.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.splitwise.service;
+
+import com.example.splitwise.model.Debitor;
+import com.example.splitwise.model.Event;
+
+import java.math.BigDecimal;
+
+/**
+ * What happened, as recorded in the ledger next to the balance changes it caused.
+ * The references are informational; ledger rows outlive the events and splits they name.
+ */
+public record LedgerEvent(Type type, Long eventId, Long debitorId, Long userId, BigDecimal amount) {
+
+    public enum Type {
+        OPENING_BALANCE,
+        EVENT_CREATED,
+        EVENT_UPDATED,
+        EVENT_CANCELLED,
+        EVENT_DELETED,
+        EXPENSES_IMPORTED,
+        SPLIT_CREATED,
+        SPLIT_ADJUSTED,
+        SPLIT_REMOVED,
+        PAYMENT_APPLIED,
+        USER_REMOVED,
+        // read models rebuilt from debitors/events; records whatever the rebuild corrected
+        REBUILD,
+        ADJUSTMENT
+    }
+
+    public static LedgerEvent of(Type type) {
+        return new LedgerEvent(type, null, null, null, null);
+    }
+
+    /**
+     * An event-level change: the event, its creator and total.
+     */
+    public static LedgerEvent event(Type type, Event e) {
+        return new LedgerEvent(type, e.getId(), null, e.getCreator() == null ? null : e.getCreator().getId(), e.getTotal());
+    }
+
+    /**
+     * A split-level change: the split, its participant and share.
+     */
+    public static LedgerEvent split(Type type, Debitor d) {
+        return new LedgerEvent(type, d.getEvent() == null ? null : d.getEvent().getId(), d.getId(),
+                d.getUser() == null ? null : d.getUser().getId(), d.getDebAmount());
+    }
+}
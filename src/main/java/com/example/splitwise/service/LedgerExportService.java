@@ -0,0 +1,254 @@
+package com.example.splitwise.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.ObjectMapper;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Locale;
+
+/**
+ * Streams a user's ledger: every payment they made or received and every split
+ * they take part in, one row each, as CSV or NDJSON.
+ *
+ * Rows are read through a forward-only server-side cursor (Postgres only uses one
+ * with autocommit off and a fetch size, hence the read-only transaction) and written
+ * straight to the response, so memory stays flat whatever the history size. No
+ * ORDER BY, so the first rows go out before the database has read the last ones.
+ */
+@Service
+public class LedgerExportService {
+
+    public enum Format {
+        CSV("text/csv"), NDJSON("application/x-ndjson");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public static Format of(String name) {
+            if (name == null || name.isBlank()) return CSV;
+            return switch (name.trim().toLowerCase(Locale.ROOT)) {
+                case "csv" -> CSV;
+                case "ndjson", "jsonl" -> NDJSON;
+                default -> throw new IllegalArgumentException("unsupported_format");
+            };
+        }
+    }
+
+    // payments made, payments received (self-payments once), then splits
+    private static final String LEDGER = """
+            select 'payment' as kind, t.id, t.ts, t.event_id, null as title,
+                   t.from_user_id, t.to_user_id, t.amount, null as paid, null as settled, t.note
+            from transactions t
+            where t.from_user_id = ?
+            union all
+            select 'payment', t.id, t.ts, t.event_id, null,
+                   t.from_user_id, t.to_user_id, t.amount, null, null, t.note
+            from transactions t
+            where t.to_user_id = ? and t.from_user_id is distinct from t.to_user_id
+            union all
+            select 'split', d.id, coalesce(d.paid_at, e.created_at), d.event_id, e.title,
+                   d.user_id, e.creator_id, d.deb_amount, d.amount_paid, d.settled, null
+            from debitors d
+            join events e on e.id = d.event_id
+            where d.user_id = ?
+            """;
+
+    private static final String[] COLUMNS = {
+            "type", "id", "ts", "eventId", "eventTitle", "fromUserId", "toUserId", "amount", "amountPaid",
+            "settled", "note"
+    };
+
+    private final JdbcTemplate cursorTemplate;
+    private final TransactionTemplate readOnly;
+    private final ObjectMapper objectMapper;
+
+    public LedgerExportService(DataSource dataSource, PlatformTransactionManager transactionManager,
+                               ObjectMapper objectMapper,
+                               @Value("${export.fetch-size:1000}") int fetchSize) {
+        this.cursorTemplate = new JdbcTemplate(dataSource);
+        this.cursorTemplate.setFetchSize(fetchSize);
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Write the user's ledger to {@code out}. Returns the number of rows written.
+     */
+    public long export(Long userId, Format format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        RowWriter rows = format == Format.CSV ? new CsvRowWriter(writer) : new NdjsonRowWriter(writer);
+        rows.header();
+        // push the header out now so the client sees the first byte before the query finishes
+        writer.flush();
+
+        long[] count = {0};
+        try {
+            readOnly.executeWithoutResult(status -> cursorTemplate.query(LEDGER, rs -> {
+                try {
+                    rows.row(rs);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            }, userId, userId, userId));
+        } catch (UncheckedIOException e) {
+            // client went away; the transaction (and cursor) are already closed
+            throw e.getCause();
+        }
+        rows.finish();
+        writer.flush();
+        return count[0];
+    }
+
+    private interface RowWriter {
+        void header() throws IOException;
+
+        void row(ResultSet rs) throws SQLException, IOException;
+
+        void finish() throws IOException;
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+        private final Writer out;
+
+        CsvRowWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void header() throws IOException {
+            out.write(String.join(",", COLUMNS));
+            out.write("\r\n");
+        }
+
+        @Override
+        public void row(ResultSet rs) throws SQLException, IOException {
+            out.write(rs.getString(1));
+            out.write(',');
+            out.write(Long.toString(rs.getLong(2)));
+            out.write(',');
+            Timestamp ts = rs.getTimestamp(3);
+            if (ts != null) out.write(ts.toLocalDateTime().toString());
+            out.write(',');
+            writeLong(rs, 4);
+            out.write(',');
+            writeText(rs.getString(5));
+            out.write(',');
+            writeLong(rs, 6);
+            out.write(',');
+            writeLong(rs, 7);
+            out.write(',');
+            writeDecimal(rs.getBigDecimal(8));
+            out.write(',');
+            writeDecimal(rs.getBigDecimal(9));
+            out.write(',');
+            boolean settled = rs.getBoolean(10);
+            if (!rs.wasNull()) out.write(settled ? "true" : "false");
+            out.write(',');
+            writeText(rs.getString(11));
+            out.write("\r\n");
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        private void writeLong(ResultSet rs, int column) throws SQLException, IOException {
+            long v = rs.getLong(column);
+            if (!rs.wasNull()) out.write(Long.toString(v));
+        }
+
+        private void writeDecimal(BigDecimal v) throws IOException {
+            if (v != null) out.write(v.toPlainString());
+        }
+
+        private void writeText(String v) throws IOException {
+            if (v == null) return;
+            boolean quote = false;
+            for (int i = 0; i < v.length() && !quote; i++) {
+                char c = v.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                out.write(v);
+                return;
+            }
+            out.write('"');
+            out.write(v.replace("\"", "\"\""));
+            out.write('"');
+        }
+    }
+
+    private final class NdjsonRowWriter implements RowWriter {
+        private final Writer out;
+        private final JsonGenerator json;
+        private boolean any;
+
+        NdjsonRowWriter(Writer out) {
+            this.out = out;
+            this.json = objectMapper.writer().withRootValueSeparator("\n").createGenerator(out);
+        }
+
+        @Override
+        public void header() {
+        }
+
+        @Override
+        public void row(ResultSet rs) throws SQLException {
+            any = true;
+            json.writeStartObject();
+            json.writeStringProperty(COLUMNS[0], rs.getString(1));
+            json.writeNumberProperty(COLUMNS[1], rs.getLong(2));
+            Timestamp ts = rs.getTimestamp(3);
+            json.writeStringProperty(COLUMNS[2], ts == null ? null : ts.toLocalDateTime().toString());
+            writeLong(rs, 4, COLUMNS[3]);
+            json.writeStringProperty(COLUMNS[4], rs.getString(5));
+            writeLong(rs, 6, COLUMNS[5]);
+            writeLong(rs, 7, COLUMNS[6]);
+            json.writeNumberProperty(COLUMNS[7], rs.getBigDecimal(8));
+            BigDecimal paid = rs.getBigDecimal(9);
+            if (paid != null) json.writeNumberProperty(COLUMNS[8], paid);
+            boolean settled = rs.getBoolean(10);
+            if (!rs.wasNull()) json.writeBooleanProperty(COLUMNS[9], settled);
+            String note = rs.getString(11);
+            if (note != null) json.writeStringProperty(COLUMNS[10], note);
+            json.writeEndObject();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            json.flush();
+            if (any) out.write('\n');
+        }
+
+        private void writeLong(ResultSet rs, int column, String name) throws SQLException {
+            long v = rs.getLong(column);
+            if (rs.wasNull()) json.writeNullProperty(name);
+            else json.writeNumberProperty(name, v);
+        }
+    }
+}
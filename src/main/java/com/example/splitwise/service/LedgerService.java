@@ -0,0 +1,459 @@
+package com.example.splitwise.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.ObjectMapper;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Append-only ledger of every change to the balance read models.
+ *
+ * {@link BalanceService} appends one ledger_events row per {@link BalanceDelta} together
+ * with its postings, in the writer's transaction. A user's state is the sum of their
+ * postings, so it can be replayed from the latest per-user snapshot plus the short tail
+ * after it, and the whole read model can be rebuilt from the log alone.
+ *
+ * Before its first append, a transaction registers a seq floor (the last seq handed out
+ * so far) as an advisory lock held until it ends. Lock holders are visible to every
+ * session straight away, unlike the rows themselves, so {@link #committedWatermark()}
+ * stops below the lowest registered floor without waiting for anyone, and snapshots
+ * never skip a posting that committed late. Appends also hold {@code APPEND_LOCK}
+ * shared; only {@link #replayAll()} takes it exclusively, to swap the read models.
+ */
+@Service
+public class LedgerService {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerService.class);
+
+    /**
+     * A user's balances as of ledger {@code seq}: totals, what they owe each creditor
+     * and what each debtor owes them. {@code replayed} counts postings read after the
+     * snapshot the state started from.
+     */
+    public record State(Long userId, long seq, BigDecimal owes, BigDecimal owed,
+                        Map<Long, BigDecimal> owesTo, Map<Long, BigDecimal> owedBy, int replayed) {
+
+        public BigDecimal net() {
+            return owed.subtract(owes);
+        }
+    }
+
+    public record ReplayResult(long seq, int users, int pairs, long postings, long millis) {
+    }
+
+    // any constant works as long as every instance uses the same one
+    private static final long APPEND_LOCK = 0x4c6564676572L;
+
+    // seq floors are advisory lock keys tagged in the top 16 bits: 0x4c66 << 48 | floor
+    private static final long FLOOR_TAG = 0x4c66L;
+
+    private static final String APPEND_EVENT = """
+            insert into ledger_events (type, event_id, debitor_id, user_id, amount, created_at)
+            select ?, ?, ?, ?, ?, localtimestamp
+            from (select pg_advisory_xact_lock_shared(?)) appending
+            returning seq
+            """;
+
+    // the seq this transaction draws next is above the sequence's current value
+    private static final String REGISTER_FLOOR = """
+            select pg_advisory_xact_lock_shared(
+                (? << 48) | coalesce(pg_sequence_last_value(pg_get_serial_sequence('ledger_events', 'seq')::regclass), 0))
+            """;
+
+    // the max is read in the statement's snapshot, taken before pg_locks is read: a
+    // transaction holding a seq at or below it either shows its floor or has committed
+    private static final String WATERMARK = """
+            select least(
+                (select coalesce(max(seq), 0) from ledger_events),
+                (select min((((l.classid::bigint) & 65535) << 32) | l.objid::bigint)
+                 from pg_locks l
+                 where l.locktype = 'advisory' and l.objsubid = 1
+                   and l.database = (select oid from pg_database where datname = current_database())
+                   and (l.classid::bigint) >> 16 = ?))
+            """;
+
+    private static final Object FLOOR_REGISTERED = new Object();
+
+    private static final String APPEND_POSTING = """
+            insert into ledger_postings (seq, user_id, counterparty_id, owes, owed, amount)
+            values (?, ?, ?, ?, ?, ?)
+            """;
+
+    // book the difference between the read models and the ledger totals to one entry
+    private static final String RECONCILE_USERS = """
+            insert into ledger_postings (seq, user_id, owes, owed)
+            select ?, coalesce(b.user_id, l.user_id),
+                   coalesce(b.owes, 0) - coalesce(l.owes, 0), coalesce(b.owed, 0) - coalesce(l.owed, 0)
+            from user_balances b
+            full outer join (
+                select user_id, sum(owes) as owes, sum(owed) as owed
+                from ledger_postings
+                where counterparty_id is null
+                group by user_id
+            ) l on l.user_id = b.user_id
+            where coalesce(b.owes, 0) <> coalesce(l.owes, 0) or coalesce(b.owed, 0) <> coalesce(l.owed, 0)
+            """;
+
+    private static final String RECONCILE_PAIRS = """
+            insert into ledger_postings (seq, user_id, counterparty_id, amount)
+            select ?, coalesce(b.debtor_id, l.user_id), coalesce(b.creditor_id, l.counterparty_id),
+                   coalesce(b.amount, 0) - coalesce(l.amount, 0)
+            from pair_balances b
+            full outer join (
+                select user_id, counterparty_id, sum(amount) as amount
+                from ledger_postings
+                where counterparty_id is not null
+                group by user_id, counterparty_id
+            ) l on l.user_id = b.debtor_id and l.counterparty_id = b.creditor_id
+            where coalesce(b.amount, 0) <> coalesce(l.amount, 0)
+            """;
+
+    private static final String LATEST_SNAPSHOT = """
+            select s.seq, s.owes, s.owed, s.owes_to::text, s.owed_by::text
+            from ledger_snapshots s
+            where s.user_id = ? and s.seq <= ?
+            order by s.seq desc
+            limit 1
+            """;
+
+    private static final String TAIL = """
+            select p.seq, p.user_id, p.counterparty_id, p.owes, p.owed, p.amount
+            from ledger_postings p
+            where p.user_id = ? and p.seq > ? and p.seq <= ?
+            union all
+            select p.seq, p.user_id, p.counterparty_id, p.owes, p.owed, p.amount
+            from ledger_postings p
+            where p.counterparty_id = ? and p.seq > ? and p.seq <= ?
+            """;
+
+    private static final String INSERT_SNAPSHOT = """
+            insert into ledger_snapshots (user_id, seq, owes, owed, owes_to, owed_by)
+            values (?, ?, ?, ?, ?::jsonb, ?::jsonb)
+            on conflict (user_id, seq) do nothing
+            """;
+
+    private static final String TOUCHED_USERS = """
+            select p.user_id from ledger_postings p where p.seq > ? and p.seq <= ?
+            union
+            select p.counterparty_id from ledger_postings p
+            where p.seq > ? and p.seq <= ? and p.counterparty_id is not null
+            """;
+
+    private static final String RANGE = """
+            select p.user_id, p.counterparty_id, p.owes, p.owed, p.amount
+            from ledger_postings p
+            where p.seq > ? and p.seq <= ?
+            """;
+
+    private static final TypeReference<Map<Long, BigDecimal>> AMOUNTS = new TypeReference<>() {
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streaming;
+    private final TransactionTemplate newTx;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<BalanceEngine> balanceEngine;
+    private final int parallelism;
+
+    public LedgerService(JdbcTemplate jdbcTemplate, DataSource dataSource, PlatformTransactionManager transactionManager,
+                         ObjectMapper objectMapper, ObjectProvider<BalanceEngine> balanceEngine,
+                         @Value("${ledger.replay.fetch-size:10000}") int fetchSize,
+                         @Value("${ledger.replay.parallelism:0}") int parallelism) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.streaming = new JdbcTemplate(dataSource);
+        this.streaming.setFetchSize(fetchSize);
+        // read-write on purpose: replays up to a watermark must see the primary, not a lagging replica
+        this.newTx = new TransactionTemplate(transactionManager);
+        this.newTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.objectMapper = objectMapper;
+        this.balanceEngine = balanceEngine;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Record a delta under its cause. Runs in the writer's transaction; events with no
+     * balance effect are still recorded.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long append(BalanceDelta delta) {
+        registerFloor();
+        LedgerEvent cause = delta.getCause();
+        Long seq = jdbcTemplate.queryForObject(APPEND_EVENT, Long.class, cause.type().name(),
+                cause.eventId(), cause.debitorId(), cause.userId(), cause.amount(), APPEND_LOCK);
+
+        Set<Long> userIds = new TreeSet<>(delta.getOwes().keySet());
+        userIds.addAll(delta.getOwed().keySet());
+        List<Object[]> rows = new ArrayList<>(userIds.size() + delta.getPairs().size());
+        for (Long userId : userIds) {
+            BigDecimal owes = delta.getOwes().getOrDefault(userId, BigDecimal.ZERO);
+            BigDecimal owed = delta.getOwed().getOrDefault(userId, BigDecimal.ZERO);
+            if (owes.signum() == 0 && owed.signum() == 0) continue;
+            rows.add(new Object[]{seq, userId, null, owes, owed, BigDecimal.ZERO});
+        }
+        for (Map.Entry<BalanceDelta.Pair, BigDecimal> e : delta.getPairs().entrySet()) {
+            if (e.getValue().signum() == 0) continue;
+            rows.add(new Object[]{seq, e.getKey().debtorId(), e.getKey().creditorId(),
+                    BigDecimal.ZERO, BigDecimal.ZERO, e.getValue()});
+        }
+        if (!rows.isEmpty()) jdbcTemplate.batchUpdate(APPEND_POSTING, rows);
+        mirror(seq, delta);
+        return seq;
+    }
+
+    // once per transaction: later appends draw higher seqs, so the first floor covers them
+    private void registerFloor() {
+        if (TransactionSynchronizationManager.hasResource(FLOOR_REGISTERED)) return;
+        jdbcTemplate.query(REGISTER_FLOOR, rs -> { }, FLOOR_TAG);
+        TransactionSynchronizationManager.bindResource(FLOOR_REGISTERED, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(FLOOR_REGISTERED);
+            }
+        });
+    }
+
+    // hand the append to the in-process engine; it applies it once the outcome is known
+    private void mirror(long seq, BalanceDelta delta) {
+        BalanceEngine engine = balanceEngine.getIfAvailable();
+        if (engine == null || !engine.isReady()) return;
+        try {
+            engine.prepare(seq, delta);
+        } catch (RuntimeException e) {
+            engine.disable(e);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) engine.commit(seq);
+                else engine.abort(seq);
+            }
+        });
+    }
+
+    // the read models were replaced wholesale; the engine starts over from them
+    private void reloadEngine() {
+        BalanceEngine engine = balanceEngine.getIfAvailable();
+        if (engine != null) engine.reload();
+    }
+
+    /**
+     * Book whatever separates the read models from the ledger totals, after the read
+     * models were rebuilt from some other source. Reads the whole log.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long reconcile(LedgerEvent cause) {
+        long seq = append(new BalanceDelta(cause));
+        jdbcTemplate.update(RECONCILE_USERS, seq);
+        jdbcTemplate.update(RECONCILE_PAIRS, seq);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                reloadEngine();
+            }
+        });
+        return seq;
+    }
+
+    /**
+     * Highest seq up to which every ledger event has committed. Never waits for writers:
+     * while a transaction that may still add a lower seq is open, the watermark stays
+     * below its floor.
+     */
+    public long committedWatermark() {
+        return newTx.execute(status -> jdbcTemplate.queryForObject(WATERMARK, Long.class, FLOOR_TAG));
+    }
+
+    /**
+     * A user's current balances, replayed from their latest snapshot.
+     */
+    @Transactional(readOnly = true)
+    public State replay(Long userId) {
+        return replay(userId, Long.MAX_VALUE);
+    }
+
+    private State replay(Long userId, long upTo) {
+        long from = 0;
+        BigDecimal[] totals = {BigDecimal.ZERO, BigDecimal.ZERO};
+        Map<Long, BigDecimal> owesTo = new TreeMap<>();
+        Map<Long, BigDecimal> owedBy = new TreeMap<>();
+
+        List<Long> snapshot = jdbcTemplate.query(LATEST_SNAPSHOT, (rs, i) -> {
+            totals[0] = rs.getBigDecimal(2);
+            totals[1] = rs.getBigDecimal(3);
+            owesTo.putAll(objectMapper.readValue(rs.getString(4), AMOUNTS));
+            owedBy.putAll(objectMapper.readValue(rs.getString(5), AMOUNTS));
+            return rs.getLong(1);
+        }, userId, upTo);
+        if (!snapshot.isEmpty()) from = snapshot.getFirst();
+
+        int[] replayed = {0};
+        long[] last = {from};
+        jdbcTemplate.query(TAIL, rs -> {
+            last[0] = Math.max(last[0], rs.getLong(1));
+            long owner = rs.getLong(2);
+            Long counterparty = rs.getObject(3, Long.class);
+            if (counterparty == null) {
+                totals[0] = totals[0].add(rs.getBigDecimal(4));
+                totals[1] = totals[1].add(rs.getBigDecimal(5));
+            } else if (owner == userId) {
+                owesTo.merge(counterparty, rs.getBigDecimal(6), BigDecimal::add);
+            } else {
+                owedBy.merge(owner, rs.getBigDecimal(6), BigDecimal::add);
+            }
+            replayed[0]++;
+        }, userId, from, upTo, userId, from, upTo);
+
+        owesTo.values().removeIf(v -> v.signum() == 0);
+        owedBy.values().removeIf(v -> v.signum() == 0);
+        return new State(userId, upTo == Long.MAX_VALUE ? last[0] : upTo,
+                totals[0], totals[1], owesTo, owedBy, replayed[0]);
+    }
+
+    /**
+     * Snapshot every user with at least {@code minPostings} new postings since their last
+     * snapshot, among those touched in ({@code after}, {@code upTo}]. {@code upTo} must be
+     * a {@link #committedWatermark()}. Returns the number of snapshots written.
+     */
+    public int snapshotTouched(long after, long upTo, int minPostings) {
+        if (upTo <= after) return 0;
+        List<Long> users = jdbcTemplate.queryForList(TOUCHED_USERS, Long.class, after, upTo, after, upTo);
+        int written = 0;
+        for (Long userId : users) {
+            Boolean saved = newTx.execute(status -> {
+                State state = replay(userId, upTo);
+                if (state.replayed() < minPostings) return false;
+                jdbcTemplate.update(INSERT_SNAPSHOT, userId, upTo, state.owes(), state.owed(),
+                        objectMapper.writeValueAsString(state.owesTo()), objectMapper.writeValueAsString(state.owedBy()));
+                // only the latest snapshot is ever read; the log itself is never pruned
+                jdbcTemplate.update("delete from ledger_snapshots where user_id = ? and seq < ?", userId, upTo);
+                return true;
+            });
+            if (Boolean.TRUE.equals(saved)) written++;
+        }
+        return written;
+    }
+
+    /**
+     * Rebuild user_balances and pair_balances from the ledger alone. The log up to the
+     * watermark is folded in seq ranges on all cores; the short tail written meanwhile
+     * is folded while appends are blocked, right before the read models are replaced.
+     */
+    public ReplayResult replayAll() {
+        long start = System.currentTimeMillis();
+        long watermark = committedWatermark();
+
+        int ranges = parallelism * 4;
+        long step = Math.max(1, (watermark + ranges - 1) / ranges);
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        Fold total = new Fold();
+        try {
+            List<Future<Fold>> parts = new ArrayList<>();
+            for (long lo = 0; lo < watermark; lo += step) {
+                long from = lo, to = Math.min(watermark, lo + step);
+                parts.add(pool.submit(() -> newTx.execute(status -> fold(streaming, from, to, new Fold()))));
+            }
+            for (Future<Fold> part : parts) total.merge(part.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ledger replay interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ledger replay failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        long seq = newTx.execute(status -> {
+            jdbcTemplate.query("select pg_advisory_xact_lock(?)", rs -> { }, APPEND_LOCK);
+            long head = jdbcTemplate.queryForObject("select coalesce(max(seq), 0) from ledger_events", Long.class);
+            fold(jdbcTemplate, watermark, head, total);
+            total.write(jdbcTemplate);
+            return head;
+        });
+        reloadEngine();
+        long millis = System.currentTimeMillis() - start;
+        log.info("Replayed ledger up to seq {}: {} postings, {} users, {} pairs in {} ms on {} threads",
+                seq, total.postings, total.users.size(), total.pairs.size(), millis, parallelism);
+        return new ReplayResult(seq, total.users.size(), total.pairs.size(), total.postings, millis);
+    }
+
+    private static Fold fold(JdbcTemplate jdbc, long after, long upTo, Fold into) {
+        jdbc.query(RANGE, rs -> {
+            long userId = rs.getLong(1);
+            Long counterparty = rs.getObject(2, Long.class);
+            if (counterparty == null) {
+                into.user(userId, rs.getBigDecimal(3), rs.getBigDecimal(4));
+            } else {
+                into.pair(new BalanceDelta.Pair(userId, counterparty), rs.getBigDecimal(5));
+            }
+            into.postings++;
+        }, after, upTo);
+        return into;
+    }
+
+    // running sums of one replay partition
+    private static final class Fold {
+        final Map<Long, BigDecimal[]> users = new HashMap<>();
+        final Map<BalanceDelta.Pair, BigDecimal> pairs = new HashMap<>();
+        long postings;
+
+        void user(Long userId, BigDecimal owes, BigDecimal owed) {
+            BigDecimal[] t = users.computeIfAbsent(userId, k -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO});
+            t[0] = t[0].add(owes);
+            t[1] = t[1].add(owed);
+        }
+
+        void pair(BalanceDelta.Pair pair, BigDecimal amount) {
+            pairs.merge(pair, amount, BigDecimal::add);
+        }
+
+        void merge(Fold other) {
+            other.users.forEach((id, t) -> user(id, t[0], t[1]));
+            other.pairs.forEach(this::pair);
+            postings += other.postings;
+        }
+
+        void write(JdbcTemplate jdbc) {
+            jdbc.update("delete from user_balances");
+            jdbc.update("delete from pair_balances");
+            List<Object[]> userRows = new ArrayList<>(users.size());
+            users.forEach((id, t) -> {
+                if (t[0].signum() != 0 || t[1].signum() != 0) userRows.add(new Object[]{id, t[0], t[1], t[1].subtract(t[0])});
+            });
+            jdbc.batchUpdate("insert into user_balances (user_id, owes, owed, net, updated_at) values (?, ?, ?, ?, now())",
+                    userRows);
+            List<Object[]> pairRows = new ArrayList<>(pairs.size());
+            pairs.forEach((p, amount) -> {
+                if (amount.signum() != 0) pairRows.add(new Object[]{p.debtorId(), p.creditorId(), amount});
+            });
+            jdbc.batchUpdate("insert into pair_balances (debtor_id, creditor_id, amount, updated_at) values (?, ?, ?, now())",
+                    pairRows);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.splitwise.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Periodically snapshots users whose ledger tail has grown past
+ * {@code ledger.snapshot.min-postings}, so {@link LedgerService#replay} never reads more
+ * than about that many postings. Only users touched since the previous round are looked at.
+ */
+@Component
+@ConditionalOnProperty(name = "ledger.snapshot.enabled", havingValue = "true", matchIfMissing = true)
+public class LedgerSnapshotter implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerSnapshotter.class);
+
+    private final LedgerService ledgerService;
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration interval;
+    private final int minPostings;
+
+    private volatile Thread thread;
+    private long watermark = -1;
+
+    public LedgerSnapshotter(LedgerService ledgerService, JdbcTemplate jdbcTemplate,
+                             @Value("${ledger.snapshot.interval-ms:60000}") long intervalMs,
+                             @Value("${ledger.snapshot.min-postings:200}") int minPostings) {
+        this.ledgerService = ledgerService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.interval = Duration.ofMillis(intervalMs);
+        this.minPostings = minPostings;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (thread != null) return;
+        thread = Thread.ofVirtual().name("ledger-snapshotter").start(this::run);
+    }
+
+    @Override
+    public synchronized void stop() {
+        Thread t = thread;
+        thread = null;
+        if (t == null) return;
+        t.interrupt();
+        try {
+            t.join(Duration.ofSeconds(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return thread != null;
+    }
+
+    private void run() {
+        while (thread != null) {
+            try {
+                Thread.sleep(interval);
+                snapshotOnce();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Ledger snapshot round failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * One round: snapshot the users touched since the last one. Returns snapshots written.
+     */
+    int snapshotOnce() {
+        if (watermark < 0) {
+            // first round after start: resume from the newest snapshot any instance wrote
+            watermark = jdbcTemplate.queryForObject("select coalesce(max(seq), 0) from ledger_snapshots", Long.class);
+        }
+        long upTo = ledgerService.committedWatermark();
+        int written = ledgerService.snapshotTouched(watermark, upTo, minPostings);
+        watermark = upTo;
+        if (written > 0) log.info("Wrote {} ledger snapshots up to seq {}", written, upTo);
+        return written;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.splitwise.service;
+
+/**
+ * Open-addressing hash map from a pair of longs to a long, with no boxing. Entries are
+ * never removed; a zero value reads the same as a missing key. Not thread-safe.
+ */
+final class LongPairLongMap {
+
+    interface Visitor {
+        void visit(long a, long b, long value);
+    }
+
+    private long[] keysA;
+    private long[] keysB;
+    private long[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    LongPairLongMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    long get(long a, long b) {
+        int i = index(a, b);
+        while (used[i]) {
+            if (keysA[i] == a && keysB[i] == b) return values[i];
+            i = (i + 1) & mask;
+        }
+        return 0L;
+    }
+
+    /**
+     * Add {@code delta} to the value of (a, b) and return the new value.
+     */
+    long add(long a, long b, long delta) {
+        int i = index(a, b);
+        while (used[i]) {
+            if (keysA[i] == a && keysB[i] == b) return values[i] += delta;
+            i = (i + 1) & mask;
+        }
+        used[i] = true;
+        keysA[i] = a;
+        keysB[i] = b;
+        values[i] = delta;
+        // keep the load factor at or below one half
+        if (++size * 2 > used.length) rehash(used.length << 1);
+        return delta;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(Visitor visitor) {
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) visitor.visit(keysA[i], keysB[i], values[i]);
+        }
+    }
+
+    void clear() {
+        allocate(16);
+    }
+
+    private int index(long a, long b) {
+        long h = a * 0x9E3779B97F4A7C15L + b;
+        h ^= h >>> 32;
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 29)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keysA = new long[capacity];
+        keysB = new long[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldA = keysA, oldB = keysB, oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        for (int j = 0; j < oldUsed.length; j++) {
+            if (!oldUsed[j]) continue;
+            int i = index(oldA[j], oldB[j]);
+            while (used[i]) i = (i + 1) & mask;
+            used[i] = true;
+            keysA[i] = oldA[j];
+            keysB[i] = oldB[j];
+            values[i] = oldValues[j];
+            size++;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.splitwise.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A template compiled once into literal segments and placeholder slots.
+ *
+ * {@code {{name}}} marks a slot. Rendering resolves each distinct variable once,
+ * sizes the buffer exactly and then interleaves segments and values; no parsing
+ * happens on the hot path. HTML templates escape every value.
+ */
+public final class MailTemplate {
+
+    private final String[] segments;   // segments.length == slots.length + 1
+    private final int[] slots;         // index into variables for each slot
+    private final String[] variables;  // distinct names, in first-use order
+    private final boolean escapeHtml;
+    private final int literalLength;
+
+    private MailTemplate(String[] segments, int[] slots, String[] variables, boolean escapeHtml) {
+        this.segments = segments;
+        this.slots = slots;
+        this.variables = variables;
+        this.escapeHtml = escapeHtml;
+        int len = 0;
+        for (String s : segments) len += s.length();
+        this.literalLength = len;
+    }
+
+    public static MailTemplate compile(String source, boolean escapeHtml) {
+        List<String> segments = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        Map<String, Integer> variables = new LinkedHashMap<>();
+
+        int pos = 0;
+        while (true) {
+            int open = source.indexOf("{{", pos);
+            if (open < 0) break;
+            int close = source.indexOf("}}", open + 2);
+            if (close < 0) throw new IllegalArgumentException("Unclosed placeholder at offset " + open);
+            String name = source.substring(open + 2, close).trim();
+            if (name.isEmpty()) throw new IllegalArgumentException("Empty placeholder at offset " + open);
+
+            segments.add(source.substring(pos, open));
+            slots.add(variables.computeIfAbsent(name, k -> variables.size()));
+            pos = close + 2;
+        }
+        segments.add(source.substring(pos));
+
+        return new MailTemplate(
+                segments.toArray(new String[0]),
+                slots.stream().mapToInt(Integer::intValue).toArray(),
+                variables.keySet().toArray(new String[0]),
+                escapeHtml);
+    }
+
+    public String render(Map<String, ?> values) {
+        String[] resolved = new String[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            Object v = values.get(variables[i]);
+            String s = v == null ? "" : v.toString();
+            resolved[i] = escapeHtml ? escape(s) : s;
+        }
+
+        int size = literalLength;
+        for (int slot : slots) size += resolved[slot].length();
+
+        StringBuilder sb = new StringBuilder(size);
+        for (int i = 0; i < slots.length; i++) {
+            sb.append(segments[i]).append(resolved[slots[i]]);
+        }
+        return sb.append(segments[slots.length]).toString();
+    }
+
+    /**
+     * True if the template has no slots, i.e. every render produces the same text.
+     */
+    public boolean isStatic() {
+        return slots.length == 0;
+    }
+
+    public List<String> getVariables() {
+        return List.of(variables);
+    }
+
+    static String escape(String s) {
+        int i = 0;
+        while (i < s.length() && !needsEscape(s.charAt(i))) i++;
+        if (i == s.length()) return s;
+
+        StringBuilder sb = new StringBuilder(s.length() + 16).append(s, 0, i);
+        for (; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '&' -> sb.append("&amp;");
+                case '<' -> sb.append("&lt;");
+                case '>' -> sb.append("&gt;");
+                case '"' -> sb.append("&quot;");
+                case '\'' -> sb.append("&#39;");
+                default -> sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean needsEscape(char c) {
+        return c == '&' || c == '<' || c == '>' || c == '"' || c == '\'';
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.splitwise.service;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loads and compiles the notification templates under {@code templates/mail/} once at startup.
+ *
+ * Each template file starts with a {@code Subject:} line and a blank line, followed by
+ * the body rows. The body is inlined into {@code layout.html} at its
+ * {@code {{> content}}} marker before compiling, so the shared chrome costs nothing
+ * per render.
+ */
+@Component
+public class MailTemplateEngine {
+
+    public record Rendered(String subject, String html) {
+    }
+
+    private record Compiled(MailTemplate subject, MailTemplate body) {
+    }
+
+    private static final String LOCATION = "classpath*:templates/mail/";
+    private static final String LAYOUT = "layout";
+    private static final String CONTENT_MARKER = "{{> content}}";
+    private static final String SUBJECT_PREFIX = "Subject:";
+
+    private final Map<String, Compiled> templates = new HashMap<>();
+
+    public MailTemplateEngine() {
+        try {
+            var resolver = new PathMatchingResourcePatternResolver();
+            String layout = null;
+            Map<String, String> sources = new HashMap<>();
+            for (Resource r : resolver.getResources(LOCATION + "*.html")) {
+                String name = r.getFilename().substring(0, r.getFilename().length() - ".html".length());
+                String source = r.getContentAsString(StandardCharsets.UTF_8);
+                if (LAYOUT.equals(name)) layout = source;
+                else sources.put(name, source);
+            }
+            if (layout == null || !layout.contains(CONTENT_MARKER)) {
+                throw new IllegalStateException("Mail layout missing or has no " + CONTENT_MARKER + " marker");
+            }
+            for (Map.Entry<String, String> e : sources.entrySet()) {
+                templates.put(e.getKey(), compile(e.getKey(), layout, e.getValue()));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load mail templates", e);
+        }
+    }
+
+    /**
+     * Render a notification; {@code subject} is also available to the body.
+     */
+    public Rendered render(String name, Map<String, ?> values) {
+        Compiled t = templates.get(name);
+        if (t == null) throw new IllegalArgumentException("Unknown mail template: " + name);
+
+        String subject = t.subject().render(values);
+        Map<String, Object> withSubject = new HashMap<>(values);
+        withSubject.put("subject", subject);
+        return new Rendered(subject, t.body().render(withSubject));
+    }
+
+    private static Compiled compile(String name, String layout, String source) {
+        int eol = source.indexOf('\n');
+        if (!source.startsWith(SUBJECT_PREFIX) || eol < 0) {
+            throw new IllegalStateException("Mail template " + name + " must start with a Subject: line");
+        }
+        String subject = source.substring(SUBJECT_PREFIX.length(), eol).trim();
+        String body = source.substring(eol + 1).stripLeading();
+        return new Compiled(
+                MailTemplate.compile(subject, false),
+                MailTemplate.compile(layout.replace(CONTENT_MARKER, body), true));
+    }
+}
@@ -2,6 +2,7 @@ package com.example.splitwise.service;
 
 import com.example.splitwise.model.User;
 import com.example.splitwise.repo.UserRepo;
+import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.userdetails.*;
 import org.springframework.stereotype.Service;
 
@@ -20,14 +21,8 @@ public class MyUserDetailsService implements UserDetailsService {
         User u = repo.findByEmail(usernameOrEmail)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + usernameOrEmail));
 
-        return org.springframework.security.core.userdetails.User
-                .withUsername(u.getEmail())    // we use email as principal
-                .password(u.getPassword())
-                .authorities("USER")
-                .accountExpired(false)
-                .accountLocked(false)
-                .credentialsExpired(false)
-                .disabled(false)
-                .build();
+        // we use email as principal name; the id rides along so controllers need no second lookup
+        return new AuthenticatedUser(u.getId(), u.getEmail(), u.getUsername(), u.getPassword(),
+                AuthorityUtils.createAuthorityList("USER"));
     }
 }
@@ -0,0 +1,12 @@
+package com.example.splitwise.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Outcome of one payment towards a split: the ledger transaction written and
+ * what is left on the split afterwards.
+ */
+public record PaymentReceipt(Long transactionId, Long debitorId, Long eventId, Long fromUserId, Long toUserId,
+                             BigDecimal amount, BigDecimal remaining, boolean settled, LocalDateTime ts) {
+}
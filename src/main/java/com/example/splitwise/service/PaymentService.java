@@ -1,67 +1,295 @@
 package com.example.splitwise.service;
 
 import com.example.splitwise.model.Debitor;
-import com.example.splitwise.model.Transaction;
+import com.example.splitwise.model.Event;
 import com.example.splitwise.model.User;
-import com.example.splitwise.repo.DebitorRepo;
-import com.example.splitwise.repo.TransactionRepo;
 import com.example.splitwise.repo.UserRepo;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Service
 public class PaymentService {
 
-    private final DebitorRepo debitorRepo;
-    private final TransactionRepo transactionRepo;
+    // Applies the payment only if the split still has at least `amount` open, and writes
+    // the ledger row in the same statement. Concurrent payers queue on the row lock and
+    // re-check the condition against the committed amount, so a split is never overpaid.
+    private static final String APPLY_PAYMENT = """
+            with paid as (
+                update debitors d
+                   set amount_paid = coalesce(d.amount_paid, 0) + ?,
+                       settled = coalesce(d.amount_paid, 0) + ? >= d.deb_amount,
+                       paid_at = case when coalesce(d.amount_paid, 0) + ? >= d.deb_amount then now() else d.paid_at end,
+                       version = coalesce(d.version, 0) + 1
+                 where d.id = ?
+                   and d.settled = false
+                   and d.deb_amount - coalesce(d.amount_paid, 0) >= ?
+                returning d.id, d.user_id, d.event_id, d.deb_amount, d.amount_paid, d.settled
+            ), ev as (
+                select e.id, e.creator_id, e.cancelled, e.title
+                from events e
+                join paid p on p.event_id = e.id
+            ), tx as (
+                insert into transactions (ts, from_user_id, to_user_id, amount, event_id)
+                select localtimestamp, ?, ev.creator_id, ?, ev.id
+                from ev
+                where ev.creator_id is not null
+                returning id, ts
+            )
+            select p.id, p.user_id, p.event_id, p.deb_amount, p.amount_paid, p.settled,
+                   ev.creator_id, ev.cancelled, ev.title, tx.id, tx.ts
+            from paid p
+            left join ev on true
+            left join tx on true
+            """;
+
+    // FIFO allocation of one payment over every open split the payer has in the
+    // counterparty's events, oldest event first. The open splits are locked up front; the
+    // running total decides how much each one takes, and each event gets one ledger row.
+    private static final String SETTLE_UP = """
+            with unpaid as (
+                select d.id, d.event_id, d.deb_amount - coalesce(d.amount_paid, 0) as remaining,
+                       e.created_at
+                from debitors d
+                join events e on e.id = d.event_id
+                where d.user_id = ?
+                  and e.creator_id = ?
+                  and e.cancelled = false
+                  and d.settled = false
+                  and d.deb_amount - coalesce(d.amount_paid, 0) > 0
+                order by e.created_at, d.id
+                for update of d
+            ), alloc as (
+                select o.id, o.event_id,
+                       least(o.remaining, greatest(? - (sum(o.remaining) over w - o.remaining), 0)) as pay
+                from unpaid o
+                window w as (order by o.created_at, o.id rows unbounded preceding)
+            ), paid as (
+                update debitors d
+                   set amount_paid = coalesce(d.amount_paid, 0) + a.pay,
+                       settled = coalesce(d.amount_paid, 0) + a.pay >= d.deb_amount,
+                       paid_at = case when coalesce(d.amount_paid, 0) + a.pay >= d.deb_amount then now() else d.paid_at end,
+                       version = coalesce(d.version, 0) + 1
+                from alloc a
+                where d.id = a.id and a.pay > 0
+                returning d.id, d.event_id, a.pay, d.deb_amount, d.amount_paid, d.settled
+            ), tx as (
+                insert into transactions (ts, from_user_id, to_user_id, amount, event_id, note)
+                select localtimestamp, ?, ?, sum(p.pay), p.event_id, 'settle-up'
+                from paid p
+                group by p.event_id
+                returning id, event_id, amount
+            )
+            select t.total, p.id, p.event_id, p.pay, p.deb_amount, p.amount_paid, p.settled, tx.id, tx.amount
+            from (select coalesce(sum(remaining), 0) as total from unpaid) t
+            left join paid p on true
+            left join tx on tx.event_id = p.event_id
+            order by p.event_id, p.id
+            """;
+
+    private static final String SPLIT_STATE = """
+            select settled, deb_amount - coalesce(amount_paid, 0) from debitors where id = ?
+            """;
+
+    private record SettledSplit(BigDecimal openBefore, Debitor before, Debitor after, Long transactionId,
+                                BigDecimal eventAmount) {
+    }
+
+    private record Applied(Debitor before, Debitor after, String title, PaymentReceipt receipt) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
     private final UserRepo userRepo;
+    private final BalanceService balanceService;
+    private final EmailService emailService;
+    private final EntityManagerFactory entityManagerFactory;
 
-    public PaymentService(DebitorRepo debitorRepo, TransactionRepo transactionRepo, UserRepo userRepo){
-        this.debitorRepo = debitorRepo;
-        this.transactionRepo = transactionRepo;
+    public PaymentService(JdbcTemplate jdbcTemplate, UserRepo userRepo, BalanceService balanceService,
+                          EmailService emailService, EntityManagerFactory entityManagerFactory){
+        this.jdbcTemplate = jdbcTemplate;
         this.userRepo = userRepo;
+        this.balanceService = balanceService;
+        this.emailService = emailService;
+        this.entityManagerFactory = entityManagerFactory;
     }
 
     /**
      * Payer pays part or full of a Debitor (split).
-     * Creates a Transaction and updates the Debitor.
+     * Creates a Transaction and updates the Debitor in one conditional statement.
+     */
+    @Transactional
+    public PaymentReceipt payDebitor(Long debitorId, Long payerUserId, BigDecimal amount){
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) throw new IllegalArgumentException("Invalid amount");
+
+        List<Applied> rows;
+        try {
+            rows = jdbcTemplate.query(APPLY_PAYMENT, (rs, i) -> {
+                Event event = new Event();
+                event.setId(rs.getLong(3));
+                long creatorId = rs.getLong(7);
+                if (!rs.wasNull()) event.setCreator(userRef(creatorId));
+                event.setCancelled(rs.getBoolean(8));
+
+                Debitor after = new Debitor();
+                after.setId(rs.getLong(1));
+                after.setUser(userRef(rs.getLong(2)));
+                after.setEvent(event);
+                after.setDebAmount(rs.getBigDecimal(4));
+                after.setAmountPaid(rs.getBigDecimal(5));
+                after.setSettled(rs.getBoolean(6));
+
+                Debitor before = new Debitor();
+                before.setUser(after.getUser());
+                before.setEvent(event);
+                before.setDebAmount(after.getDebAmount());
+                before.setAmountPaid(after.getAmountPaid().subtract(amount));
+                before.setSettled(false);
+
+                long txId = rs.getLong(10);
+                PaymentReceipt receipt = rs.wasNull() ? null : new PaymentReceipt(
+                        txId, after.getId(), event.getId(), payerUserId, creatorId, amount,
+                        after.getRemaining().toBigDecimal(), after.isSettled(), rs.getTimestamp(11).toLocalDateTime());
+                return new Applied(before, after, rs.getString(9), receipt);
+            }, amount, amount, amount, debitorId, amount, payerUserId, amount);
+        } catch (DataIntegrityViolationException e) {
+            // transactions.from_user_id references users
+            throw new IllegalArgumentException("Payer not found");
+        }
+
+        if (rows.isEmpty()) throw rejection(debitorId);
+        Applied applied = rows.getFirst();
+        // rolls the split update back as well
+        if (applied.receipt() == null) throw new IllegalStateException("Receiver not found for this split");
+
+        evictSplits(List.of(debitorId));
+
+        // keep the user_balances read model in step (same tx)
+        balanceService.apply(new BalanceDelta(new LedgerEvent(LedgerEvent.Type.PAYMENT_APPLIED, applied.receipt().eventId(), debitorId,
+                payerUserId, amount)).split(applied.before(), -1).split(applied.after(), +1));
+
+        // notify the creator through the outbox (same tx, sent asynchronously)
+        PaymentReceipt receipt = applied.receipt();
+        if (!receipt.toUserId().equals(payerUserId)) {
+            User receiver = userRepo.findById(receipt.toUserId()).orElse(null);
+            User payer = userRepo.findById(payerUserId).orElse(null);
+            if (receiver != null && payer != null && receiver.getEmail() != null) {
+                emailService.queuePaymentReceivedEmail(receiver, payer, applied.title(),
+                        amount, receipt.remaining());
+            }
+        }
+        return receipt;
+    }
+
+    /**
+     * Pay {@code amount} towards everything the payer owes the counterparty, spread over
+     * the open splits oldest event first. One statement does the allocation, the split
+     * updates and one Transaction per event; the amount may not exceed what is open.
      */
     @Transactional
-    public Transaction payDebitor(Long debitorId, Long payerUserId, BigDecimal amount){
-        Debitor split = debitorRepo.findById(debitorId)
-                .orElseThrow(() -> new IllegalArgumentException("Split not found"));
-        User payer = userRepo.findById(payerUserId)
-                .orElseThrow(() -> new IllegalArgumentException("Payer not found"));
-
-        User receiver = split.getEvent() != null ? split.getEvent().getCreator() : null;
-        if (receiver == null) throw new IllegalStateException("Receiver not found for this split");
-
-        BigDecimal remaining = split.getRemaining();
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) throw new IllegalArgumentException("Invalid amount");
-        if (amount.compareTo(remaining) > 0) throw new IllegalArgumentException("Amount exceeds remaining share");
-
-        Transaction tx = new Transaction();
-        tx.setFromUser(payer);
-        tx.setToUser(receiver);
-        tx.setAmount(amount);
-        tx.setEventId(split.getEvent() != null ? split.getEvent().getId() : null);
-        tx.setTs(LocalDateTime.now());
-        transactionRepo.save(tx);
-
-        split.setAmountPaid(split.getAmountPaid().add(amount));
-        if (split.getAmountPaid().compareTo(split.getDebAmount()) >= 0){
-            split.setSettled(true);
-            split.setPaidAt(LocalDateTime.now());
+    public SettleUpReceipt settleUp(Long payerUserId, Long counterpartyUserId, BigDecimal amount) {
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) throw new IllegalArgumentException("Invalid amount");
+        if (payerUserId.equals(counterpartyUserId)) throw new IllegalArgumentException("Cannot settle with yourself");
+
+        List<SettledSplit> rows;
+        try {
+            rows = jdbcTemplate.query(SETTLE_UP, (rs, i) -> {
+                BigDecimal open = rs.getBigDecimal(1);
+                long splitId = rs.getLong(2);
+                if (rs.wasNull()) return new SettledSplit(open, null, null, null, null);
+
+                Event event = new Event();
+                event.setId(rs.getLong(3));
+                event.setCreator(userRef(counterpartyUserId));
+                BigDecimal pay = rs.getBigDecimal(4);
+
+                Debitor after = new Debitor();
+                after.setId(splitId);
+                after.setUser(userRef(payerUserId));
+                after.setEvent(event);
+                after.setDebAmount(rs.getBigDecimal(5));
+                after.setAmountPaid(rs.getBigDecimal(6));
+                after.setSettled(rs.getBoolean(7));
+
+                Debitor before = new Debitor();
+                before.setUser(after.getUser());
+                before.setEvent(event);
+                before.setDebAmount(after.getDebAmount());
+                before.setAmountPaid(after.getAmountPaid().subtract(pay));
+                before.setSettled(false);
+                return new SettledSplit(open, before, after, rs.getLong(8), rs.getBigDecimal(9));
+            }, payerUserId, counterpartyUserId, amount, payerUserId, counterpartyUserId);
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalArgumentException("User not found");
+        }
+
+        BigDecimal open = rows.getFirst().openBefore();
+        // throwing rolls the allocation back
+        if (open.signum() == 0) throw new IllegalStateException("Nothing owed to this user");
+        if (amount.compareTo(open) > 0) throw new IllegalArgumentException("Amount exceeds open balance of " + open);
+
+        BalanceDelta delta = new BalanceDelta(new LedgerEvent(LedgerEvent.Type.PAYMENT_APPLIED, null, null, payerUserId, amount));
+        List<Long> splitIds = new ArrayList<>(rows.size());
+        Map<Long, SettleUpReceipt.EventPayment> perEvent = new LinkedHashMap<>();
+        int settled = 0;
+        for (SettledSplit s : rows) {
+            delta.split(s.before(), -1).split(s.after(), +1);
+            splitIds.add(s.after().getId());
+            if (s.after().isSettled()) settled++;
+            Long eventId = s.after().getEvent().getId();
+            perEvent.putIfAbsent(eventId, new SettleUpReceipt.EventPayment(s.transactionId(), eventId, s.eventAmount()));
         }
-        debitorRepo.save(split);
+        evictSplits(splitIds);
+        balanceService.apply(delta);
+
+        BigDecimal remaining = open.subtract(amount);
+        User receiver = userRepo.findById(counterpartyUserId).orElse(null);
+        User payer = userRepo.findById(payerUserId).orElse(null);
+        if (receiver != null && payer != null && receiver.getEmail() != null) {
+            String title = perEvent.size() == 1 ? "1 expense" : perEvent.size() + " expenses";
+            emailService.queuePaymentReceivedEmail(receiver, payer, title, amount, remaining);
+        }
+        return new SettleUpReceipt(payerUserId, counterpartyUserId, amount, remaining, rows.size(), settled,
+                List.copyOf(perEvent.values()));
+    }
 
-        // optional: update materialized user totals if used (do inside same tx)
-        // payer.setTotal(payer.getTotal().subtract(amount)); userRepo.save(payer);
-        // receiver.setTotal(receiver.getTotal().add(amount)); userRepo.save(receiver);
+    // the update matched nothing: tell the caller why
+    private RuntimeException rejection(Long debitorId) {
+        List<Object[]> state = jdbcTemplate.query(SPLIT_STATE,
+                (rs, i) -> new Object[]{rs.getBoolean(1), rs.getBigDecimal(2)}, debitorId);
+        if (state.isEmpty()) return new IllegalArgumentException("Split not found");
+        if ((Boolean) state.getFirst()[0]) return new IllegalStateException("Split already settled");
+        return new IllegalArgumentException("Amount exceeds remaining share");
+    }
+
+    // split rows changed behind Hibernate; drop them from the second-level cache now and
+    // again after commit, so no reader re-caches an old row in between
+    private void evictSplits(List<Long> debitorIds) {
+        Cache cache = entityManagerFactory.getCache();
+        debitorIds.forEach(id -> cache.evict(Debitor.class, id));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    debitorIds.forEach(id -> cache.evict(Debitor.class, id));
+                }
+            });
+        }
+    }
 
-        return tx;
+    private static User userRef(Long id) {
+        User u = new User();
+        u.setId(id);
+        return u;
     }
 }
@@ -0,0 +1,15 @@
+package com.example.splitwise.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Outcome of settling up with one counterparty: what was paid, what is still open
+ * towards them, and the one ledger transaction written per event.
+ */
+public record SettleUpReceipt(Long fromUserId, Long toUserId, BigDecimal amount, BigDecimal remaining,
+                              int splitsPaid, int splitsSettled, List<EventPayment> payments) {
+
+    public record EventPayment(Long transactionId, Long eventId, BigDecimal amount) {
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.splitwise.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Greedy debt simplification.
+ *
+ * Debts are folded into one net position per user (in minor units, so the fold is
+ * exact and allocation free), then the largest debtor is repeatedly matched with the
+ * largest creditor using two heaps. Every step settles at least one side, so a group
+ * of n users never needs more than n - 1 transfers. The plan is not guaranteed to be
+ * the smallest possible: finding that is NP-hard.
+ *
+ * Not thread-safe; build one engine per plan.
+ */
+public class SettlementEngine {
+
+    public record Transfer(Long fromUserId, Long toUserId, BigDecimal amount) {
+    }
+
+    private final Map<Long, Integer> index = new HashMap<>();
+    private long[] userIds;
+    private long[] net;
+    private int size;
+
+    public SettlementEngine() {
+        this(16);
+    }
+
+    public SettlementEngine(int expectedUsers) {
+        int capacity = Math.max(expectedUsers, 16);
+        this.userIds = new long[capacity];
+        this.net = new long[capacity];
+    }
+
+    /**
+     * Record that debtor owes creditor the given amount in minor units (cents).
+     */
+    public void addDebt(long debtorId, long creditorId, long amountMinor) {
+        if (debtorId == creditorId || amountMinor == 0) return;
+        int d = slot(debtorId);
+        int c = slot(creditorId);
+        net[d] = Math.subtractExact(net[d], amountMinor);
+        net[c] = Math.addExact(net[c], amountMinor);
+    }
+
+    public void addDebt(long debtorId, long creditorId, BigDecimal amount) {
+        addDebt(debtorId, creditorId, amount.movePointRight(2).longValueExact());
+    }
+
+    public List<Transfer> simplify() {
+        PriorityQueue<Integer> debtors = new PriorityQueue<>(Math.max(size, 1), (a, b) -> Long.compare(net[a], net[b]));
+        PriorityQueue<Integer> creditors = new PriorityQueue<>(Math.max(size, 1), (a, b) -> Long.compare(net[b], net[a]));
+        for (int i = 0; i < size; i++) {
+            if (net[i] < 0) debtors.add(i);
+            else if (net[i] > 0) creditors.add(i);
+        }
+
+        List<Transfer> plan = new ArrayList<>(Math.max(size - 1, 0));
+        while (!debtors.isEmpty() && !creditors.isEmpty()) {
+            int d = debtors.poll();
+            int c = creditors.poll();
+            long amount = Math.min(-net[d], net[c]);
+
+            plan.add(new Transfer(userIds[d], userIds[c], BigDecimal.valueOf(amount, 2)));
+            net[d] += amount;
+            net[c] -= amount;
+
+            if (net[d] < 0) debtors.add(d);
+            if (net[c] > 0) creditors.add(c);
+        }
+        return plan;
+    }
+
+    /**
+     * Net position of a user in minor units (positive = is owed money).
+     */
+    public long netOf(long userId) {
+        Integer i = index.get(userId);
+        return i == null ? 0 : net[i];
+    }
+
+    private int slot(long userId) {
+        Integer i = index.get(userId);
+        if (i != null) return i;
+        if (size == userIds.length) {
+            userIds = Arrays.copyOf(userIds, size * 2);
+            net = Arrays.copyOf(net, size * 2);
+        }
+        userIds[size] = userId;
+        index.put(userId, size);
+        return size++;
+    }
+}
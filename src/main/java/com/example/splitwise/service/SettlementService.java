@@ -0,0 +1,44 @@
+package com.example.splitwise.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+@Service
+public class SettlementService {
+
+    // net pairwise graph inside the group, read from the maintained pair_balances matrix
+    private static final String OPEN_DEBTS_BY_PAIR = """
+            select p.debtor_id, p.creditor_id, p.amount
+            from pair_balances p
+            where p.debtor_id = any(?)
+              and p.creditor_id = any(?)
+              and p.amount <> 0
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SettlementService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Build a settle-up plan for the given group of users: at most n - 1 transfers
+     * that clear every open split between members of the group.
+     */
+    @Transactional(readOnly = true)
+    public List<SettlementEngine.Transfer> plan(Collection<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) throw new IllegalArgumentException("userIds required");
+        Long[] ids = new LinkedHashSet<>(userIds).toArray(new Long[0]);
+
+        SettlementEngine engine = new SettlementEngine(ids.length);
+        jdbcTemplate.query(OPEN_DEBTS_BY_PAIR, rs -> {
+            engine.addDebt(rs.getLong(1), rs.getLong(2), rs.getBigDecimal(3));
+        }, ids, ids);
+        return engine.simplify();
+    }
+}
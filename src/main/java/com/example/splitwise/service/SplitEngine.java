@@ -0,0 +1,243 @@
+package com.example.splitwise.service;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Divides an event total in minor units (cents) over participants, with largest-remainder
+ * rounding: everyone gets the floor of their exact share and the leftover cents, fewer
+ * than the number of participants, go one each to the largest fractional parts, earlier
+ * participants first on ties. The shares always add up to the total exactly.
+ *
+ * Works on primitive arrays in O(n): one pass for the floors, a three-way quickselect
+ * for the cut-off remainder and one pass to hand out the cents.
+ */
+public final class SplitEngine {
+
+    private SplitEngine() {
+    }
+
+    /**
+     * Equal shares; the first {@code total % n} participants get one extra cent.
+     */
+    public static long[] equal(long total, int n) {
+        checkTotal(total);
+        if (n <= 0) throw new IllegalArgumentException("No participants");
+        long[] shares = new long[n];
+        long share = total / n;
+        int extra = (int) (total % n);
+        for (int i = 0; i < n; i++) shares[i] = i < extra ? share + 1 : share;
+        return shares;
+    }
+
+    /**
+     * Shares proportional to non-negative {@code weights}, at least one of them positive.
+     */
+    public static long[] weighted(long total, long[] weights) {
+        checkTotal(total);
+        int n = weights.length;
+        if (n == 0) throw new IllegalArgumentException("No participants");
+        long sum = 0;
+        for (long w : weights) {
+            if (w < 0) throw new IllegalArgumentException("Weights must not be negative");
+            sum = Math.addExact(sum, w);
+        }
+        if (sum == 0) throw new IllegalArgumentException("Weights must not all be zero");
+
+        long[] shares = new long[n];
+        long[] remainders = new long[n];
+        long left = total;
+        try {
+            for (int i = 0; i < n; i++) {
+                long exact = Math.multiplyExact(total, weights[i]);
+                shares[i] = exact / sum;
+                remainders[i] = exact % sum;
+                left -= shares[i];
+            }
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Total and weights too large to split exactly", e);
+        }
+        distribute(shares, remainders, (int) left);
+        return shares;
+    }
+
+    /**
+     * Percentages in basis points (hundredths of a percent); they must add up to 100%.
+     */
+    public static long[] percentages(long total, long[] basisPoints) {
+        long sum = 0;
+        for (long bp : basisPoints) {
+            if (bp < 0 || bp > 10_000) throw new IllegalArgumentException("Percentages must be between 0 and 100");
+            sum += bp;
+        }
+        if (sum != 10_000) throw new IllegalArgumentException("Percentages must add up to 100");
+        return weighted(total, basisPoints);
+    }
+
+    /**
+     * Amounts given per participant; they must add up to the total.
+     */
+    public static long[] exact(long total, long[] amounts) {
+        checkTotal(total);
+        if (amounts.length == 0) throw new IllegalArgumentException("No participants");
+        long sum = 0;
+        for (long a : amounts) {
+            if (a < 0) throw new IllegalArgumentException("Amounts must not be negative");
+            sum = Math.addExact(sum, a);
+        }
+        if (sum != total) throw new IllegalArgumentException("Amounts must add up to the total");
+        return amounts.clone();
+    }
+
+    /**
+     * Items split equally among the participants who had them; the items must add up to
+     * the total. Item {@code i} is shared by the participant indexes
+     * {@code members[offsets[i]] .. members[offsets[i + 1] - 1]}. Each participant's exact
+     * share is summed over their items as a fraction over the lcm of the group sizes, and
+     * the whole total is rounded once, like {@link #weighted}: nobody ends up more than a
+     * cent from their exact share, however many items there are.
+     */
+    public static long[] itemised(long total, int n, long[] amounts, int[] offsets, int[] members) {
+        checkTotal(total);
+        if (n <= 0) throw new IllegalArgumentException("No participants");
+        if (offsets.length != amounts.length + 1) throw new IllegalArgumentException("Malformed items");
+        long sum = 0;
+        long lcm = 1;
+        for (int i = 0; i < amounts.length; i++) {
+            int from = offsets[i], k = offsets[i + 1] - from;
+            if (amounts[i] < 0) throw new IllegalArgumentException("Item amounts must not be negative");
+            if (k <= 0) throw new IllegalArgumentException("Every item needs at least one participant");
+            for (int j = from; j < from + k; j++) {
+                if (members[j] < 0 || members[j] >= n) throw new IllegalArgumentException("Item participant out of range");
+            }
+            sum = Math.addExact(sum, amounts[i]);
+            // 0 once the lcm no longer fits a long
+            if (lcm != 0) lcm = lcmOrZero(lcm, k);
+        }
+        if (sum != total) throw new IllegalArgumentException("Items must add up to the total");
+
+        if (lcm != 0) {
+            try {
+                long[] numerators = new long[n];
+                for (int i = 0; i < amounts.length; i++) {
+                    int from = offsets[i], k = offsets[i + 1] - from;
+                    long scaled = Math.multiplyExact(amounts[i], lcm / k);
+                    for (int j = from; j < from + k; j++) {
+                        numerators[members[j]] = Math.addExact(numerators[members[j]], scaled);
+                    }
+                }
+                long[] shares = new long[n];
+                long[] remainders = new long[n];
+                long left = total;
+                for (int p = 0; p < n; p++) {
+                    shares[p] = numerators[p] / lcm;
+                    remainders[p] = numerators[p] % lcm;
+                    left -= shares[p];
+                }
+                distribute(shares, remainders, (int) left);
+                return shares;
+            } catch (ArithmeticException e) {
+                // scaled amounts overflow; fall through to the exact path
+            }
+        }
+        return itemisedBig(total, n, amounts, offsets, members);
+    }
+
+    // itemised() over BigInteger, for group sizes or amounts the long path cannot hold
+    private static long[] itemisedBig(long total, int n, long[] amounts, int[] offsets, int[] members) {
+        BigInteger lcm = BigInteger.ONE;
+        for (int i = 0; i < amounts.length; i++) {
+            BigInteger k = BigInteger.valueOf(offsets[i + 1] - offsets[i]);
+            lcm = lcm.divide(lcm.gcd(k)).multiply(k);
+        }
+        BigInteger[] numerators = new BigInteger[n];
+        Arrays.fill(numerators, BigInteger.ZERO);
+        for (int i = 0; i < amounts.length; i++) {
+            BigInteger scaled = BigInteger.valueOf(amounts[i])
+                    .multiply(lcm.divide(BigInteger.valueOf(offsets[i + 1] - offsets[i])));
+            for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                numerators[members[j]] = numerators[members[j]].add(scaled);
+            }
+        }
+        long[] shares = new long[n];
+        BigInteger[] remainders = new BigInteger[n];
+        long left = total;
+        for (int p = 0; p < n; p++) {
+            BigInteger[] qr = numerators[p].divideAndRemainder(lcm);
+            shares[p] = qr[0].longValueExact();
+            remainders[p] = qr[1];
+            left -= shares[p];
+        }
+        // stable sort: lower index first among equal remainders
+        Integer[] order = new Integer[n];
+        for (int p = 0; p < n; p++) order[p] = p;
+        Arrays.sort(order, Comparator.comparing((Integer p) -> remainders[p]).reversed());
+        for (int j = 0; j < left; j++) shares[order[j]]++;
+        return shares;
+    }
+
+    private static long lcmOrZero(long a, long b) {
+        long x = a, y = b;
+        while (y != 0) {
+            long t = x % y;
+            x = y;
+            y = t;
+        }
+        try {
+            return Math.multiplyExact(a / x, b);
+        } catch (ArithmeticException e) {
+            return 0;
+        }
+    }
+
+    private static void checkTotal(long total) {
+        if (total < 0) throw new IllegalArgumentException("Total must not be negative");
+    }
+
+    // one cent each to the `left` largest remainders, lower index first among equals
+    private static void distribute(long[] shares, long[] remainders, int left) {
+        if (left == 0) return;
+        long cut = kthLargest(remainders.clone(), left);
+        for (int i = 0; i < remainders.length && left > 0; i++) {
+            if (remainders[i] > cut) {
+                shares[i]++;
+                left--;
+            }
+        }
+        for (int i = 0; i < remainders.length && left > 0; i++) {
+            if (remainders[i] == cut) {
+                shares[i]++;
+                left--;
+            }
+        }
+    }
+
+    // quickselect with a three-way partition, so runs of equal remainders stay linear
+    private static long kthLargest(long[] a, int k) {
+        int lo = 0, hi = a.length - 1, target = k - 1;
+        while (true) {
+            long pivot = median(a[lo], a[lo + (hi - lo) / 2], a[hi]);
+            // [lo, gt) > pivot, [gt, i) == pivot, (lt, hi] < pivot
+            int gt = lo, i = lo, lt = hi;
+            while (i <= lt) {
+                if (a[i] > pivot) swap(a, gt++, i++);
+                else if (a[i] < pivot) swap(a, i, lt--);
+                else i++;
+            }
+            if (target < gt) hi = gt - 1;
+            else if (target > lt) lo = lt + 1;
+            else return pivot;
+        }
+    }
+
+    private static long median(long a, long b, long c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    private static void swap(long[] a, int i, int j) {
+        long t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.splitwise.service;
+
+/**
+ * How an event total is divided among its participants. Implementations return one
+ * amount in minor units per participant, in participant order, adding up to the total;
+ * invalid inputs throw {@link IllegalArgumentException}. The built-in strategies are
+ * backed by {@link SplitEngine}.
+ */
+@FunctionalInterface
+public interface SplitStrategy {
+
+    enum Type { EQUAL, PERCENTAGE, SHARES, EXACT, ITEMISED }
+
+    long[] allocate(long total, int participants);
+
+    static SplitStrategy equal() {
+        return SplitEngine::equal;
+    }
+
+    /**
+     * @param basisPoints per participant, in hundredths of a percent (33.33% is 3333)
+     */
+    static SplitStrategy percentages(long[] basisPoints) {
+        return (total, n) -> SplitEngine.percentages(total, checked(basisPoints, n));
+    }
+
+    static SplitStrategy shares(long[] weights) {
+        return (total, n) -> SplitEngine.weighted(total, checked(weights, n));
+    }
+
+    static SplitStrategy exact(long[] amounts) {
+        return (total, n) -> SplitEngine.exact(total, checked(amounts, n));
+    }
+
+    /**
+     * @see SplitEngine#itemised
+     */
+    static SplitStrategy itemised(long[] amounts, int[] offsets, int[] members) {
+        return (total, n) -> SplitEngine.itemised(total, n, amounts, offsets, members);
+    }
+
+    private static long[] checked(long[] values, int n) {
+        if (values.length != n) throw new IllegalArgumentException("Expected one value per participant");
+        return values;
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.splitwise.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transaction history, newest first, keyset-paginated on (ts, id).
+ *
+ * A user's history is the union of what they paid and what they received; each half
+ * is its own range scan on idx_transactions_from_user_ts / idx_transactions_to_user_ts
+ * stopped after one page, so a page costs the same on a fresh account and on one with
+ * millions of rows. Without a user the history of one event is read from
+ * idx_transactions_event_ts.
+ */
+@Service
+public class TransactionHistoryService {
+
+    /**
+     * Filters of one history request; {@code userId} or {@code eventId} is required,
+     * {@code from} is inclusive and {@code to} exclusive.
+     */
+    public record Filter(Long userId, Long counterpartyId, Long eventId, LocalDateTime from, LocalDateTime to) {
+    }
+
+    private static final String COLUMNS = "t.id, t.ts, t.from_user_id, t.to_user_id, t.amount, t.event_id, t.note";
+
+    private static final String BRANCH = """
+            (select %s
+             from transactions t
+             where %s
+             order by t.ts desc, t.id desc
+             limit ?)
+            """;
+
+    private static final String USER_HISTORY = """
+            select * from (
+            %s
+            union all
+            %s
+            ) h
+            order by h.ts desc, h.id desc
+            limit ?
+            """;
+
+    private static final RowMapper<TransactionView> VIEW = (rs, i) -> new TransactionView(
+            rs.getLong(1),
+            rs.getObject(2, LocalDateTime.class),
+            rs.getObject(3, Long.class),
+            rs.getObject(4, Long.class),
+            rs.getBigDecimal(5),
+            rs.getObject(6, Long.class),
+            rs.getString(7));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TransactionHistoryService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<TransactionView> find(Filter filter, Integer limit, String after) {
+        if (filter.userId() == null && filter.eventId() == null) {
+            throw new IllegalArgumentException("user or eventId required");
+        }
+        if (filter.from() != null && filter.to() != null && !filter.from().isBefore(filter.to())) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        int size = CursorPage.limit(limit);
+        CursorPage.Keyset cursor = CursorPage.afterKeyset(after);
+
+        List<TransactionView> rows;
+        if (filter.userId() == null) {
+            List<Object> args = new ArrayList<>();
+            String where = "t.event_id = ?" + common(filter, cursor, args, List.of(filter.eventId()));
+            args.add(size + 1);
+            rows = jdbcTemplate.query(BRANCH.formatted(COLUMNS, where), VIEW, args.toArray());
+        } else {
+            Long user = filter.userId();
+            Long counterparty = filter.counterpartyId();
+            List<Object> args = new ArrayList<>();
+
+            String paid = counterparty == null
+                    ? "t.from_user_id = ?" + common(filter, cursor, args, List.of(user))
+                    : "t.from_user_id = ? and t.to_user_id = ?" + common(filter, cursor, args, List.of(user, counterparty));
+            args.add(size + 1);
+            // a payment to oneself is already in the first half
+            String received = counterparty == null
+                    ? "t.to_user_id = ? and t.from_user_id is distinct from ?" + common(filter, cursor, args, List.of(user, user))
+                    : "t.to_user_id = ? and t.from_user_id = ? and t.from_user_id <> ?" + common(filter, cursor, args, List.of(user, counterparty, user));
+            args.add(size + 1);
+            args.add(size + 1);
+
+            rows = jdbcTemplate.query(USER_HISTORY.formatted(
+                    BRANCH.formatted(COLUMNS, paid), BRANCH.formatted(COLUMNS, received)), VIEW, args.toArray());
+        }
+        return CursorPage.ofKeyset(rows, size, TransactionView::keyset);
+    }
+
+    // conditions shared by every branch; appends the leading args first, then its own
+    private static String common(Filter filter, CursorPage.Keyset cursor, List<Object> args, List<Object> leading) {
+        args.addAll(leading);
+        StringBuilder sql = new StringBuilder(" and t.ts is not null");
+        if (filter.userId() != null && filter.eventId() != null) {
+            sql.append(" and t.event_id = ?");
+            args.add(filter.eventId());
+        }
+        if (filter.from() != null) {
+            sql.append(" and t.ts >= ?");
+            args.add(filter.from());
+        }
+        if (filter.to() != null) {
+            sql.append(" and t.ts < ?");
+            args.add(filter.to());
+        }
+        if (cursor != null) {
+            // spelled out rather than (ts, id) < (?, ?) so the ts bound is an index condition
+            sql.append(" and t.ts <= ? and (t.ts < ? or t.id < ?)");
+            args.add(cursor.ts());
+            args.add(cursor.ts());
+            args.add(cursor.id());
+        }
+        return sql.toString();
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.splitwise.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One row of the transaction history, read straight from the table without loading
+ * the users behind it.
+ */
+public record TransactionView(Long id, LocalDateTime ts, Long fromUserId, Long toUserId, BigDecimal amount,
+                              Long eventId, String note) {
+
+    CursorPage.Keyset keyset() {
+        return new CursorPage.Keyset(ts, id);
+    }
+}
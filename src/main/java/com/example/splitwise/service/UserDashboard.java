@@ -0,0 +1,25 @@
+package com.example.splitwise.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * The {@code /api/users/me} payload, built from flat projections rather than entities.
+ */
+public record UserDashboard(Long id, String email, String username, BigDecimal total, boolean emailVerified,
+                            BigDecimal youOwe, BigDecimal owedToYou, BigDecimal net,
+                            List<Split> debitors, List<CreatedEvent> events) {
+
+    /**
+     * One of the user's splits.
+     */
+    public record Split(Long id, Long eventId, Long userId, BigDecimal debAmount, BigDecimal amountPaid,
+                        BigDecimal remaining, boolean included, boolean settled) {
+    }
+
+    /**
+     * An event the user created, with what its participants have paid so far.
+     */
+    public record CreatedEvent(Long id, String title, BigDecimal total, boolean cancelled, BigDecimal paid) {
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.splitwise.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serves the {@code /me} dashboard with two statements whatever the user's history:
+ * the user header joined with its balance row, then the user's splits and created
+ * events (with per-event paid sums) in one UNION ALL. No entity is loaded.
+ */
+@Service
+public class UserDashboardService {
+
+    private static final String HEADER = """
+            select u.id, u.email, u.username, u.total, u.mail_given, b.owes, b.owed, b.net
+            from users u
+            left join user_balances b on b.user_id = u.id
+            where u.id = ?
+            """;
+
+    // kind 's' = split of the user, 'e' = event created by the user
+    private static final String ROWS = """
+            select 's' as kind, d.id, d.event_id, null as title, d.deb_amount as amount, d.amount_paid as paid,
+                   d.included, d.settled as closed
+            from debitors d
+            where d.user_id = ?
+            union all
+            select 'e', e.id, e.id, e.title, e.total, coalesce(sum(s.amount_paid), 0), null, e.cancelled
+            from events e
+            left join debitors s on s.event_id = e.id
+            where e.creator_id = ?
+            group by e.id
+            order by 1 desc, 2
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserDashboardService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Dashboard for the given user, or null if the user does not exist.
+     */
+    @Transactional(readOnly = true)
+    public UserDashboard getDashboard(Long userId) {
+        List<UserDashboard> header = jdbcTemplate.query(HEADER, (rs, i) -> new UserDashboard(
+                rs.getLong(1),
+                rs.getString(2),
+                rs.getString(3),
+                nz(rs.getBigDecimal(4)),
+                rs.getBoolean(5),
+                nz(rs.getBigDecimal(6)),
+                nz(rs.getBigDecimal(7)),
+                nz(rs.getBigDecimal(8)),
+                new ArrayList<>(),
+                new ArrayList<>()), userId);
+        if (header.isEmpty()) return null;
+        UserDashboard dashboard = header.getFirst();
+
+        jdbcTemplate.query(ROWS, rs -> {
+            BigDecimal amount = nz(rs.getBigDecimal(5));
+            BigDecimal paid = nz(rs.getBigDecimal(6));
+            if ("s".equals(rs.getString(1))) {
+                Long eventId = rs.getObject(3, Long.class);
+                dashboard.debitors().add(new UserDashboard.Split(
+                        rs.getLong(2), eventId, userId, amount, paid,
+                        amount.subtract(paid), rs.getBoolean(7), rs.getBoolean(8)));
+            } else {
+                dashboard.events().add(new UserDashboard.CreatedEvent(
+                        rs.getLong(2), rs.getString(4), amount, rs.getBoolean(8), paid));
+            }
+        }, userId, userId);
+        return dashboard;
+    }
+
+    private static BigDecimal nz(BigDecimal v) {
+        return v == null ? BigDecimal.ZERO : v;
+    }
+}
@@ -1,15 +1,21 @@
 package com.example.splitwise.service;
 
+import com.example.splitwise.model.Debitor;
+import com.example.splitwise.model.Event;
+import com.example.splitwise.model.Money;
 import com.example.splitwise.model.User;
 import com.example.splitwise.repo.DebitorRepo;
 import com.example.splitwise.repo.UserRepo;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 @Service
 public class UserService {
@@ -17,10 +23,17 @@ public class UserService {
     private final UserRepo userRepo;
     @Autowired
     private final DebitorRepo debitorRepo;
+    private final BalanceService balanceService;
+    private final EmailService emailService;
+    private final UserSummaryCache summaryCache;
 
-    public UserService(UserRepo userRepo, DebitorRepo debitorRepo){
+    public UserService(UserRepo userRepo, DebitorRepo debitorRepo, BalanceService balanceService,
+                       EmailService emailService, UserSummaryCache summaryCache){
         this.userRepo = userRepo;
         this.debitorRepo = debitorRepo;
+        this.balanceService = balanceService;
+        this.emailService = emailService;
+        this.summaryCache = summaryCache;
     }
 
     @Transactional
@@ -28,6 +41,34 @@ public class UserService {
         return userRepo.save(u);
     }
 
+    /**
+     * Save a new user and queue its verification mail in the same transaction;
+     * the SMTP send itself happens later on the outbox dispatcher.
+     */
+    @Transactional
+    public User registerUser(User u){
+        u.setEmailVerified(false);
+        u.setVerificationToken(UUID.randomUUID().toString());
+        u.setVerificationExpiresAt(LocalDateTime.now().plusHours(24));
+        User saved = userRepo.save(u);
+        emailService.queueVerificationEmail(saved.getEmail(), saved.getUsername(), saved.getVerificationToken());
+        return saved;
+    }
+
+    @Transactional
+    public User verifyEmail(String token){
+        if (token == null || token.isBlank()) throw new IllegalArgumentException("token_required");
+        User u = userRepo.findByVerificationToken(token)
+                .orElseThrow(() -> new IllegalArgumentException("invalid_token"));
+        if (u.getVerificationExpiresAt() != null && u.getVerificationExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new IllegalStateException("token_expired");
+        }
+        u.setEmailVerified(true);
+        u.setVerificationToken(null);
+        u.setVerificationExpiresAt(null);
+        return userRepo.save(u);
+    }
+
     @Transactional(readOnly = true)
     public Optional<User> getUser(Long id){
         Optional<User> opt = userRepo.findById(id);
@@ -42,18 +83,57 @@ public class UserService {
 
 
 
+    @Transactional(readOnly = true)
+    public Optional<User> findById(Long id){
+        return userRepo.findById(id);
+    }
+
+    /**
+     * Resolve many users in one query; ids that do not exist are simply absent.
+     */
+    @Transactional(readOnly = true)
+    public List<User> findAllById(Collection<Long> ids){
+        return userRepo.findAllById(ids);
+    }
+
     @Transactional(readOnly = true)
     public List<User> getAllUsers(){
         return userRepo.findAll();
     }
 
+    @Transactional(readOnly = true)
+    public CursorPage<User> getUsers(Integer limit, String after){
+        int size = CursorPage.limit(limit);
+        List<User> rows = userRepo.findByIdGreaterThanOrderByIdAsc(CursorPage.after(after), Limit.of(size + 1));
+        return CursorPage.of(rows, size, User::getId);
+    }
+
+    /**
+     * Public summary by primary key, served from the summary cache when hot.
+     */
+    @Transactional(readOnly = true)
+    public Optional<UserSummary> getUserSummary(Long id){
+        return summaryCache.get(id, k -> userRepo.findById(k).map(UserSummary::of));
+    }
+
+    /**
+     * Case-insensitive username search, served from the summary cache when hot.
+     */
+    @Transactional(readOnly = true)
+    public Optional<UserSummary> findSummaryByUsername(String username){
+        return summaryCache.getByUsername(username,
+                () -> userRepo.findByUsernameIgnoreCase(username).map(UserSummary::of));
+    }
+
     @Transactional
     public User updateUser(User u){
+        summaryCache.invalidate(u.getId());
         return userRepo.save(u);
     }
     @Transactional(readOnly = true)
     public boolean existsById(Long id){
-        return userRepo.existsById(id);
+        // findById is answered by the second-level cache; existsById always runs a query
+        return userRepo.findById(id).isPresent();
     }
 
 
@@ -64,8 +144,20 @@ public class UserService {
 
     @Transactional
     public void deleteUser(Long id){
-        if (!userRepo.existsById(id)) throw new IllegalArgumentException("User not found");
-        userRepo.deleteById(id);
+        User u = userRepo.findById(id).orElseThrow(() -> new IllegalArgumentException("User not found"));
+
+        // the cascade removes the user's events and splits, which moves other users' balances
+        BalanceDelta delta = new BalanceDelta(new LedgerEvent(LedgerEvent.Type.USER_REMOVED, null, null, id, null));
+        u.getEvents().forEach(e -> delta.event(e, -1));
+        u.getDebitors().stream()
+                .filter(d -> d.getEvent() == null || d.getEvent().getCreator() == null
+                        || !id.equals(d.getEvent().getCreator().getId()))
+                .forEach(d -> delta.split(d, -1));
+        balanceService.apply(delta);
+        balanceService.remove(id);
+
+        userRepo.delete(u);
+        summaryCache.invalidate(id);
     }
     @Transactional(readOnly = true)
     public boolean existsByUsername(String username) {
@@ -76,7 +168,27 @@ public class UserService {
     @Transactional
     public User setUsernameForEmail(String email, String username) {
         if (email == null || username == null) throw new IllegalArgumentException("email/username required");
+        username = validateNewUsername(username);
+
+        User u = userRepo.findByEmail(email).orElseThrow(() -> new IllegalArgumentException("user_not_found"));
+        u.setUsername(username);
+        summaryCache.invalidate(u.getId());
+        return userRepo.save(u);
+    }
+
+    // same as setUsernameForEmail, keyed by the id carried in the authenticated principal
+    @Transactional
+    public User setUsernameForUser(Long id, String username) {
+        if (id == null || username == null) throw new IllegalArgumentException("id/username required");
+        username = validateNewUsername(username);
+
+        User u = userRepo.findById(id).orElseThrow(() -> new IllegalArgumentException("user_not_found"));
+        u.setUsername(username);
+        summaryCache.invalidate(id);
+        return userRepo.save(u);
+    }
 
+    private String validateNewUsername(String username) {
         // basic validation (you already had same checks in controller)
         username = username.trim();
         if (username.length() < 3) throw new IllegalArgumentException("username too short");
@@ -85,10 +197,7 @@ public class UserService {
         if (userRepo.existsByUsername(username)) {
             throw new IllegalStateException("username_taken");
         }
-
-        User u = userRepo.findByEmail(email).orElseThrow(() -> new IllegalArgumentException("user_not_found"));
-        u.setUsername(username);
-        return userRepo.save(u);
+        return username;
     }
 
     // in UserService.java
@@ -102,57 +211,30 @@ public class UserService {
     public Optional<User> findByUsernameIgnoreCaseOptional(String username) {
         return userRepo.findByUsernameIgnoreCase(username);
     }
-    @Transactional(readOnly = true)
-    public Optional<User> getUserWithCollections(Long id) {
-        Optional<User> opt = userRepo.findById(id);
-        opt.ifPresent(u -> {
-            // touch collections to initialize
-            u.getDebitors().size();
-            u.getEvents().size();
-            // For each event, ensure splits are loaded
-            u.getEvents().forEach(e -> e.getSplits().size());
-        });
-        return opt;
-    }
-    @Transactional(readOnly = true)
-    public User getUserWithCollectionsByEmail(String email) {
-        var opt = userRepo.findByEmail(email);
-        if (opt.isEmpty()) return null;
-        User u = opt.get();
-        // touch collections to load them
-        u.getDebitors().size();
-        u.getEvents().size();
-        u.getEvents().forEach(e -> e.getSplits().size());
-        return u;
-    }
-    public BigDecimal computeYouOwe(User u) {
-        if (u == null) return BigDecimal.ZERO;
-        return u.getDebitors().stream()
-//                .filter(Debitor::isIncluded) // optional: only included
-                .filter(d -> !d.isSettled())
-                .map(d -> {
-                    BigDecimal deb = d.getDebAmount() == null ? BigDecimal.ZERO : d.getDebAmount();
-                    BigDecimal paid = d.getAmountPaid() == null ? BigDecimal.ZERO : d.getAmountPaid();
-                    return deb.subtract(paid);
-                })
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    // The reference rules BalanceDelta mirrors; requests read user_balances instead, so only
+    // BalanceBenchmark calls these. Sums in minor units: the per-split Money temporaries
+    // never escape, so the JIT drops them.
+    public Money computeYouOwe(User u) {
+        if (u == null) return Money.ZERO;
+        long owe = 0;
+        for (Debitor d : u.getDebitors()) {
+            if (!d.isSettled()) owe = Math.addExact(owe, d.getRemaining().minor());
+        }
+        return Money.ofMinor(owe);
     }
     public Optional<User> getByEmail(String email) {
         return userRepo.findByEmail(email);
     }
 
-    public BigDecimal computeOwedToYou(User u) {
-        if (u == null) return BigDecimal.ZERO;
-        return u.getEvents().stream()
-                .filter(e -> !Boolean.TRUE.equals(e.isCancelled()))
-                .map(e -> {
-                    BigDecimal total = e.getTotal() == null ? BigDecimal.ZERO : e.getTotal();
-                    BigDecimal paid = e.getSplits().stream()
-                            .map(s -> s.getAmountPaid() == null ? BigDecimal.ZERO : s.getAmountPaid())
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-                    return total.subtract(paid);
-                })
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    public Money computeOwedToYou(User u) {
+        if (u == null) return Money.ZERO;
+        long owed = 0;
+        for (Event e : u.getEvents()) {
+            if (e.isCancelled()) continue;
+            owed = Math.addExact(owed, e.getTotalMoney().minor());
+            for (Debitor s : e.getSplits()) owed = Math.subtractExact(owed, s.getPaidMoney().minor());
+        }
+        return Money.ofMinor(owed);
     }
 
 
@@ -0,0 +1,15 @@
+package com.example.splitwise.service;
+
+import com.example.splitwise.model.User;
+
+import java.math.BigDecimal;
+
+/**
+ * Lightweight public view of a user, as served by the profile and search endpoints.
+ */
+public record UserSummary(Long id, String username, BigDecimal total) {
+
+    public static UserSummary of(User u) {
+        return new UserSummary(u.getId(), u.getUsername(), u.getTotal());
+    }
+}
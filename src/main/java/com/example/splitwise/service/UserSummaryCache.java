@@ -0,0 +1,115 @@
+package com.example.splitwise.service;
+
+import com.example.splitwise.config.ReplicaPool;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Read-through, size-bounded cache of {@link UserSummary} by id, plus a
+ * lower-cased username index for search.
+ *
+ * Writers call {@link #invalidate(Long)}; inside a transaction the entry is dropped
+ * again after commit, so a concurrent read cannot re-cache the pre-commit row.
+ * Every eviction also bumps an epoch, and a load that started before the bump is
+ * returned to its caller but not cached. Entries expire {@code users.cache.ttl}
+ * after they were written, which bounds anything that still slips through. Loads
+ * read from the primary: a lagging replica's row would otherwise stay cached.
+ */
+@Component
+public class UserSummaryCache {
+
+    private final Cache<Long, UserSummary> byId;
+    private final Cache<String, Long> idByUsername;
+    private final AtomicLong epoch = new AtomicLong();
+
+    @Autowired
+    public UserSummaryCache(@Value("${users.cache.max-size:10000}") long maxSize,
+                            @Value("${users.cache.ttl:5m}") Duration ttl, MeterRegistry meterRegistry) {
+        this(maxSize, ttl, meterRegistry, Ticker.systemTicker());
+    }
+
+    UserSummaryCache(long maxSize, Duration ttl, MeterRegistry meterRegistry, Ticker ticker) {
+        this.byId = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).ticker(ticker)
+                .recordStats().build();
+        this.idByUsername = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).ticker(ticker)
+                .recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, byId, "users.summary");
+        CaffeineCacheMetrics.monitor(meterRegistry, idByUsername, "users.username");
+    }
+
+    public Optional<UserSummary> get(Long id, Function<Long, Optional<UserSummary>> loader) {
+        UserSummary hit = byId.getIfPresent(id);
+        if (hit != null) return Optional.of(hit);
+        long seen = epoch.get();
+        Optional<UserSummary> loaded = ReplicaPool.onPrimary(() -> loader.apply(id));
+        loaded.ifPresent(s -> put(s, seen));
+        return loaded;
+    }
+
+    public Optional<UserSummary> getByUsername(String username, Supplier<Optional<UserSummary>> loader) {
+        String key = username.toLowerCase(Locale.ROOT);
+        Long id = idByUsername.getIfPresent(key);
+        if (id != null) {
+            UserSummary hit = byId.getIfPresent(id);
+            // the name index can outlive a rename; only trust it if the summary still matches
+            if (hit != null && hit.username() != null && hit.username().equalsIgnoreCase(username)) {
+                return Optional.of(hit);
+            }
+        }
+        long seen = epoch.get();
+        Optional<UserSummary> loaded = ReplicaPool.onPrimary(loader);
+        loaded.ifPresent(s -> put(s, seen));
+        return loaded;
+    }
+
+    public void invalidate(Long id) {
+        if (id == null) return;
+        evict(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(id);
+                }
+            });
+        }
+    }
+
+    // seen is the epoch read before the load; any eviction since then may be newer than s
+    private void put(UserSummary s, long seen) {
+        if (epoch.get() != seen) return;
+        byId.put(s.id(), s);
+        if (s.username() != null) idByUsername.put(s.username().toLowerCase(Locale.ROOT), s.id());
+        // an eviction that raced the put above must still win
+        if (epoch.get() != seen) evict(s.id(), s);
+    }
+
+    private void evict(Long id) {
+        epoch.incrementAndGet();
+        UserSummary old = byId.asMap().remove(id);
+        if (old != null && old.username() != null) {
+            idByUsername.asMap().remove(old.username().toLowerCase(Locale.ROOT), id);
+        }
+    }
+
+    private void evict(Long id, UserSummary stale) {
+        if (byId.asMap().remove(id, stale) && stale.username() != null) {
+            idByUsername.asMap().remove(stale.username().toLowerCase(Locale.ROOT), id);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+-- Tables added on top of the baseline: the balance read models and the mail outbox.
+-- Databases baselined at V1 never ran V1__baseline.sql, so these must not live there.
+-- "if not exists" because ddl-auto=update may already have created them from the entities.
+
+-- balance read models, maintained by BalanceService
+create table if not exists user_balances (
+    user_id    bigint not null,
+    owes       numeric(15,2) not null,
+    owed       numeric(15,2) not null,
+    net        numeric(15,2) not null,
+    updated_at timestamp(6),
+    primary key (user_id)
+);
+
+create table if not exists pair_balances (
+    debtor_id   bigint not null,
+    creditor_id bigint not null,
+    amount      numeric(15,2) not null,
+    updated_at  timestamp(6),
+    primary key (debtor_id, creditor_id)
+);
+
+create table if not exists email_outbox (
+    id              bigint generated by default as identity,
+    recipient       varchar(255) not null,
+    subject         varchar(255) not null,
+    body            text not null,
+    status          varchar(16) not null check (status in ('PENDING','SENDING','SENT','FAILED')),
+    attempts        integer not null,
+    next_attempt_at timestamp(6) not null,
+    claimed_at      timestamp(6),
+    created_at      timestamp(6) not null,
+    sent_at         timestamp(6),
+    last_error      varchar(1000),
+    primary key (id)
+);
@@ -0,0 +1,54 @@
+-- Baseline: the schema as previously created by hibernate ddl-auto=update.
+-- Existing databases are baselined at this version (spring.flyway.baseline-on-migrate)
+-- and skip this script.
+
+create table users (
+    id                      bigint generated by default as identity,
+    username                varchar(255) unique,
+    total                   numeric(15,2),
+    mail_given              boolean,
+    email                   varchar(255),
+    verification_token      varchar(255),
+    verification_expires_at timestamp(6),
+    password                varchar(255) not null,
+    primary key (id)
+);
+
+create table events (
+    id         bigint generated by default as identity,
+    title      varchar(255),
+    created_at timestamp(6),
+    creator_id bigint,
+    total      numeric(15,2),
+    cancelled  boolean not null,
+    primary key (id),
+    constraint fk_events_creator foreign key (creator_id) references users
+);
+
+create table debitors (
+    id          bigint generated by default as identity,
+    user_id     bigint,
+    event_id    bigint,
+    deb_amount  numeric(15,2),
+    amount_paid numeric(15,2),
+    settled     boolean not null,
+    included    boolean not null,
+    paid_at     timestamp(6),
+    version     bigint,
+    primary key (id),
+    constraint fk_debitors_user foreign key (user_id) references users,
+    constraint fk_debitors_event foreign key (event_id) references events
+);
+
+create table transactions (
+    id           bigint generated by default as identity,
+    ts           timestamp(6),
+    from_user_id bigint,
+    to_user_id   bigint,
+    amount       numeric(15,2),
+    event_id     bigint,
+    note         varchar(255),
+    primary key (id),
+    constraint fk_transactions_from_user foreign key (from_user_id) references users,
+    constraint fk_transactions_to_user foreign key (to_user_id) references users
+);
@@ -0,0 +1,34 @@
+-- Index plan for the hot lookups. "if not exists" because databases baselined from
+-- ddl-auto=update may already carry the indexes declared on the entities.
+
+-- DebitorService.getDebitorsByEvent, event detail, cascades from events
+create index if not exists idx_debitors_event on debitors (event_id);
+
+-- DebitorRepo.findByUserId, user deletion
+create index if not exists idx_debitors_user on debitors (user_id);
+
+-- open splits per participant: /me owes, pair_balances recompute, EventRepo.findEventsByUserAfter.
+-- Covers the amounts so the balance sums are index-only scans.
+create index if not exists idx_debitors_user_unsettled
+    on debitors (user_id) include (event_id, deb_amount, amount_paid)
+    where settled = false;
+
+-- owed-to-you per creator; cancelled events never contribute
+create index if not exists idx_events_creator on events (creator_id);
+
+-- payment history per payer, newest first
+create index if not exists idx_transactions_from_user_ts on transactions (from_user_id, ts);
+
+-- UserRepo.findByVerificationToken; only unverified users carry a token
+create index if not exists idx_users_verification_token
+    on users (verification_token)
+    where verification_token is not null;
+
+-- UserRepo.findByUsernameIgnoreCase (Spring Data compares upper(username) = upper(?))
+create index if not exists idx_users_username_upper on users (upper(username));
+
+-- UserRepo.findByEmail (login, token checks)
+create index if not exists idx_users_email on users (email);
+
+-- outbox dispatcher claim query
+create index if not exists idx_email_outbox_due on email_outbox (status, next_attempt_at);
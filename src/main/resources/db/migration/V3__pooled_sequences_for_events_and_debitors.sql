@@ -0,0 +1,11 @@
+-- Event and Debitor ids move from IDENTITY to pooled sequences (allocationSize = 50)
+-- so Hibernate can batch their inserts. Each sequence starts one allocation block past
+-- the current max id: the pooled optimizer hands out (value - 49 .. value).
+
+create sequence if not exists events_seq start with 1 increment by 50;
+select setval('events_seq', (select coalesce(max(id), 0) + 51 from events), false);
+alter table events alter column id drop identity if exists;
+
+create sequence if not exists debitors_seq start with 1 increment by 50;
+select setval('debitors_seq', (select coalesce(max(id), 0) + 51 from debitors), false);
+alter table debitors alter column id drop identity if exists;
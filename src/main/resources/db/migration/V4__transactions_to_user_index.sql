@@ -0,0 +1,2 @@
+-- ledger export: payments received by a user (payments made use idx_transactions_from_user_ts)
+create index if not exists idx_transactions_to_user_ts on transactions (to_user_id, ts);
@@ -0,0 +1,15 @@
+-- Idempotency-Key store for retried POSTs (IdempotencyService). One row per
+-- (caller scope, key): the request fingerprint and, once the first execution
+-- committed, the response to replay. Rows are dropped after expires_at.
+create table idempotency_keys (
+    scope       varchar(100) not null,
+    idem_key    varchar(200) not null,
+    fingerprint varchar(64)  not null,
+    status_code integer,
+    response    text,
+    created_at  timestamp(6) not null default localtimestamp,
+    expires_at  timestamp(6) not null,
+    primary key (scope, idem_key)
+);
+
+create index idx_idempotency_keys_expires on idempotency_keys (expires_at);
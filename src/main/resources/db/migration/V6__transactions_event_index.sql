@@ -0,0 +1,3 @@
+-- transaction history filtered by event (payments per payer / receiver use
+-- idx_transactions_from_user_ts and idx_transactions_to_user_ts)
+create index if not exists idx_transactions_event_ts on transactions (event_id, ts);
@@ -0,0 +1,68 @@
+-- Append-only ledger (LedgerService). Every change to the balance read models is
+-- recorded as one ledger_events row saying what happened, plus ledger_postings rows
+-- with its effect: owes/owed per user (counterparty_id null) and, for pair rows, what
+-- user_id owes counterparty_id. Summing the postings reproduces user_balances and
+-- pair_balances.
+create table ledger_events (
+    seq        bigint generated by default as identity,
+    type       varchar(32)  not null,
+    event_id   bigint,
+    debitor_id bigint,
+    user_id    bigint,
+    amount     numeric(15,2),
+    created_at timestamp(6) not null default localtimestamp,
+    primary key (seq)
+);
+
+create table ledger_postings (
+    seq             bigint not null,
+    user_id         bigint not null,
+    counterparty_id bigint,
+    owes            numeric(15,2) not null default 0,
+    owed            numeric(15,2) not null default 0,
+    amount          numeric(15,2) not null default 0,
+    constraint fk_ledger_postings_event foreign key (seq) references ledger_events
+);
+
+-- per-user replay from a snapshot: own rows, and pair rows where the user is the creditor
+create index idx_ledger_postings_user_seq on ledger_postings (user_id, seq);
+create index idx_ledger_postings_counterparty_seq on ledger_postings (counterparty_id, seq)
+    where counterparty_id is not null;
+-- full replay reads the log in seq ranges
+create index idx_ledger_postings_seq on ledger_postings (seq);
+
+-- per-user state as of ledger seq; replay starts from the latest one
+create table ledger_snapshots (
+    user_id    bigint        not null,
+    seq        bigint        not null,
+    owes       numeric(15,2) not null,
+    owed       numeric(15,2) not null,
+    owes_to    jsonb         not null,
+    owed_by    jsonb         not null,
+    created_at timestamp(6)  not null default localtimestamp,
+    primary key (user_id, seq)
+);
+
+create function ledger_append_only() returns trigger language plpgsql as $$
+begin
+    raise exception '% is append-only', tg_table_name;
+end
+$$;
+
+create trigger ledger_events_append_only before update or delete on ledger_events
+    for each row execute function ledger_append_only();
+create trigger ledger_postings_append_only before update or delete on ledger_postings
+    for each row execute function ledger_append_only();
+
+-- the read models as they stand become the opening entry
+insert into ledger_events (type) values ('OPENING_BALANCE');
+
+insert into ledger_postings (seq, user_id, owes, owed)
+select (select max(seq) from ledger_events), b.user_id, b.owes, b.owed
+from user_balances b
+where b.owes <> 0 or b.owed <> 0;
+
+insert into ledger_postings (seq, user_id, counterparty_id, amount)
+select (select max(seq) from ledger_events), p.debtor_id, p.creditor_id, p.amount
+from pair_balances p
+where p.amount <> 0;
@@ -0,0 +1,5 @@
+-- last reminder round per event, for the POST /api/events/{id}/remind cooldown
+create table if not exists event_reminders (
+    event_id bigint primary key references events (id) on delete cascade,
+    sent_at timestamp not null
+);
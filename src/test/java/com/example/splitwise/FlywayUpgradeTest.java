@@ -0,0 +1,60 @@
+package com.example.splitwise;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+
+/**
+ * Starts the application on a database the pre-Flyway version created with
+ * ddl-auto=update: Flyway baselines it at V1, runs every later migration, Hibernate
+ * validates the result and the balance read models are rebuilt from the old rows.
+ */
+@SpringBootTest(properties = {"app.mail.outbox.enabled=false", "spring.jpa.show-sql=false"})
+@Testcontainers(disabledWithoutDocker = true)
+class FlywayUpgradeTest {
+
+    // its own database: the others start empty and run V1 themselves
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:16-alpine")
+            .withInitScript("db/pre-flyway-schema.sql");
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    void upgradesADatabaseCreatedByDdlAutoUpdate() {
+        List<String> applied = jdbc.queryForList(
+                "select version from flyway_schema_history where success order by installed_rank", String.class);
+        assertThat(applied.getFirst()).isEqualTo("1");
+        assertThat(applied).contains("1.1", "2", "3", "7");
+        assertThat(jdbc.queryForObject("select count(*) from flyway_schema_history where not success", Long.class))
+                .isZero();
+        assertThat(jdbc.queryForObject("select type from flyway_schema_history where version = '1'", String.class))
+                .isEqualTo("BASELINE");
+
+        // the read models were rebuilt from the existing splits on the first start
+        assertThat(balance("owes", 2)).isEqualByComparingTo("20.00");
+        assertThat(balance("owes", 3)).isEqualByComparingTo("30.00");
+        assertThat(balance("owed", 1)).isEqualByComparingTo("50.00");
+        assertThat(jdbc.queryForObject("select count(*) from email_outbox", Long.class)).isZero();
+
+        // pooled sequences start past the ids the old identity columns handed out
+        assertThat(jdbc.queryForObject("select nextval('debitors_seq')", Long.class) - 49).isGreaterThan(3);
+        assertThat(jdbc.queryForObject("select nextval('events_seq')", Long.class) - 49).isGreaterThan(1);
+    }
+
+    private BigDecimal balance(String column, long userId) {
+        return jdbc.queryForObject("select " + column + " from user_balances where user_id = ?", BigDecimal.class, userId);
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.splitwise.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.jpa.HibernateHints;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.persistenceunit.PersistenceManagedTypes;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.annotation.Transactional;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.Cacheable;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Id;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Table;
+
+/**
+ * The routing as the application sees it: {@code @Transactional(readOnly = true)}
+ * through {@link JpaTransactionManager} and Hibernate, over the same
+ * {@link LazyConnectionDataSourceProxy} wiring as {@link ReplicaDataSourceConfig}.
+ */
+@SpringJUnitConfig(ReplicaPoolJpaTest.Config.class)
+class ReplicaPoolJpaTest {
+
+    @Autowired
+    private Nodes nodes;
+
+    @Autowired
+    private ReplicaPool pool;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() {
+        entityManagerFactory.getCache().evictAll();
+        new JdbcTemplate(Config.REPLICA).update("update lag set ms = 0");
+        pool.checkNow();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReplicaPool.pin(false);
+    }
+
+    @Test
+    void readOnlyTransactionsGoToReplica() {
+        assertThat(nodes.servedBy()).isEqualTo("replica");
+        assertThat(nodes.servedByInReadWrite()).isEqualTo("primary");
+    }
+
+    @Test
+    void laggingReplicaFallsBackToPrimary() {
+        new JdbcTemplate(Config.REPLICA).update("update lag set ms = 2000");
+        pool.checkNow();
+        assertThat(nodes.servedBy()).isEqualTo("primary");
+    }
+
+    @Test
+    void replicaReadsDoNotFillTheSecondLevelCache() {
+        assertThat(nodes.name(1L)).isEqualTo("replica");
+        assertThat(entityManagerFactory.getCache().contains(Node.class, 1L)).isFalse();
+
+        assertThat(ReplicaPool.onPrimary(() -> nodes.name(1L))).isEqualTo("primary");
+        assertThat(entityManagerFactory.getCache().contains(Node.class, 1L)).isTrue();
+
+        // later replica-routed reads are served the primary's row from the cache
+        assertThat(nodes.name(1L)).isEqualTo("primary");
+    }
+
+    @Test
+    void replicaReadsDoNotFillTheQueryCache() {
+        assertThat(nodes.cachedQueryName(1L)).isEqualTo("replica");
+        // a cached replica result would be served here instead of the primary's row
+        assertThat(ReplicaPool.onPrimary(() -> nodes.cachedQueryName(1L))).isEqualTo("primary");
+    }
+
+    @Test
+    void explicitCredentialsGoToPrimary() throws SQLException {
+        try (Connection c = pool.getConnection("sa", "");
+             ResultSet rs = c.createStatement().executeQuery("select name from node")) {
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getString(1)).isEqualTo("primary");
+        }
+    }
+
+    @Entity(name = "Node")
+    @Table(name = "node")
+    @Cacheable
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    static class Node {
+        @Id
+        Long id;
+        String name;
+    }
+
+    static class Nodes {
+        @PersistenceContext
+        private EntityManager em;
+
+        @Transactional(readOnly = true)
+        public String name(Long id) {
+            return em.find(Node.class, id).name;
+        }
+
+        @Transactional(readOnly = true)
+        public String cachedQueryName(Long id) {
+            return em.createQuery("select n.name from Node n where n.id = :id", String.class)
+                    .setParameter("id", id)
+                    .setHint(HibernateHints.HINT_CACHEABLE, true)
+                    .getSingleResult();
+        }
+
+        @Transactional(readOnly = true)
+        public String servedBy() {
+            return (String) em.createNativeQuery("select name from node").getSingleResult();
+        }
+
+        @Transactional
+        public String servedByInReadWrite() {
+            return servedBy();
+        }
+    }
+
+    @Configuration
+    @EnableTransactionManagement
+    static class Config {
+
+        static final JdbcDataSource PRIMARY = database("jpa-primary");
+        static final JdbcDataSource REPLICA = database("jpa-replica");
+
+        @Bean
+        static BeanPostProcessor replicaAwareJpaDialect() {
+            return ReplicaDataSourceConfig.replicaAwareJpaDialect();
+        }
+
+        @Bean
+        ReplicaPool replicaPool() {
+            ReplicaPool pool = new ReplicaPool(PRIMARY, List.of(REPLICA), "select ms from lag",
+                    Duration.ofMillis(500), new SimpleMeterRegistry());
+            pool.checkNow();
+            return pool;
+        }
+
+        @Bean
+        DataSource dataSource(ReplicaPool replicaPool) {
+            LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(PRIMARY);
+            proxy.setReadOnlyDataSource(replicaPool);
+            return proxy;
+        }
+
+        @Bean
+        LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
+            LocalContainerEntityManagerFactoryBean emf = new LocalContainerEntityManagerFactoryBean();
+            emf.setDataSource(dataSource);
+            emf.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+            emf.setManagedTypes(PersistenceManagedTypes.of(Node.class.getName()));
+            Properties jpa = new Properties();
+            // Spring Boot's default, which lets the dialect mark the connection read-only
+            jpa.setProperty("hibernate.connection.handling_mode", "DELAYED_ACQUISITION_AND_HOLD");
+            jpa.setProperty("hibernate.cache.use_second_level_cache", "true");
+            jpa.setProperty("hibernate.cache.use_query_cache", "true");
+            jpa.setProperty("hibernate.cache.region.factory_class", "jcache");
+            jpa.setProperty("hibernate.javax.cache.provider",
+                    "com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider");
+            jpa.setProperty("hibernate.javax.cache.missing_cache_strategy", "create");
+            emf.setJpaProperties(jpa);
+            return emf;
+        }
+
+        @Bean
+        JpaTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+            return new JpaTransactionManager(entityManagerFactory);
+        }
+
+        @Bean
+        Nodes nodes() {
+            return new Nodes();
+        }
+
+        private static JdbcDataSource database(String name) {
+            JdbcDataSource ds = new JdbcDataSource();
+            ds.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+            ds.setUser("sa");
+            JdbcTemplate t = new JdbcTemplate(ds);
+            t.execute("create table node (id bigint primary key, name varchar(20))");
+            t.update("insert into node values (1, ?)", name.substring("jpa-".length()));
+            t.execute("create table lag (ms bigint)");
+            t.update("insert into lag values (0)");
+            return ds;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.splitwise.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Two in-memory databases stand in for primary and replica; each knows its own name,
+ * and the replica reports a lag the test can change.
+ */
+class ReplicaPoolTest {
+
+    private JdbcDataSource primary;
+    private JdbcDataSource replica;
+    private ReplicaPool pool;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replica = database("replica");
+        pool = new ReplicaPool(primary, List.of(replica), "select ms from lag", Duration.ofMillis(500),
+                new SimpleMeterRegistry());
+        pool.checkNow();
+
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(primary);
+        proxy.setReadOnlyDataSource(pool);
+        jdbc = new JdbcTemplate(proxy);
+        DataSourceTransactionManager tm = new DataSourceTransactionManager(proxy);
+        readOnly = new TransactionTemplate(tm);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(tm);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReplicaPool.pin(false);
+        new JdbcTemplate(primary).execute("drop all objects");
+        new JdbcTemplate(replica).execute("drop all objects");
+    }
+
+    @Test
+    void readOnlyTransactionsGoToReplica() {
+        assertThat(readOnlyNode()).isEqualTo("replica");
+        assertThat(readWriteNode()).isEqualTo("primary");
+    }
+
+    @Test
+    void laggingReplicaFallsBackToPrimaryUntilItCatchesUp() {
+        new JdbcTemplate(replica).update("update lag set ms = 2000");
+        pool.checkNow();
+        assertThat(readOnlyNode()).isEqualTo("primary");
+
+        new JdbcTemplate(replica).update("update lag set ms = 100");
+        pool.checkNow();
+        assertThat(readOnlyNode()).isEqualTo("replica");
+    }
+
+    @Test
+    void failingHealthCheckTakesReplicaOut() {
+        new JdbcTemplate(replica).execute("drop table lag");
+        pool.checkNow();
+        assertThat(readOnlyNode()).isEqualTo("primary");
+    }
+
+    @Test
+    void pinnedRequestReadsFromPrimary() {
+        ReplicaPool.pin(true);
+        assertThat(readOnlyNode()).isEqualTo("primary");
+
+        ReplicaPool.pin(false);
+        assertThat(readOnlyNode()).isEqualTo("replica");
+    }
+
+    private String readOnlyNode() {
+        return readOnly.execute(s -> node());
+    }
+
+    private String readWriteNode() {
+        return readWrite.execute(s -> node());
+    }
+
+    private String node() {
+        return jdbc.queryForObject("select name from node", String.class);
+    }
+
+    private static JdbcDataSource database(String name) {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate t = new JdbcTemplate(ds);
+        t.execute("create table node (name varchar(20))");
+        t.update("insert into node values (?)", name);
+        t.execute("create table lag (ms bigint)");
+        t.update("insert into lag values (0)");
+        return ds;
+    }
+}
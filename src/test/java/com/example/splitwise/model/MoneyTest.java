@@ -0,0 +1,66 @@
+package com.example.splitwise.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+import tools.jackson.databind.json.JsonMapper;
+
+class MoneyTest {
+
+    @Test
+    void roundsToCentsLikeTheColumn() {
+        assertThat(Money.of(new BigDecimal("10.005")).minor()).isEqualTo(1001);
+        assertThat(Money.of(new BigDecimal("-10.005")).minor()).isEqualTo(-1001);
+        assertThat(Money.of(new BigDecimal("7")).toBigDecimal()).isEqualByComparingTo("7.00");
+        assertThat(Money.of(null)).isNull();
+    }
+
+    @Test
+    void arithmeticIsExact() {
+        Money a = Money.of(new BigDecimal("0.10"));
+        Money b = Money.of(new BigDecimal("0.20"));
+        assertThat(a.plus(b)).isEqualTo(Money.of(new BigDecimal("0.30")));
+        assertThat(a.minus(b).toString()).isEqualTo("-0.10");
+        assertThat(b.times(3).minor()).isEqualTo(60);
+        assertThat(Money.ofMinor(1000).divide(3).minor()).isEqualTo(333);
+        assertThat(Money.ofMinor(2000).divide(3).minor()).isEqualTo(667);
+        assertThat(Money.ofMinor(-5).divide(2).minor()).isEqualTo(-3);
+        assertThat(a.minus(a)).isEqualTo(Money.ZERO);
+    }
+
+    @Test
+    void overflowAndCurrencyMismatchThrow() {
+        Money max = Money.ofMinor(Long.MAX_VALUE);
+        assertThatThrownBy(() -> max.plus(Money.ofMinor(1))).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> max.times(2)).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.ofMinor(Long.MIN_VALUE).negate()).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.ZERO.plus(new Money(1, "EUR"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new Money(1, "EU")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void convertsToAndFromTheColumn() {
+        MoneyConverter converter = new MoneyConverter();
+        assertThat(converter.convertToDatabaseColumn(Money.ofMinor(12345))).isEqualTo(new BigDecimal("123.45"));
+        assertThat(converter.convertToEntityAttribute(new BigDecimal("123.45"))).isEqualTo(Money.ofMinor(12345));
+        assertThat(converter.convertToDatabaseColumn(null)).isNull();
+        assertThat(converter.convertToEntityAttribute(null)).isNull();
+    }
+
+    @Test
+    void entitiesKeepTheirBigDecimalApiAndJson() {
+        Debitor d = new Debitor();
+        d.setDebAmount(new BigDecimal("12.50"));
+        d.setAmountPaid(new BigDecimal("2.25"));
+        assertThat(d.getRemaining()).isEqualTo(Money.ofMinor(1025));
+        assertThat(d.getDebAmount()).isEqualTo(new BigDecimal("12.50"));
+
+        String json = JsonMapper.builder().build().writeValueAsString(d);
+        assertThat(json).contains("\"debAmount\":12.50", "\"amountPaid\":2.25", "\"remaining\":10.25")
+                .doesNotContain("debMoney", "paidMoney");
+    }
+}
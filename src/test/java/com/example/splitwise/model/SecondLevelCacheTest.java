@@ -0,0 +1,167 @@
+package com.example.splitwise.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.Query;
+
+import com.example.splitwise.repo.EventRepo;
+
+/**
+ * Boots Hibernate over an in-memory database with the cache settings from
+ * application.properties and counts the statements that actually reach the database.
+ */
+class SecondLevelCacheTest {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{[^:}]+:([^}]*)}");
+
+    private static SessionFactory sessionFactory;
+    private static String eventQuery;
+
+    private Statistics stats;
+    private Long eventId;
+
+    @BeforeAll
+    static void boot() throws Exception {
+        Configuration cfg = new Configuration()
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(Event.class)
+                .addAnnotatedClass(Debitor.class);
+        Properties app = applicationProperties();
+        for (String key : app.stringPropertyNames()) {
+            if (key.startsWith("spring.jpa.properties.hibernate.")) {
+                cfg.setProperty(key.substring("spring.jpa.properties.".length()), resolve(app.getProperty(key)));
+            }
+        }
+        cfg.setProperty("hibernate.connection.url", "jdbc:h2:mem:l2cache;DB_CLOSE_DELAY=-1");
+        cfg.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        sessionFactory = cfg.buildSessionFactory();
+        eventQuery = EventRepo.class.getMethod("findByIdWithSplitsAndUsers", Long.class)
+                .getAnnotation(Query.class).value();
+    }
+
+    @AfterAll
+    static void shutdown() {
+        sessionFactory.close();
+    }
+
+    @BeforeEach
+    void seed() {
+        eventId = sessionFactory.fromTransaction(s -> {
+            User creator = user("creator");
+            User guest = user("guest");
+            s.persist(creator);
+            s.persist(guest);
+            Event e = new Event();
+            e.setTitle("Dinner");
+            e.setCreator(creator);
+            e.setTotal(new BigDecimal("30.00"));
+            e.addSplit(split(creator, "15.00"));
+            e.addSplit(split(guest, "15.00"));
+            s.persist(e);
+            return e.getId();
+        });
+        sessionFactory.getCache().evictAllRegions();
+        stats = sessionFactory.getStatistics();
+        stats.clear();
+    }
+
+    @Test
+    void eventSplitsAndUsersAreReadOnce() {
+        sessionFactory.inSession(this::loadEventGraph);
+        assertThat(stats.getPrepareStatementCount()).isPositive();
+
+        stats.clear();
+        sessionFactory.inSession(this::loadEventGraph);
+        assertThat(stats.getPrepareStatementCount()).isZero();
+        assertThat(stats.getSecondLevelCacheHitCount()).isPositive();
+    }
+
+    @Test
+    void fetchJoinQueryIsServedFromQueryCache() {
+        assertThat(findWithSplits().getSplits()).hasSize(2);
+
+        stats.clear();
+        Event again = findWithSplits();
+        assertThat(again.getSplits()).hasSize(2);
+        assertThat(stats.getPrepareStatementCount()).isZero();
+        assertThat(stats.getQueryCacheHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void writesInvalidateCachedEntitiesAndQueries() {
+        findWithSplits();
+        sessionFactory.inSession(this::loadEventGraph);
+
+        sessionFactory.inTransaction(s -> {
+            Event e = s.find(Event.class, eventId);
+            e.setTitle("Lunch");
+            e.getSplits().getFirst().setAmountPaid(new BigDecimal("5.00"));
+        });
+
+        stats.clear();
+        Event fresh = findWithSplits();
+        assertThat(fresh.getTitle()).isEqualTo("Lunch");
+        assertThat(fresh.getSplits()).extracting(Debitor::getAmountPaid)
+                .anySatisfy(paid -> assertThat(paid).isEqualByComparingTo("5.00"));
+        // the events table changed, so the cached query result was not trusted
+        assertThat(stats.getQueryCacheHitCount()).isZero();
+    }
+
+    private void loadEventGraph(Session s) {
+        Event e = s.find(Event.class, eventId);
+        e.getCreator().getEmail();
+        e.getSplits().forEach(d -> d.getUser().getEmail());
+    }
+
+    private Event findWithSplits() {
+        return sessionFactory.fromSession(s -> s.createQuery(eventQuery, Event.class)
+                .setParameter("id", eventId)
+                .setCacheable(true)
+                .setCacheRegion("events-with-splits")
+                .getSingleResult());
+    }
+
+    private static User user(String name) {
+        User u = new User();
+        u.setUsername(name + System.nanoTime());
+        u.setEmail(u.getUsername() + "@example.com");
+        u.setPassword("x");
+        return u;
+    }
+
+    private static Debitor split(User user, String amount) {
+        Debitor d = new Debitor();
+        d.setUser(user);
+        d.setDebAmount(new BigDecimal(amount));
+        return d;
+    }
+
+    private static Properties applicationProperties() throws IOException {
+        Properties p = new Properties();
+        try (InputStream in = SecondLevelCacheTest.class.getResourceAsStream("/application.properties")) {
+            p.load(in);
+        }
+        return p;
+    }
+
+    // "${ENV:default}" -> "default"
+    private static String resolve(String value) {
+        Matcher m = PLACEHOLDER.matcher(value);
+        return m.replaceAll(r -> Matcher.quoteReplacement(r.group(1)));
+    }
+}
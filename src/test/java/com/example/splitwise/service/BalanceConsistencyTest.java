@@ -0,0 +1,91 @@
+package com.example.splitwise.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.example.splitwise.model.Debitor;
+import com.example.splitwise.model.Event;
+import com.example.splitwise.model.User;
+import com.example.splitwise.repo.UserRepo;
+
+/**
+ * Every write path keeps the balance read models equal to a full recomputation.
+ */
+@SpringBootTest(properties = {
+        "app.mail.outbox.enabled=false",
+        "ledger.snapshot.enabled=false",
+        "spring.jpa.show-sql=false",
+        "spring.datasource.hikari.maximum-pool-size=50"
+})
+@Import(PostgresTestConfiguration.class)
+@Testcontainers(disabledWithoutDocker = true)
+class BalanceConsistencyTest {
+
+    @Autowired
+    private EventService eventService;
+    @Autowired
+    private DebitorService debitorService;
+    @Autowired
+    private PaymentService paymentService;
+    @Autowired
+    private BalanceService balanceService;
+    @Autowired
+    private UserRepo userRepo;
+    @Autowired
+    private TestFixtures fixtures;
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private TransactionTemplate tx;
+
+    @Test
+    void createUpdatePayAndCancelLeaveNoMismatches() {
+        User creator = user("creator");
+        List<User> participants = List.of(creator, user("p1"), user("p2"));
+
+        Event e = new Event();
+        e.setTitle("Trip");
+        e.setCreator(creator);
+        e.setTotal(new BigDecimal("100.00"));
+        Event created = eventService.createEvent(e, participants, SplitStrategy.equal());
+        assertThat(balanceService.findMismatches(10)).isEmpty();
+
+        Long eventId = created.getId();
+        List<Long> splits = jdbc.queryForList(
+                "select id from debitors where event_id = ? and user_id <> ? order by id", Long.class,
+                eventId, creator.getId());
+
+        Debitor payload = new Debitor();
+        payload.setDebAmount(new BigDecimal("40.00"));
+        payload.setIncluded(true);
+        debitorService.updateDebitor(splits.get(0), payload);
+        assertThat(balanceService.findMismatches(10)).isEmpty();
+
+        tx.executeWithoutResult(status -> {
+            Event loaded = eventService.getEvent(eventId);
+            loaded.setTotal(new BigDecimal("106.67"));
+            eventService.save(loaded);
+        });
+        assertThat(balanceService.findMismatches(10)).isEmpty();
+
+        paymentService.payDebitor(splits.get(1), participants.get(2).getId(), new BigDecimal("10.00"));
+        assertThat(balanceService.findMismatches(10)).isEmpty();
+
+        eventService.cancelEvent(eventId);
+        assertThat(balanceService.findMismatches(10)).isEmpty();
+    }
+
+    private User user(String name) {
+        return userRepo.findById(fixtures.user(name)).orElseThrow();
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.splitwise.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.splitwise.model.Debitor;
+import com.example.splitwise.model.Event;
+import com.example.splitwise.model.User;
+
+class BalanceEngineTest {
+
+    private static final long CREATOR = 1, PAYER = 2;
+
+    @TempDir
+    Path dir;
+
+    private final FakeLedger ledger = new FakeLedger();
+
+    @Test
+    void appliesOnlyCommittedChanges() {
+        try (BalanceEngine engine = open(1 << 20)) {
+            prepare(engine, 1, "10.00", "0.00");
+            engine.commit(1);
+            prepare(engine, 2, "10.00", "4.00");
+            engine.abort(2);
+            prepare(engine, 3, "5.00", "0.00");
+
+            assertThat(engine.totals(PAYER)).containsExactly(1000, 0);
+            assertThat(engine.totals(CREATOR)).containsExactly(0, 0);
+            assertThat(engine.pair(PAYER, CREATOR)).isEqualTo(1000);
+        }
+    }
+
+    @Test
+    void recoversFromTheLogAfterACrash() {
+        BalanceEngine crashed = open(1 << 20);
+        for (long seq = 1; seq <= 50; seq++) {
+            prepare(crashed, seq, "1.25", "0.25");
+            crashed.commit(seq);
+        }
+        // crashed after these committed in the database but before their outcome was logged
+        prepare(crashed, 51, "3.00", "0.00");
+        prepare(crashed, 52, "7.00", "0.00");
+        ledger.committed.add(51L);
+        ledger.head = 51;
+
+        // never closed: no checkpoint, the log is all there is
+        try (BalanceEngine engine = open(1 << 20)) {
+            assertThat(engine.totals(PAYER)).containsExactly(50 * 100 + 300, 0);
+            assertThat(engine.totals(CREATOR)).containsExactly(0, -50 * 25);
+            assertThat(engine.pair(PAYER, CREATOR)).isEqualTo(50 * 100 + 300);
+        }
+    }
+
+    @Test
+    void checkpointsWhenTheLogIsFullAndKeepsInFlightPrepares() {
+        BalanceEngine engine = open(4096);
+        prepare(engine, 1, "2.00", "0.00");
+        for (long seq = 2; seq <= 500; seq++) {
+            prepare(engine, seq, "1.00", "0.00");
+            engine.commit(seq);
+        }
+        engine.commit(1);
+        ledger.head = 500;
+
+        try (BalanceEngine reopened = open(4096)) {
+            assertThat(reopened.totals(PAYER)).containsExactly(499 * 100 + 200, 0);
+        }
+    }
+
+    @Test
+    void reloadsFromTheReadModelsWhenTheLedgerMovedWhileOff() {
+        try (BalanceEngine engine = open(1 << 20)) {
+            prepare(engine, 1, "10.00", "0.00");
+            engine.commit(1);
+        }
+        ledger.head = 7;
+        ledger.users = List.<Object[]>of(new Object[]{PAYER, new BigDecimal("12.50"), BigDecimal.ZERO});
+
+        try (BalanceEngine engine = open(1 << 20)) {
+            assertThat(engine.totals(PAYER)).containsExactly(1250, 0);
+            assertThat(engine.pair(PAYER, CREATOR)).isZero();
+        }
+    }
+
+    private BalanceEngine open(int walSize) {
+        return BalanceEngine.open(dir, walSize, false, ledger);
+    }
+
+    // a split of the payer in the creator's event moving from unpaid to partly paid
+    private static void prepare(BalanceEngine engine, long seq, String share, String paid) {
+        User creator = new User();
+        creator.setId(CREATOR);
+        User payer = new User();
+        payer.setId(PAYER);
+        Event event = new Event();
+        event.setCreator(creator);
+        Debitor d = new Debitor();
+        d.setUser(payer);
+        d.setEvent(event);
+        d.setDebAmount(new BigDecimal(share));
+        d.setAmountPaid(new BigDecimal(paid));
+        engine.prepare(seq, new BalanceDelta().split(d, +1));
+    }
+
+    private static final class FakeLedger implements BalanceEngine.Source {
+        final Set<Long> committed = new HashSet<>();
+        long head;
+        List<Object[]> users = List.of();
+
+        @Override
+        public void users(UserRow row) {
+            users.forEach(u -> row.accept((Long) u[0], (BigDecimal) u[1], (BigDecimal) u[2]));
+        }
+
+        @Override
+        public void pairs(PairRow row) {
+        }
+
+        @Override
+        public Set<Long> committed(List<Long> seqs) {
+            Set<Long> out = new HashSet<>(seqs);
+            out.retainAll(committed);
+            return out;
+        }
+
+        @Override
+        public long ledgerHead() {
+            return head;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.splitwise.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+
+class CsvReaderTest {
+
+    @Test
+    void readsQuotedFieldsAcrossLines() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader(
+                "title,total\r\n\"Dinner, \"\"late\"\"\",12.50\n\n\"two\nlines\",3\nlast,"));
+
+        assertThat(csv.next()).containsExactly("title", "total");
+        assertThat(csv.next()).containsExactly("Dinner, \"late\"", "12.50");
+        assertThat(csv.next()).containsExactly("two\nlines", "3");
+        assertThat(csv.next()).containsExactly("last", "");
+        assertThat(csv.next()).isNull();
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.splitwise.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.example.splitwise.model.EmailOutbox;
+
+/**
+ * The claim query against Postgres: which rows are due, and that concurrent
+ * claimers skip each other's rows instead of waiting for them.
+ */
+@SpringBootTest(properties = {
+        "app.mail.outbox.enabled=false",
+        "ledger.snapshot.enabled=false",
+        "spring.jpa.show-sql=false",
+        "spring.datasource.hikari.maximum-pool-size=50"
+})
+@Import(PostgresTestConfiguration.class)
+@Testcontainers(disabledWithoutDocker = true)
+class EmailOutboxClaimTest {
+
+    private static final Duration STALE_AFTER = Duration.ofMinutes(5);
+
+    @Autowired
+    private EmailOutboxService outboxService;
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private TransactionTemplate tx;
+
+    @BeforeEach
+    void clear() {
+        jdbc.update("delete from email_outbox");
+    }
+
+    @Test
+    void claimsDueAndStaleRowsOldestFirst() {
+        long due = insert("PENDING", "now() - interval '1 second'", null);
+        insert("PENDING", "now() + interval '1 hour'", null);
+        long stale = insert("SENDING", "now()", "now() - interval '10 minutes'");
+        long inFlight = insert("SENDING", "now()", "now() - interval '1 minute'");
+        insert("SENT", "now()", null);
+        insert("FAILED", "now()", null);
+
+        List<EmailOutbox> claimed = outboxService.claimBatch(10, STALE_AFTER);
+
+        assertThat(claimed).extracting(EmailOutbox::getId).containsExactly(due, stale);
+        assertThat(claimed).allMatch(o -> o.getStatus() == EmailOutbox.Status.SENDING);
+        assertThat(jdbc.queryForList("select id from email_outbox where status = 'SENDING' order by id", Long.class))
+                .containsExactly(due, stale, inFlight);
+        assertThat(outboxService.claimBatch(10, STALE_AFTER)).isEmpty();
+    }
+
+    @Test
+    void concurrentClaimersSkipLockedRows() throws Exception {
+        for (int i = 0; i < 6; i++) insert("PENDING", "now() - interval '1 second'", null);
+        CountDownLatch claimed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // first claimer holds its row locks until released
+        CompletableFuture<List<Long>> first = CompletableFuture.supplyAsync(() -> tx.execute(status -> {
+            List<Long> ids = outboxService.claimBatch(3, STALE_AFTER).stream().map(EmailOutbox::getId).toList();
+            claimed.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ids;
+        }));
+        assertThat(claimed.await(10, TimeUnit.SECONDS)).isTrue();
+
+        List<Long> second = CompletableFuture
+                .supplyAsync(() -> outboxService.claimBatch(10, STALE_AFTER).stream().map(EmailOutbox::getId).toList())
+                .get(5, TimeUnit.SECONDS);
+        release.countDown();
+
+        assertThat(first.get(10, TimeUnit.SECONDS)).hasSize(3).doesNotContainAnyElementsOf(second);
+        assertThat(second).hasSize(3);
+    }
+
+    private long insert(String status, String nextAttemptAt, String claimedAt) {
+        return jdbc.queryForObject("""
+                insert into email_outbox (recipient, subject, body, status, attempts, next_attempt_at, claimed_at, created_at)
+                values ('a@example.com', 's', 'b', ?, 0, %s, %s, now())
+                returning id
+                """.formatted(nextAttemptAt, claimedAt == null ? "null" : claimedAt), Long.class, status);
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.splitwise.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.splitwise.model.EmailOutbox;
+import com.example.splitwise.repo.EmailOutboxRepo;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * Runs the dispatcher and the real {@link EmailOutboxService} against an in-process
+ * SMTP server. The outbox table is a map behind a stubbed repository, and every
+ * PENDING row counts as due; the claim query itself is covered by EmailOutboxClaimTest.
+ */
+class EmailOutboxDispatcherTest {
+
+    @RegisterExtension
+    static GreenMailExtension smtp = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private final Map<Long, EmailOutbox> rows = new LinkedHashMap<>();
+    private EmailService emailService;
+    private SimpleMeterRegistry meters;
+    private EmailOutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        JavaMailSenderImpl sender = new JavaMailSenderImpl();
+        sender.setHost("127.0.0.1");
+        sender.setPort(smtp.getSmtp().getPort());
+
+        emailService = new EmailService(sender, null, null);
+        ReflectionTestUtils.setField(emailService, "fromEmail", "noreply@splitease.test");
+        ReflectionTestUtils.setField(emailService, "fromName", "SplitEase");
+
+        EmailOutboxRepo repo = mock(EmailOutboxRepo.class);
+        when(repo.findAllById(any())).thenAnswer(inv -> StreamSupport
+                .stream(inv.<Iterable<Long>>getArgument(0).spliterator(), false)
+                .map(rows::get)
+                .toList());
+        when(repo.countPending()).thenAnswer(inv -> pending().count());
+        JdbcTemplate claims = new JdbcTemplate() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+                return (List<T>) pending().limit((Integer) args[1]).map(EmailOutbox::getId).toList();
+            }
+        };
+
+        meters = new SimpleMeterRegistry();
+        dispatcher = new EmailOutboxDispatcher(new EmailOutboxService(repo, claims), emailService, meters,
+                1, 50, 10, 3, 1000, 60000, 300000);
+    }
+
+    @Test
+    void deliversWholeBatchAndRecordsMetrics() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            add("user" + i + "@example.com");
+        }
+
+        assertThat(dispatcher.drainOnce()).isEqualTo(5);
+
+        MimeMessage[] received = smtp.getReceivedMessages();
+        assertThat(received).hasSize(5);
+        assertThat(received[0].getSubject()).isEqualTo("subject");
+        assertThat(rows.values()).allMatch(o -> o.getStatus() == EmailOutbox.Status.SENT
+                && o.getAttempts() == 1 && o.getSentAt() != null);
+        assertThat(meters.get("email.outbox.messages").tag("outcome", "sent").counter().count()).isEqualTo(5);
+        assertThat(meters.get("email.outbox.delivery.lag").timer().count()).isEqualTo(5);
+        assertThat(dispatcher.drainOnce()).isZero();
+    }
+
+    @Test
+    void badMessageFailsAloneAndIsRetriedWithBackoff() {
+        add("good@example.com");
+        add("not a valid address@@");
+        add("also-good@example.com");
+
+        LocalDateTime before = LocalDateTime.now();
+        dispatcher.drainOnce();
+        LocalDateTime after = LocalDateTime.now();
+
+        assertThat(smtp.getReceivedMessages()).hasSize(2);
+        EmailOutbox bad = rows.get(2L);
+        assertThat(bad.getStatus()).isEqualTo(EmailOutbox.Status.PENDING);
+        assertThat(bad.getAttempts()).isEqualTo(1);
+        assertThat(bad.getLastError()).isNotBlank();
+        // first retry waits the base backoff
+        assertThat(bad.getNextAttemptAt()).isBetween(before.plusSeconds(1), after.plusSeconds(1));
+        assertThat(rows.get(1L).getStatus()).isEqualTo(EmailOutbox.Status.SENT);
+        assertThat(meters.get("email.outbox.messages").tag("outcome", "retry").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void serverOutageFailsEveryMessageUntilGivenUp() {
+        smtp.stop();
+        add("a@example.com");
+        add("b@example.com");
+
+        for (int i = 0; i < 3; i++) {
+            dispatcher.drainOnce();
+        }
+
+        assertThat(rows.values()).allMatch(o -> o.getStatus() == EmailOutbox.Status.FAILED && o.getAttempts() == 3);
+        assertThat(meters.get("email.outbox.messages").tag("outcome", "retry").counter().count()).isEqualTo(4);
+        assertThat(meters.get("email.outbox.messages").tag("outcome", "failed").counter().count()).isEqualTo(2);
+        assertThat(meters.get("email.outbox.pending").gauge().value()).isZero();
+        assertThat(dispatcher.drainOnce()).isZero();
+    }
+
+    @Test
+    void backoffDoublesUpToCap() {
+        Duration base = Duration.ofSeconds(30);
+        Duration max = Duration.ofMinutes(5);
+        assertThat(EmailOutboxService.backoff(1, base, max)).isEqualTo(Duration.ofSeconds(30));
+        assertThat(EmailOutboxService.backoff(3, base, max)).isEqualTo(Duration.ofSeconds(120));
+        assertThat(EmailOutboxService.backoff(10, base, max)).isEqualTo(max);
+    }
+
+    private void add(String recipient) {
+        EmailOutbox o = new EmailOutbox(recipient, "subject", "<p>hello</p>");
+        o.setId((long) rows.size() + 1);
+        rows.put(o.getId(), o);
+    }
+
+    private Stream<EmailOutbox> pending() {
+        return rows.values().stream().filter(o -> o.getStatus() == EmailOutbox.Status.PENDING);
+    }
+}
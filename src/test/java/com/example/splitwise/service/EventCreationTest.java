@@ -0,0 +1,131 @@
+package com.example.splitwise.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.example.splitwise.controllers.EventController;
+import com.example.splitwise.model.Debitor;
+import com.example.splitwise.model.Event;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Creating an event with many participants: users resolved in bulk, ids drawn from the
+ * pooled sequences, and the splits inserted in JDBC batches.
+ */
+@SpringBootTest(properties = {
+        "app.mail.outbox.enabled=false",
+        "ledger.snapshot.enabled=false",
+        "spring.jpa.show-sql=false",
+        "spring.datasource.hikari.maximum-pool-size=50"
+})
+@Import(PostgresTestConfiguration.class)
+@Testcontainers(disabledWithoutDocker = true)
+class EventCreationTest {
+
+    private static final int PARTICIPANTS = 120;
+
+    @Autowired
+    private EventController eventController;
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Test
+    void createsManyParticipantsInBatches() {
+        List<Long> users = users("batch", PARTICIPANTS);
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+
+        ResponseEntity<?> response = eventController.createEvent(event(users.getFirst(), users), null, null);
+
+        assertThat(response.getStatusCode().value()).isEqualTo(201);
+        Event saved = (Event) response.getBody();
+        assertThat(saved.getSplits()).hasSize(PARTICIPANTS)
+                .extracting(Debitor::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(stats.getEntityInsertCount()).isEqualTo(PARTICIPANTS + 1);
+        // two user lookups, a few sequence calls, the event insert and ceil(120 / 50) split
+        // batches; one statement per split would be well over a hundred
+        assertThat(stats.getPrepareStatementCount()).isLessThanOrEqualTo(15);
+        assertThat(jdbc.queryForObject("select count(*) from debitors where event_id = ?", Long.class, saved.getId()))
+                .isEqualTo(PARTICIPANTS);
+    }
+
+    @Test
+    void unknownParticipantIsRejected() {
+        List<Long> users = new ArrayList<>(users("unknown", 2));
+        long creator = users.getFirst();
+        users.add(Long.MAX_VALUE);
+        long events = jdbc.queryForObject("select count(*) from events", Long.class);
+
+        ResponseEntity<?> response = eventController.createEvent(event(creator, users), null, null);
+
+        assertThat(response.getStatusCode().value()).isEqualTo(400);
+        assertThat(jdbc.queryForObject("select count(*) from events", Long.class)).isEqualTo(events);
+    }
+
+    @Test
+    void sequencesStartPastExistingIds() {
+        // a database created before the pooled sequences, holding identity ids
+        Flyway flyway = Flyway.configure().dataSource(dataSource).schemas("before_v3")
+                .locations("classpath:db/migration").target("2").load();
+        flyway.migrate();
+        jdbc.update("insert into before_v3.users (username, email, password, mail_given, total) "
+                + "values ('old', 'old@example.com', 'x', true, 0)");
+        long userId = jdbc.queryForObject("select id from before_v3.users", Long.class);
+        jdbc.update("insert into before_v3.events (title, creator_id, total, cancelled) "
+                + "select 'old' || g, ?, 1, false from generate_series(1, 75) g", userId);
+        jdbc.update("insert into before_v3.debitors (user_id, event_id, deb_amount, amount_paid, settled, included) "
+                + "select ?, id, 1, 0, false, true from before_v3.events", userId);
+
+        Flyway.configure().dataSource(dataSource).schemas("before_v3")
+                .locations("classpath:db/migration").target("3").load().migrate();
+
+        // the pooled optimizer hands out (value - 49 .. value) for each value it draws
+        for (String table : List.of("events", "debitors")) {
+            long maxId = jdbc.queryForObject("select max(id) from before_v3." + table, Long.class);
+            long first = jdbc.queryForObject("select nextval('before_v3." + table + "_seq')", Long.class);
+            assertThat(first - 49).isGreaterThan(maxId);
+        }
+        jdbc.execute("drop schema before_v3 cascade");
+    }
+
+    private List<Long> users(String name, int count) {
+        return Arrays.stream(fixtures.users(name, count)).boxed().toList();
+    }
+
+    private static EventController.CreateEventDto event(long creator, List<Long> participants) {
+        EventController.CreateEventDto dto = new EventController.CreateEventDto();
+        dto.title = "group dinner";
+        dto.creatorId = creator;
+        dto.total = new BigDecimal("1200.00");
+        for (Long id : participants) {
+            EventController.ParticipantDto p = new EventController.ParticipantDto();
+            p.userId = id;
+            dto.participants.add(p);
+        }
+        return dto;
+    }
+}
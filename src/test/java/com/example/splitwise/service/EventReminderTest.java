@@ -0,0 +1,81 @@
+package com.example.splitwise.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.access.AccessDeniedException;
+
+import com.example.splitwise.model.Debitor;
+import com.example.splitwise.model.Event;
+import com.example.splitwise.model.User;
+import com.example.splitwise.repo.EventRepo;
+
+class EventReminderTest {
+
+    private final EventRepo eventRepo = mock(EventRepo.class);
+    private final EmailService emailService = mock(EmailService.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final EventService service = new EventService(eventRepo, null, null, null, emailService,
+            jdbcTemplate, Duration.ofHours(24));
+
+    @Test
+    void onlyTheCreatorCanSendReminders() {
+        when(eventRepo.findByIdWithSplitsAndUsers(7L)).thenReturn(Optional.of(event()));
+
+        assertThatThrownBy(() -> service.sendReminders(7L, 2L)).isInstanceOf(AccessDeniedException.class);
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+        verify(emailService, never()).queueReminderEmail(any(), any(), any(), any());
+    }
+
+    @Test
+    void remindsUnpaidParticipantsOncePerCooldown() {
+        when(eventRepo.findByIdWithSplitsAndUsers(7L)).thenReturn(Optional.of(event()));
+        when(jdbcTemplate.update(anyString(), eq(7L), anyLong())).thenReturn(1, 0);
+
+        assertThat(service.sendReminders(7L, 1L)).isEqualTo(1);
+        assertThatThrownBy(() -> service.sendReminders(7L, 1L))
+                .isInstanceOf(EventService.ReminderCooldownException.class);
+        verify(emailService, times(1)).queueReminderEmail(any(), any(), eq("Dinner"), eq(new BigDecimal("5.00")));
+    }
+
+    // creator 1 with their own split, participant 2 owing 5.00
+    private static Event event() {
+        User creator = user(1L);
+        Event e = new Event();
+        e.setId(7L);
+        e.setTitle("Dinner");
+        e.setCreator(creator);
+        e.addSplit(split(creator));
+        e.addSplit(split(user(2L)));
+        return e;
+    }
+
+    private static Debitor split(User u) {
+        Debitor d = new Debitor();
+        d.setUser(u);
+        d.setDebAmount(new BigDecimal("5.00"));
+        return d;
+    }
+
+    private static User user(Long id) {
+        User u = new User();
+        u.setId(id);
+        u.setEmail("user" + id + "@example.com");
+        return u;
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.splitwise.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import com.example.splitwise.service.ExpenseImportService.Format;
+import com.example.splitwise.service.ExpenseImportService.ImportReport;
+import com.example.splitwise.service.ExpenseImportService.RowError;
+
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import tools.jackson.databind.json.JsonMapper;
+
+class ExpenseImportServiceTest {
+
+    private static final long CALLER = 1L;
+
+    private final FakeJdbc jdbc = new FakeJdbc();
+    private final BalanceService balanceService = mock(BalanceService.class);
+
+    @Test
+    void resolvesIdsEmailsAndUsernamesOncePerImport() throws IOException {
+        jdbc.user(1, "ann@example.com", "ann");
+        jdbc.user(2, "bob@example.com", "bob");
+        jdbc.user(3, "cat@example.com", "Cat");
+
+        ImportReport report = service(2, 100).importExpenses(new StringReader("""
+                title,total,participants
+                Dinner,30.00,1;bob@example.com;CAT
+                Taxi,10,ann;2
+                Lunch,9.99,CAT;bob@example.com
+                """), Format.CSV, null, CALLER);
+
+        assertThat(report.imported()).isEqualTo(3);
+        assertThat(report.failed()).isZero();
+        // second chunk only names users already resolved by the first
+        assertThat(jdbc.resolveQueries).isEqualTo(1);
+        assertThat(jdbc.debitors).extracting(a -> a[1]).containsExactly(1L, 2L, 3L, 1L, 2L, 3L, 2L);
+        assertThat(jdbc.debitors).extracting(a -> a[3]).containsExactly(
+                new BigDecimal("10.00"), new BigDecimal("10.00"), new BigDecimal("10.00"),
+                new BigDecimal("5.00"), new BigDecimal("5.00"),
+                new BigDecimal("5.00"), new BigDecimal("4.99"));
+        verify(balanceService, times(2)).apply(any());
+    }
+
+    @Test
+    void everyEventIsCreatedByTheCaller() throws IOException {
+        jdbc.user(1, "ann@example.com", "ann");
+        jdbc.user(2, "bob@example.com", "bob");
+
+        ImportReport report = service(100, 100).importExpenses(new StringReader("""
+                {"title":"Own","total":"4","participants":["bob"]}
+                {"title":"Named","creator":"ann@example.com","total":"4","participants":["bob"]}
+                {"title":"Someone else","creator":"bob","total":"4","participants":["ann"]}
+                """), Format.NDJSON, null, CALLER);
+
+        assertThat(report.imported()).isEqualTo(2);
+        assertThat(report.errors()).containsExactly(new RowError(3, "creator_not_caller: bob"));
+        assertThat(jdbc.events).extracting(a -> a[3]).containsOnly(CALLER);
+    }
+
+    @Test
+    void reportsEachInvalidRowAndImportsTheRest() throws IOException {
+        jdbc.user(1, "ann@example.com", "ann");
+        jdbc.user(2, "bob@example.com", "bob");
+
+        ImportReport report = service(100, 100).importExpenses(new StringReader("""
+                title,creator,total,participants,createdAt
+                ,,5,bob,
+                Zero,,0,bob,
+                Fractions,,1.005,bob,
+                Ghost,,5,bob;nobody,
+                Nobody,ghost@example.com,5,bob,
+                Empty,,5,,
+                Bad date,,5,bob,yesterday
+                Bad total,,five,bob,
+                Fine,,5,bob,2024-01-02T03:04:05
+                """), Format.CSV, null, CALLER);
+
+        assertThat(report.rows()).isEqualTo(9);
+        assertThat(report.imported()).isEqualTo(1);
+        assertThat(report.failed()).isEqualTo(8);
+        // unparseable rows are reported while reading, the rest when their chunk is validated
+        assertThat(report.errors()).extracting(RowError::row).containsExactly(7L, 8L, 1L, 2L, 3L, 4L, 5L, 6L);
+        assertThat(report.errors().subList(0, 2)).allSatisfy(e -> assertThat(e.error()).startsWith("malformed_row: "));
+        assertThat(report.errors().subList(2, 8)).extracting(RowError::error).containsExactly(
+                "title_required", "invalid_total", "total_has_more_than_2_decimals",
+                "unknown_participant: nobody", "unknown_creator: ghost@example.com", "participants_required");
+        assertThat(jdbc.events).singleElement().satisfies(a -> assertThat(a[1]).isEqualTo("Fine"));
+    }
+
+    @Test
+    void failedChunkIsReportedPerRowWithoutUndoingEarlierChunks() throws IOException {
+        jdbc.user(1, "ann@example.com", "ann");
+        jdbc.user(2, "bob@example.com", "bob");
+        jdbc.failDebitorBatch = 2;
+
+        ImportReport report = service(2, 100).importExpenses(new StringReader("""
+                title,total,participants
+                A,2,bob
+                B,2,bob
+                C,2,bob
+                D,2,bob
+                E,2,bob
+                """), Format.CSV, null, CALLER);
+
+        assertThat(report.imported()).isEqualTo(3);
+        assertThat(report.errors()).containsExactly(
+                new RowError(3, "chunk_failed: duplicate key"),
+                new RowError(4, "chunk_failed: duplicate key"));
+        verify(balanceService, times(2)).apply(any());
+    }
+
+    @Test
+    void reservesIdsInWholeSequenceBlocksWithOneQueryEach() throws IOException {
+        for (long id = 1; id <= 60; id++) jdbc.user(id, null, "u" + id);
+        String everyone = LongStream.rangeClosed(1, 60).mapToObj(Long::toString).collect(Collectors.joining(";"));
+
+        ImportReport report = service(100, 100).importExpenses(new StringReader(
+                "title,total,participants\nA,60," + everyone + "\nB,60," + everyone + "\n"), Format.CSV, null, CALLER);
+
+        assertThat(report.imported()).isEqualTo(2);
+        // 2 events fit one block, 120 splits need three
+        assertThat(jdbc.blocksRequested).containsExactly(Map.entry("events_seq", 1), Map.entry("debitors_seq", 3));
+        assertThat(jdbc.events).extracting(a -> a[0]).containsExactly(101L, 102L);
+        assertThat(jdbc.debitors).extracting(a -> (Long) a[0])
+                .containsExactlyElementsOf(LongStream.rangeClosed(1001, 1120).boxed().toList());
+    }
+
+    @Test
+    void errorReportIsCappedButCountsEveryFailure() throws IOException {
+        ImportReport report = service(100, 2).importExpenses(new StringReader("""
+                title,total,participants
+                ,1,x
+                ,1,x
+                ,1,x
+                """), Format.CSV, null, CALLER);
+
+        assertThat(report.failed()).isEqualTo(3);
+        assertThat(report.errors()).hasSize(2);
+        assertThat(report.errorsTruncated()).isTrue();
+        verify(balanceService, never()).apply(any());
+    }
+
+    @Test
+    void rejectsUnknownFormatsAndIncompleteHeaders() {
+        assertThatThrownBy(() -> Format.of(null, "application/xml"))
+                .isInstanceOf(IllegalArgumentException.class).hasMessage("unsupported_format");
+        assertThat(Format.of(null, "text/csv; charset=utf-8")).isEqualTo(Format.CSV);
+        assertThat(Format.of("jsonl", "text/csv")).isEqualTo(Format.NDJSON);
+
+        assertThatThrownBy(() -> service(100, 100).importExpenses(new StringReader("title,creator,total\n"),
+                Format.CSV, null, CALLER))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("csv_header_requires_title_total_participants");
+    }
+
+    private ExpenseImportService service(int chunkSize, int maxErrors) {
+        PlatformTransactionManager tm = mock(PlatformTransactionManager.class);
+        when(tm.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        Cache cache = mock(Cache.class);
+        when(cache.unwrap(org.hibernate.Cache.class)).thenReturn(mock(org.hibernate.Cache.class));
+        EntityManagerFactory emf = mock(EntityManagerFactory.class);
+        when(emf.getCache()).thenReturn(cache);
+        return new ExpenseImportService(jdbc, tm, balanceService, JsonMapper.builder().build(), emf,
+                chunkSize, maxErrors);
+    }
+
+    /**
+     * Stands in for the three statements the importer issues: the user lookup, the
+     * pooled sequence reservation and the two insert batches.
+     */
+    private static final class FakeJdbc extends JdbcTemplate {
+        private final Map<Long, String[]> users = new HashMap<>();
+        private final Map<String, Long> sequences = new HashMap<>(Map.of("events_seq", 100L, "debitors_seq", 1000L));
+        final List<Map.Entry<String, Integer>> blocksRequested = new ArrayList<>();
+        final List<Object[]> events = new ArrayList<>();
+        final List<Object[]> debitors = new ArrayList<>();
+        int resolveQueries;
+        int debitorBatches;
+        int failDebitorBatch;
+
+        void user(long id, String email, String username) {
+            users.put(id, new String[]{email, username});
+        }
+
+        @Override
+        public void query(String sql, RowCallbackHandler rch, Object... args) throws DataAccessException {
+            resolveQueries++;
+            List<Long> ids = Arrays.asList((Long[]) args[0]);
+            List<String> emails = Arrays.asList((String[]) args[1]);
+            List<String> names = Arrays.asList((String[]) args[2]);
+            users.forEach((id, u) -> {
+                String upper = u[1] == null ? null : u[1].toUpperCase(Locale.ROOT);
+                if (ids.contains(id) || emails.contains(u[0]) || names.contains(upper)) {
+                    try {
+                        rch.processRow(row(id, u[0], upper));
+                    } catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) throws DataAccessException {
+            String sequence = sql.substring(sql.indexOf("nextval('") + 9, sql.indexOf("')"));
+            int blocks = (Integer) args[0];
+            blocksRequested.add(Map.entry(sequence, blocks));
+            // pooled: each nextval hands out the high end of the next 50 ids
+            return (List<T>) IntStream.range(0, blocks)
+                    .mapToObj(i -> sequences.merge(sequence, 50L, Long::sum))
+                    .toList();
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) throws DataAccessException {
+            if (sql.contains("into debitors") && ++debitorBatches == failDebitorBatch) {
+                throw new DataIntegrityViolationException("batch failed", new SQLException("duplicate key"));
+            }
+            (sql.contains("into events") ? events : debitors).addAll(batchArgs);
+            return new int[batchArgs.size()];
+        }
+
+        private static ResultSet row(long id, String email, String upperUsername) throws SQLException {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getLong(1)).thenReturn(id);
+            when(rs.getString(2)).thenReturn(email);
+            when(rs.getString(3)).thenReturn(upperUsername);
+            return rs;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.splitwise.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+@SpringBootTest(properties = {
+        "app.mail.outbox.enabled=false",
+        "ledger.snapshot.enabled=false",
+        "spring.jpa.show-sql=false",
+        "spring.datasource.hikari.maximum-pool-size=50"
+})
+@Import(PostgresTestConfiguration.class)
+@Testcontainers(disabledWithoutDocker = true)
+class IdempotencyServiceTest {
+
+    @Autowired
+    private IdempotencyService idempotency;
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private ResponseEntity<?> created() {
+        int n = executions.incrementAndGet();
+        return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("execution", n));
+    }
+
+    @Test
+    void replayReturnsFirstResponseWithoutRunningAgain() {
+        String key = UUID.randomUUID().toString();
+
+        ResponseEntity<?> first = idempotency.execute(key, "test:1", Map.of("amount", 5), this::created);
+        ResponseEntity<?> again = idempotency.execute(key, "test:1", Map.of("amount", 5), this::created);
+
+        assertThat(executions).hasValue(1);
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(again.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(again.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(again.getBody()).isEqualTo("{\"execution\":1}");
+    }
+
+    @Test
+    void sameKeyForDifferentRequestIsRejected() {
+        String key = UUID.randomUUID().toString();
+        idempotency.execute(key, "test:1", Map.of("amount", 5), this::created);
+
+        ResponseEntity<?> other = idempotency.execute(key, "test:1", Map.of("amount", 6), this::created);
+
+        assertThat(other.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_CONTENT);
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void keysAreScopedPerCaller() {
+        String key = UUID.randomUUID().toString();
+        idempotency.execute(key, "test:1", Map.of("amount", 5), this::created);
+        idempotency.execute(key, "test:2", Map.of("amount", 5), this::created);
+
+        assertThat(executions).hasValue(2);
+    }
+
+    @Test
+    void failedResponsesAreNotStored() {
+        String key = UUID.randomUUID().toString();
+        ResponseEntity<?> failed = idempotency.execute(key, "test:1", Map.of("amount", 5), () -> {
+            executions.incrementAndGet();
+            return ResponseEntity.badRequest().body(Map.of("error", "nope"));
+        });
+        ResponseEntity<?> retried = idempotency.execute(key, "test:1", Map.of("amount", 5), this::created);
+
+        assertThat(failed.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(retried.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(executions).hasValue(2);
+    }
+
+    @Test
+    void concurrentDuplicatesWaitForTheFirstExecution() throws Exception {
+        String key = UUID.randomUUID().toString();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        List<Future<ResponseEntity<?>>> results = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return idempotency.execute(key, "test:1", Map.of("amount", 5), () -> {
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return created();
+                });
+            }));
+        }
+        start.countDown();
+        for (Future<ResponseEntity<?>> f : results) {
+            assertThat(f.get().getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        }
+        pool.shutdown();
+
+        assertThat(executions).hasValue(1);
+    }
+}
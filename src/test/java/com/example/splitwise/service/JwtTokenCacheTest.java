@@ -0,0 +1,78 @@
+package com.example.splitwise.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Date;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class JwtTokenCacheTest {
+
+    private final JwtTokenCache cache = new JwtTokenCache(100, new SimpleMeterRegistry());
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void servesTokenUntilItExpires() {
+        cache.put("live", claims("ann@example.com", 60_000), principal(1L, "ann@example.com"));
+        cache.put("expired", claims("ann@example.com", -1), principal(1L, "ann@example.com"));
+
+        assertThat(cache.get("live")).isNotNull();
+        assertThat(cache.get("live").userDetails().getUsername()).isEqualTo("ann@example.com");
+        assertThat(cache.get("expired")).isNull();
+        assertThat(cache.get("unknown")).isNull();
+    }
+
+    @Test
+    void evictUserDropsOnlyThatUsersTokens() {
+        cache.put("ann-1", claims("ann@example.com", 60_000), principal(1L, "ann@example.com"));
+        cache.put("ann-2", claims("ann@example.com", 60_000), principal(1L, "ann@example.com"));
+        cache.put("bob", claims("bob@example.com", 60_000), principal(2L, "bob@example.com"));
+
+        cache.evictUser("ann@example.com");
+
+        assertThat(cache.get("ann-1")).isNull();
+        assertThat(cache.get("ann-2")).isNull();
+        assertThat(cache.get("bob")).isNotNull();
+    }
+
+    @Test
+    void evictionInsideTransactionIsRepeatedAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        cache.put("ann", claims("ann@example.com", 60_000), principal(1L, "ann@example.com"));
+
+        cache.evictUser("ann@example.com");
+        // a concurrent request resolves the user before the commit and caches it again
+        cache.put("ann", claims("ann@example.com", 60_000), principal(1L, "ann@example.com"));
+        assertThat(cache.get("ann")).isNotNull();
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        assertThat(cache.get("ann")).isNull();
+    }
+
+    private static JWTClaimsSet claims(String subject, long expiresInMs) {
+        return new JWTClaimsSet.Builder()
+                .subject(subject)
+                .expirationTime(new Date(System.currentTimeMillis() + expiresInMs))
+                .build();
+    }
+
+    private static AuthenticatedUser principal(Long id, String email) {
+        return new AuthenticatedUser(id, email, email.substring(0, email.indexOf('@')), "x",
+                AuthorityUtils.createAuthorityList("USER"));
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.splitwise.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * The ledger query and both writers over an in-memory database with the tables the
+ * export reads.
+ */
+class LedgerExportServiceTest {
+
+    private static final LocalDateTime TS = LocalDateTime.of(2024, 3, 1, 12, 30);
+
+    private final ObjectMapper mapper = JsonMapper.builder().build();
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private LedgerExportService service;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:ledger-export;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table events (id bigint primary key, title varchar(255), created_at timestamp, "
+                + "creator_id bigint, total numeric(15,2), cancelled boolean not null)");
+        jdbc.execute("create table debitors (id bigint primary key, user_id bigint, event_id bigint, "
+                + "deb_amount numeric(15,2), amount_paid numeric(15,2), settled boolean not null, "
+                + "included boolean not null, paid_at timestamp)");
+        jdbc.execute("create table transactions (id bigint primary key, ts timestamp, from_user_id bigint, "
+                + "to_user_id bigint, amount numeric(15,2), event_id bigint, note varchar(255))");
+        service = new LedgerExportService(dataSource, new DataSourceTransactionManager(dataSource), mapper, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.execute("drop all objects");
+    }
+
+    @Test
+    void csvQuotesTextWithSeparatorsQuotesAndNewlines() throws IOException {
+        jdbc.update("insert into events values (10, 'Dinner, \"Joe''s\"', ?, 2, 30.00, false)", TS);
+        jdbc.update("insert into debitors values (20, 1, 10, 15.00, 5.50, false, true, null)");
+        jdbc.update("insert into transactions values (30, ?, 1, 2, 5.50, 10, 'first\nsecond')", TS);
+        jdbc.update("insert into transactions values (31, ?, 2, 1, 1.00, null, 'plain')", TS);
+
+        String csv = export(LedgerExportService.Format.CSV);
+
+        assertThat(csv).startsWith("type,id,ts,eventId,eventTitle,fromUserId,toUserId,amount,amountPaid,settled,note\r\n");
+        assertThat(csv).contains("split,20,2024-03-01T12:30,10,\"Dinner, \"\"Joe's\"\"\",1,2,15.00,5.50,false,\r\n");
+        assertThat(csv).contains("payment,30,2024-03-01T12:30,10,,1,2,5.50,,,\"first\nsecond\"\r\n");
+        assertThat(csv).contains("payment,31,2024-03-01T12:30,,,2,1,1.00,,,plain\r\n");
+        assertThat(csv.split("\r\n")).hasSize(4);
+    }
+
+    @Test
+    void ndjsonWritesOneObjectPerLine() throws IOException {
+        jdbc.update("insert into events values (10, 'Dinner', ?, 2, 30.00, false)", TS);
+        jdbc.update("insert into debitors values (20, 1, 10, 15.00, 15.00, true, true, ?)", TS.plusDays(1));
+        jdbc.update("insert into transactions values (30, ?, 1, 1, 2.00, null, null)", TS);
+
+        String ndjson = export(LedgerExportService.Format.NDJSON);
+
+        assertThat(ndjson).endsWith("}\n");
+        List<JsonNode> rows = ndjson.lines().map(mapper::readTree).toList();
+        assertThat(rows).hasSize(2);
+        JsonNode payment = rows.stream().filter(r -> r.get("type").asString().equals("payment")).findFirst().orElseThrow();
+        assertThat(payment.get("id").asLong()).isEqualTo(30);
+        assertThat(payment.get("eventId").isNull()).isTrue();
+        assertThat(payment.get("amount").decimalValue()).isEqualByComparingTo("2.00");
+        assertThat(payment.has("note")).isFalse();
+        assertThat(payment.has("settled")).isFalse();
+        JsonNode split = rows.stream().filter(r -> r.get("type").asString().equals("split")).findFirst().orElseThrow();
+        assertThat(split.get("ts").asString()).isEqualTo("2024-03-02T12:30");
+        assertThat(split.get("eventTitle").asString()).isEqualTo("Dinner");
+        assertThat(split.get("toUserId").asLong()).isEqualTo(2);
+        assertThat(split.get("amountPaid").decimalValue()).isEqualByComparingTo("15.00");
+        assertThat(split.get("settled").asBoolean()).isTrue();
+    }
+
+    @Test
+    void emptyLedgerIsHeaderOnlyOrNothing() throws IOException {
+        assertThat(export(LedgerExportService.Format.CSV)).isEqualTo(
+                "type,id,ts,eventId,eventTitle,fromUserId,toUserId,amount,amountPaid,settled,note\r\n");
+        assertThat(export(LedgerExportService.Format.NDJSON)).isEmpty();
+    }
+
+    @Test
+    void clientDisconnectStopsTheExportAndReleasesTheConnection() throws IOException {
+        jdbc.update("insert into transactions select x, ?, 1, 2, 1.00, null, 'note ' || x "
+                + "from system_range(1, 20000)", TS);
+        DisconnectingStream out = new DisconnectingStream(1024);
+
+        assertThatThrownBy(() -> service.export(1L, LedgerExportService.Format.CSV, out))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Broken pipe");
+
+        // the header went out, the first buffered batch of rows failed, nothing was written after
+        assertThat(out.written).isGreaterThan(0).isLessThan(1024);
+        assertThat(out.attemptsAfterDisconnect).isEqualTo(1);
+        assertThat(TransactionSynchronizationManager.getResourceMap()).isEqualTo(Map.of());
+        assertThat(TransactionSynchronizationManager.isActualTransactionActive()).isFalse();
+        // the cursor is gone; the next export gets a connection and runs to the end
+        assertThat(service.export(1L, LedgerExportService.Format.CSV, OutputStream.nullOutputStream()))
+                .isEqualTo(20_000);
+    }
+
+    private String export(LedgerExportService.Format format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.export(1L, format, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    // a response whose client goes away once `limit` bytes have been sent
+    private static final class DisconnectingStream extends OutputStream {
+        private final int limit;
+        int written;
+        int attemptsAfterDisconnect;
+
+        DisconnectingStream(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (written + len > limit) {
+                attemptsAfterDisconnect++;
+                throw new IOException("Broken pipe");
+            }
+            written += len;
+        }
+    }
+}
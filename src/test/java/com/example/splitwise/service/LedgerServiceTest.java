@@ -0,0 +1,151 @@
+package com.example.splitwise.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * The ledger must always sum to the balance read models: per user through
+ * snapshot + tail replay, and as a whole through the parallel replay.
+ */
+@SpringBootTest(properties = {
+        "app.mail.outbox.enabled=false",
+        "ledger.snapshot.enabled=false",
+        "spring.jpa.show-sql=false",
+        "spring.datasource.hikari.maximum-pool-size=50"
+})
+@Import(PostgresTestConfiguration.class)
+@Testcontainers(disabledWithoutDocker = true)
+class LedgerServiceTest {
+
+    private static final BigDecimal SHARE = new BigDecimal("30.00");
+
+    @Autowired
+    private LedgerService ledgerService;
+    @Autowired
+    private PaymentService paymentService;
+    @Autowired
+    private EventService eventService;
+    @Autowired
+    private BalanceService balanceService;
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private TransactionTemplate tx;
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Test
+    void replaysMatchTheReadModels() {
+        long[] ids = seed("replay");
+        long alice = ids[0], bob = ids[1], carol = ids[2];
+
+        paymentService.payDebitor(ids[3], bob, new BigDecimal("10.00"));
+        paymentService.settleUp(carol, alice, new BigDecimal("45.00"));
+        assertMatchesReadModel(alice, bob, carol);
+
+        // snapshot everyone, then move on: replay starts from the snapshot
+        long watermark = ledgerService.committedWatermark();
+        assertThat(ledgerService.snapshotTouched(0, watermark, 1)).isGreaterThanOrEqualTo(3);
+        paymentService.payDebitor(ids[3], bob, new BigDecimal("5.00"));
+        eventService.cancelEvent(ids[4]);
+
+        LedgerService.State bobState = ledgerService.replay(bob);
+        assertThat(bobState.replayed()).isLessThanOrEqualTo(6);
+        assertMatchesReadModel(alice, bob, carol);
+
+        // the read models are disposable: the log alone rebuilds them
+        jdbc.update("update user_balances set owes = 0, owed = 0, net = 0");
+        jdbc.update("delete from pair_balances");
+        LedgerService.ReplayResult result = ledgerService.replayAll();
+        assertThat(result.postings()).isPositive();
+        assertThat(balanceService.findMismatches(10)).isEmpty();
+    }
+
+    @Test
+    void watermarkStopsBelowOpenAppendsWithoutWaitingForThem() throws Exception {
+        CountDownLatch appended = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // a writer that drew its seq and has not committed yet
+        CompletableFuture<Long> open = CompletableFuture.supplyAsync(() -> tx.execute(status -> {
+            long seq = ledgerService.append(new BalanceDelta(LedgerEvent.of(LedgerEvent.Type.ADJUSTMENT)));
+            appended.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return seq;
+        }));
+        assertThat(appended.await(10, TimeUnit.SECONDS)).isTrue();
+        long later = tx.execute(status -> ledgerService.append(new BalanceDelta(LedgerEvent.of(LedgerEvent.Type.ADJUSTMENT))));
+
+        // returns while the writer is still open, and never past its seq
+        long watermark = CompletableFuture.supplyAsync(ledgerService::committedWatermark).get(5, TimeUnit.SECONDS);
+        release.countDown();
+        long openSeq = open.get(10, TimeUnit.SECONDS);
+        assertThat(later).isGreaterThan(openSeq);
+        assertThat(watermark).isLessThan(openSeq);
+
+        assertThat(ledgerService.committedWatermark()).isGreaterThanOrEqualTo(later);
+    }
+
+    @Test
+    void ledgerIsAppendOnly() {
+        seed("append");
+        assertThatThrownBy(() -> jdbc.update("update ledger_events set type = 'ADJUSTMENT'"))
+                .isInstanceOf(DataAccessException.class);
+        assertThatThrownBy(() -> jdbc.update("delete from ledger_postings"))
+                .isInstanceOf(DataAccessException.class);
+    }
+
+    private void assertMatchesReadModel(long... users) {
+        for (long user : users) {
+            LedgerService.State state = ledgerService.replay(user);
+            UserBalanceView stored = jdbc.query("select owes, owed from user_balances where user_id = ?",
+                    rs -> rs.next() ? new UserBalanceView(rs.getBigDecimal(1), rs.getBigDecimal(2))
+                            : new UserBalanceView(BigDecimal.ZERO, BigDecimal.ZERO), user);
+            assertThat(state.owes()).isEqualByComparingTo(stored.owes());
+            assertThat(state.owed()).isEqualByComparingTo(stored.owed());
+            for (long other : users) {
+                if (other == user) continue;
+                BigDecimal[] pair = balanceService.getPairBalance(user, other);
+                assertThat(state.owesTo().getOrDefault(other, BigDecimal.ZERO)).isEqualByComparingTo(pair[0]);
+                assertThat(state.owedBy().getOrDefault(other, BigDecimal.ZERO)).isEqualByComparingTo(pair[1]);
+            }
+        }
+    }
+
+    private record UserBalanceView(BigDecimal owes, BigDecimal owed) {
+    }
+
+    // alice creates two events split with bob and carol; returns {alice, bob, carol, bob's first split, second event}
+    private long[] seed(String name) {
+        long[] users = fixtures.users(name, 3);
+        long[] out = new long[5];
+        System.arraycopy(users, 0, out, 0, 3);
+        for (int e = 0; e < 2; e++) {
+            long eventId = fixtures.event(out[0], name + e, SHARE.add(SHARE), 10 - e, false);
+            for (int p = 1; p <= 2; p++) {
+                long debitorId = fixtures.split(out[p], eventId, SHARE);
+                if (e == 0 && p == 1) out[3] = debitorId;
+            }
+            if (e == 1) out[4] = eventId;
+        }
+        fixtures.rebuildBalances();
+        return out;
+    }
+}
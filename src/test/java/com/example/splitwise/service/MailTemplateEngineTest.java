@@ -0,0 +1,52 @@
+package com.example.splitwise.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class MailTemplateEngineTest {
+
+    private final MailTemplateEngine engine = new MailTemplateEngine();
+
+    @Test
+    void rendersSubjectAndBodyInsideLayout() {
+        MailTemplateEngine.Rendered mail = engine.render("verification",
+                Map.of("name", "alice", "verifyLink", "http://x/verify?token=a&b=c"));
+
+        assertThat(mail.subject()).isEqualTo("Verify your SplitEase account");
+        assertThat(mail.html())
+                .startsWith("<!doctype html>")
+                .contains("<title>Verify your SplitEase account</title>")
+                .contains("Hey alice,")
+                .contains("href=\"http://x/verify?token=a&amp;b=c\"")
+                .doesNotContain("{{");
+    }
+
+    @Test
+    void escapesValuesInBodyButNotInSubject() {
+        MailTemplateEngine.Rendered mail = engine.render("payment-received", Map.of(
+                "name", "bob", "payer", "<eve>", "event", "Tom & Jerry",
+                "amount", "12.50", "remaining", "0.00"));
+
+        assertThat(mail.subject()).isEqualTo("<eve> paid you ₹12.50 for Tom & Jerry");
+        assertThat(mail.html()).contains("&lt;eve&gt;").contains("Tom &amp; Jerry").doesNotContain("<eve>");
+    }
+
+    @Test
+    void compilesRepeatedSlotsOnce() {
+        MailTemplate t = MailTemplate.compile("a{{x}}b{{y}}c{{x}}", true);
+
+        assertThat(t.getVariables()).containsExactly("x", "y");
+        assertThat(t.render(Map.of("x", "1", "y", "'"))).isEqualTo("a1b&#39;c1");
+        assertThat(MailTemplate.compile("static", false).isStatic()).isTrue();
+    }
+
+    @Test
+    void rejectsUnknownTemplate() {
+        assertThatThrownBy(() -> engine.render("nope", Map.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.splitwise.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Hammers a single split through {@link PaymentService} from many threads until it is
+ * fully paid. Optimistic-lock conflicts would be retried by the caller and counted.
+ */
+@SpringBootTest(properties = {
+        "app.mail.outbox.enabled=false",
+        "ledger.snapshot.enabled=false",
+        "spring.jpa.show-sql=false",
+        "spring.datasource.hikari.maximum-pool-size=50"
+})
+@Import(PostgresTestConfiguration.class)
+@Testcontainers(disabledWithoutDocker = true)
+class PaymentConcurrencyTest {
+
+    private static final int THREADS = 200;
+    private static final BigDecimal SHARE = new BigDecimal("500.00");
+    private static final BigDecimal STEP = new BigDecimal("1.00");
+
+    @Autowired
+    private PaymentService paymentService;
+    @Autowired
+    private BalanceService balanceService;
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Test
+    void concurrentPayersNeverOverpayAndEachPaymentLandsOnce() throws Exception {
+        long[] split = seedSplit("hammer");
+        AtomicInteger rejected = new AtomicInteger();
+
+        Run run = hammer(() -> {
+            try {
+                paymentService.payDebitor(split[0], split[1], STEP);
+                return true;
+            } catch (IllegalArgumentException | IllegalStateException fullyPaid) {
+                rejected.incrementAndGet();
+                return false;
+            }
+        });
+
+        assertThat(run.paid()).isEqualTo(500);
+        assertThat(run.retries()).isZero();
+        assertThat(jdbc.queryForObject("select amount_paid from debitors where id = ?", BigDecimal.class, split[0]))
+                .isEqualByComparingTo(SHARE);
+        assertThat(jdbc.queryForObject("select settled from debitors where id = ?", Boolean.class, split[0])).isTrue();
+        assertThat(jdbc.queryForObject("select count(*) from transactions where event_id = ?", Long.class, split[2]))
+                .isEqualTo(500);
+        assertThat(jdbc.queryForObject("select sum(amount) from transactions where event_id = ?", BigDecimal.class,
+                split[2])).isEqualByComparingTo(SHARE);
+        assertThat(balanceService.findMismatches(10)).isEmpty();
+    }
+
+    private record Run(int paid, int retries) {
+    }
+
+    private interface Attempt {
+        boolean pay() throws Exception;
+    }
+
+    // every thread keeps paying STEP until the split refuses; optimistic conflicts are retried
+    private Run hammer(Attempt attempt) throws Exception {
+        AtomicInteger paid = new AtomicInteger();
+        AtomicInteger retries = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                while (true) {
+                    try {
+                        if (!attempt.pay()) return null;
+                        paid.incrementAndGet();
+                    } catch (OptimisticLockingFailureException conflict) {
+                        retries.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) f.get();
+        pool.shutdown();
+        return new Run(paid.get(), retries.get());
+    }
+
+    // returns {debitorId, payerId, eventId}
+    private long[] seedSplit(String name) {
+        long creator = fixtures.user(name + "-creator");
+        long payer = fixtures.user(name + "-payer");
+        long eventId = fixtures.event(creator, name, SHARE);
+        long debitorId = fixtures.split(payer, eventId, SHARE);
+        fixtures.rebuildBalances();
+        return new long[]{debitorId, payer, eventId};
+    }
+}
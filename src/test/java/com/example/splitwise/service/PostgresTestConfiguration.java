@@ -0,0 +1,27 @@
+package com.example.splitwise.service;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+
+/**
+ * The Postgres the integration tests run against, plus the {@link TestFixtures} that seed
+ * it. Tests that import this with the same {@code @SpringBootTest} properties share one
+ * cached context and therefore one container, so every fixture names its rows uniquely.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+class PostgresTestConfiguration {
+
+    @Bean
+    @ServiceConnection
+    PostgreSQLContainer postgres() {
+        return new PostgreSQLContainer("postgres:16-alpine");
+    }
+
+    @Bean
+    TestFixtures testFixtures(JdbcTemplate jdbc, BalanceService balanceService) {
+        return new TestFixtures(jdbc, balanceService);
+    }
+}
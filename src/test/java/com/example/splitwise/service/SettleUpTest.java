@@ -0,0 +1,94 @@
+package com.example.splitwise.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Settling up spreads one amount over many open splits, oldest event first, and writes
+ * one transaction per event.
+ */
+@SpringBootTest(properties = {
+        "app.mail.outbox.enabled=false",
+        "ledger.snapshot.enabled=false",
+        "spring.jpa.show-sql=false",
+        "spring.datasource.hikari.maximum-pool-size=50"
+})
+@Import(PostgresTestConfiguration.class)
+@Testcontainers(disabledWithoutDocker = true)
+class SettleUpTest {
+
+    private static final int EVENTS = 250;
+    private static final BigDecimal SHARE = new BigDecimal("10.00");
+
+    @Autowired
+    private PaymentService paymentService;
+    @Autowired
+    private BalanceService balanceService;
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Test
+    void allocatesOldestFirstWithOneTransactionPerEvent() {
+        long[] users = seed("fifo");
+        // two splits of 10.00 per event: 1005.00 clears 50 events and half a split of the 51st
+        SettleUpReceipt receipt = paymentService.settleUp(users[1], users[0], new BigDecimal("1005.00"));
+
+        assertThat(receipt.splitsPaid()).isEqualTo(101);
+        assertThat(receipt.splitsSettled()).isEqualTo(100);
+        assertThat(receipt.payments()).hasSize(51);
+        assertThat(receipt.remaining()).isEqualByComparingTo(new BigDecimal("3995.00"));
+
+        List<Long> paidEvents = jdbc.queryForList("""
+                select e.id from events e
+                where e.creator_id = ? and exists (select 1 from debitors d where d.event_id = e.id and d.amount_paid > 0)
+                order by e.created_at
+                """, Long.class, users[0]);
+        List<Long> oldest = jdbc.queryForList(
+                "select id from events where creator_id = ? order by created_at limit 51", Long.class, users[0]);
+        assertThat(paidEvents).isEqualTo(oldest);
+        assertThat(jdbc.queryForObject("select count(*) from transactions where from_user_id = ?", Long.class, users[1]))
+                .isEqualTo(51);
+        assertThat(balanceService.findMismatches(10)).isEmpty();
+    }
+
+    @Test
+    void rejectsMoreThanIsOpenAndLeavesNothingBehind() {
+        long[] users = seed("over");
+        assertThatThrownBy(() -> paymentService.settleUp(users[1], users[0], new BigDecimal("5000.01")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(jdbc.queryForObject("select count(*) from transactions where from_user_id = ?", Long.class, users[1]))
+                .isZero();
+
+        SettleUpReceipt all = paymentService.settleUp(users[1], users[0], new BigDecimal("5000.00"));
+        assertThat(all.splitsSettled()).isEqualTo(2 * EVENTS);
+        assertThat(all.remaining()).isZero();
+        assertThatThrownBy(() -> paymentService.settleUp(users[1], users[0], BigDecimal.ONE))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(balanceService.findMismatches(10)).isEmpty();
+    }
+
+    // returns {creatorId, payerId}; the payer holds two open splits in each of EVENTS events
+    private long[] seed(String name) {
+        long creator = fixtures.user(name + "-creator");
+        long payer = fixtures.user(name + "-payer");
+        for (int i = 0; i < EVENTS; i++) {
+            long eventId = fixtures.event(creator, name + i, SHARE.add(SHARE), EVENTS - i, false);
+            fixtures.split(payer, eventId, SHARE);
+            fixtures.split(payer, eventId, SHARE);
+        }
+        fixtures.rebuildBalances();
+        return new long[]{creator, payer};
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.splitwise.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+class SettlementEngineTest {
+
+    @Test
+    void collapsesChainIntoSingleTransfer() {
+        SettlementEngine engine = new SettlementEngine();
+        engine.addDebt(1, 2, new BigDecimal("10.00"));
+        engine.addDebt(2, 3, new BigDecimal("10.00"));
+
+        List<SettlementEngine.Transfer> plan = engine.simplify();
+
+        assertThat(plan).containsExactly(new SettlementEngine.Transfer(1L, 3L, new BigDecimal("10.00")));
+    }
+
+    @Test
+    void cancelsOpposingDebts() {
+        SettlementEngine engine = new SettlementEngine();
+        engine.addDebt(1, 2, new BigDecimal("7.50"));
+        engine.addDebt(2, 1, new BigDecimal("7.50"));
+
+        assertThat(engine.simplify()).isEmpty();
+    }
+
+    /**
+     * Timing lives in SettlementBenchmark; this only checks the plan on a large group.
+     */
+    @Test
+    void settlesLargeGroupInFewerTransfersThanMembers() {
+        int members = 10_000;
+        int splits = 200_000;
+        SplittableRandom random = new SplittableRandom(42);
+        long[] debtor = new long[splits];
+        long[] creditor = new long[splits];
+        long[] cents = new long[splits];
+        for (int i = 0; i < splits; i++) {
+            debtor[i] = random.nextInt(members) + 1;
+            creditor[i] = random.nextInt(members) + 1;
+            cents[i] = random.nextInt(1, 100_000);
+        }
+
+        List<SettlementEngine.Transfer> plan = run(members, debtor, creditor, cents).simplify();
+
+        assertThat(plan.size()).isLessThan(members);
+        assertSettlesEveryone(debtor, creditor, cents, plan);
+    }
+
+    private static SettlementEngine run(int members, long[] debtor, long[] creditor, long[] cents) {
+        SettlementEngine engine = new SettlementEngine(members);
+        for (int i = 0; i < debtor.length; i++) {
+            engine.addDebt(debtor[i], creditor[i], cents[i]);
+        }
+        return engine;
+    }
+
+    private static void assertSettlesEveryone(long[] debtor, long[] creditor, long[] cents,
+                                              List<SettlementEngine.Transfer> plan) {
+        Map<Long, Long> net = new HashMap<>();
+        for (int i = 0; i < debtor.length; i++) {
+            if (debtor[i] == creditor[i]) continue;
+            net.merge(debtor[i], -cents[i], Long::sum);
+            net.merge(creditor[i], cents[i], Long::sum);
+        }
+        for (SettlementEngine.Transfer t : plan) {
+            long c = t.amount().movePointRight(2).longValueExact();
+            assertThat(c).isPositive();
+            net.merge(t.fromUserId(), c, Long::sum);
+            net.merge(t.toUserId(), -c, Long::sum);
+        }
+        assertThat(net.values()).allMatch(v -> v == 0);
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.splitwise.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+class SplitEngineTest {
+
+    @Test
+    void equalSpreadsLeftoverCentsOverTheFirstParticipants() {
+        assertThat(SplitEngine.equal(1000, 3)).containsExactly(334, 333, 333);
+        assertThat(SplitEngine.equal(2000, 3)).containsExactly(667, 667, 666);
+        assertThat(SplitEngine.equal(1003, 4)).containsExactly(251, 251, 251, 250);
+    }
+
+    @Test
+    void weightedGivesLeftoverCentsToLargestRemainders() {
+        // exact shares 1.666.., 3.333.., 5.0 -> floors 1, 3, 5; the cent goes to the .666
+        assertThat(SplitEngine.weighted(10, new long[]{1, 2, 3})).containsExactly(2, 3, 5);
+        // equal remainders: earlier participants first
+        assertThat(SplitEngine.weighted(100, new long[]{1, 1, 1})).containsExactly(34, 33, 33);
+        assertThat(SplitEngine.weighted(500, new long[]{0, 1, 0})).containsExactly(0, 500, 0);
+    }
+
+    @Test
+    void percentagesMustCoverTheWholeTotal() {
+        assertThat(SplitEngine.percentages(10000, new long[]{3333, 3333, 3334})).containsExactly(3333, 3333, 3334);
+        assertThatThrownBy(() -> SplitEngine.percentages(10000, new long[]{5000, 4000}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void exactAndItemisedMustAddUpToTheTotal() {
+        assertThat(SplitEngine.exact(1000, new long[]{250, 750})).containsExactly(250, 750);
+        assertThatThrownBy(() -> SplitEngine.exact(1000, new long[]{250, 700}))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        // pizza 30.00 for all three, wine 10.01 for the first two
+        long[] shares = SplitEngine.itemised(4001, 3, new long[]{3000, 1001}, new int[]{0, 3, 5}, new int[]{0, 1, 2, 0, 1});
+        assertThat(shares).containsExactly(1501, 1500, 1000);
+        assertThatThrownBy(() -> SplitEngine.itemised(4000, 3, new long[]{3000, 1001}, new int[]{0, 3, 5}, new int[]{0, 1, 2, 0, 1}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void itemisedRoundsOnceOverTheWholeTotal() {
+        // 100 items of 0.01 shared by three: 33.33.. cents each, not 1.00 for the first member
+        long[] amounts = new long[100];
+        int[] offsets = new int[101];
+        int[] members = new int[300];
+        for (int i = 0; i < 100; i++) {
+            amounts[i] = 1;
+            offsets[i + 1] = 3 * (i + 1);
+            members[3 * i] = 0;
+            members[3 * i + 1] = 1;
+            members[3 * i + 2] = 2;
+        }
+        assertThat(SplitEngine.itemised(100, 3, amounts, offsets, members)).containsExactly(34, 33, 33);
+
+        // 0.01 for the first two, 0.01 for the last two: exact 0.5, 1, 0.5 cents
+        assertThat(SplitEngine.itemised(2, 3, new long[]{1, 1}, new int[]{0, 2, 4}, new int[]{0, 1, 1, 2}))
+                .containsExactly(1, 1, 0);
+    }
+
+    @Test
+    void itemisedStaysWithinACentOfExactForAnyGroupSizes() {
+        SplittableRandom random = new SplittableRandom(11);
+        for (int round = 0; round < 100; round++) {
+            // up to 60 distinct group sizes: their lcm overflows a long in later rounds
+            int n = 1 + random.nextInt(60);
+            int items = 1 + random.nextInt(80);
+            long[] amounts = new long[items];
+            int[] offsets = new int[items + 1];
+            int[][] groups = new int[items][];
+            for (int i = 0; i < items; i++) {
+                amounts[i] = random.nextLong(100_000);
+                int k = 1 + random.nextInt(n);
+                groups[i] = random.ints(0, n).distinct().limit(k).toArray();
+                offsets[i + 1] = offsets[i] + k;
+            }
+            int[] members = Arrays.stream(groups).flatMapToInt(Arrays::stream).toArray();
+            long total = Arrays.stream(amounts).sum();
+
+            long[] shares = SplitEngine.itemised(total, n, amounts, offsets, members);
+
+            assertThat(Arrays.stream(shares).sum()).isEqualTo(total);
+            BigDecimal[] exact = new BigDecimal[n];
+            Arrays.fill(exact, BigDecimal.ZERO);
+            for (int i = 0; i < items; i++) {
+                BigDecimal part = BigDecimal.valueOf(amounts[i]).divide(BigDecimal.valueOf(groups[i].length), MathContext.DECIMAL128);
+                for (int p : groups[i]) exact[p] = exact[p].add(part);
+            }
+            for (int p = 0; p < n; p++) {
+                assertThat(BigDecimal.valueOf(shares[p]).subtract(exact[p]).abs()).isLessThan(BigDecimal.ONE);
+            }
+        }
+    }
+
+    @Test
+    void sharesAlwaysAddUpAndStayWithinACentOfExact() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (int round = 0; round < 200; round++) {
+            int n = 1 + random.nextInt(50);
+            long total = random.nextLong(10_000_000);
+            long[] weights = new long[n];
+            for (int i = 0; i < n; i++) weights[i] = random.nextInt(4) == 0 ? 0 : 1 + random.nextLong(1000);
+            if (Arrays.stream(weights).sum() == 0) weights[0] = 1;
+
+            long[] shares = SplitEngine.weighted(total, weights);
+            long sum = Arrays.stream(weights).sum();
+            assertThat(Arrays.stream(shares).sum()).isEqualTo(total);
+            for (int i = 0; i < n; i++) {
+                double exact = (double) total * weights[i] / sum;
+                assertThat(Math.abs(shares[i] - exact)).isLessThan(1.0);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.splitwise.service;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Seeds users, events and splits straight into the tables, the way a long-lived
+ * database would hold them. Usernames get a random suffix so seeds never collide in the
+ * shared container; rows written here bypass the read models until
+ * {@link #rebuildBalances()}.
+ */
+class TestFixtures {
+
+    private final JdbcTemplate jdbc;
+    private final BalanceService balanceService;
+
+    TestFixtures(JdbcTemplate jdbc, BalanceService balanceService) {
+        this.jdbc = jdbc;
+        this.balanceService = balanceService;
+    }
+
+    long user(String name) {
+        String unique = name + "-" + UUID.randomUUID();
+        return jdbc.queryForObject(
+                "insert into users (username, email, password, mail_given, total) values (?, ?, 'x', true, 0) returning id",
+                Long.class, unique, unique + "@example.com");
+    }
+
+    // ids ascending
+    long[] users(String name, int count) {
+        String prefix = name + "-" + UUID.randomUUID() + "-";
+        return jdbc.queryForList("""
+                insert into users (username, email, password, mail_given, total)
+                select ? || g, ? || g || '@example.com', 'x', true, 0 from generate_series(1, ?) g
+                returning id
+                """, Long.class, prefix, prefix, count).stream().sorted().mapToLong(Long::longValue).toArray();
+    }
+
+    long event(long creator, String title, BigDecimal total) {
+        return event(creator, title, total, 0, false);
+    }
+
+    // created_at lies minutesAgo in the past, for tests that depend on event order
+    long event(long creator, String title, BigDecimal total, int minutesAgo, boolean cancelled) {
+        Long id = jdbc.queryForObject("select nextval('events_seq')", Long.class);
+        jdbc.update("insert into events (id, title, created_at, creator_id, total, cancelled) "
+                        + "values (?, ?, localtimestamp - make_interval(mins => ?), ?, ?, ?)",
+                id, title, minutesAgo, creator, total, cancelled);
+        return id;
+    }
+
+    long split(long user, long event, BigDecimal amount) {
+        return split(user, event, amount, BigDecimal.ZERO, false);
+    }
+
+    long split(long user, long event, BigDecimal amount, BigDecimal paid, boolean settled) {
+        Long id = jdbc.queryForObject("select nextval('debitors_seq')", Long.class);
+        jdbc.update("insert into debitors (id, user_id, event_id, deb_amount, amount_paid, settled, included, version) "
+                        + "values (?, ?, ?, ?, ?, ?, true, 0)",
+                id, user, event, amount, paid, settled);
+        return id;
+    }
+
+    void rebuildBalances() {
+        balanceService.rebuildAll();
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.splitwise.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Paging correctness on a small ledger, plus a seeded latency benchmark that only runs
+ * when asked for: {@code mvn test -Dtest=TransactionHistoryServiceTest -Dhistory.bench.rows=50000000}.
+ */
+@SpringBootTest(properties = {
+        "app.mail.outbox.enabled=false",
+        "ledger.snapshot.enabled=false",
+        "spring.jpa.show-sql=false",
+        "spring.datasource.hikari.maximum-pool-size=50"
+})
+@Import(PostgresTestConfiguration.class)
+@Testcontainers(disabledWithoutDocker = true)
+class TransactionHistoryServiceTest {
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Autowired
+    private TransactionHistoryService history;
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Test
+    void pagesThroughPaidAndReceivedNewestFirst() {
+        long[] users = fixtures.users("paging", 3);
+        long me = users[0], bob = users[1], carol = users[2];
+        // 30 payments: me -> bob, bob -> me, carol -> me, me -> me, several sharing a timestamp
+        for (int i = 0; i < 30; i++) {
+            long from = switch (i % 4) { case 0 -> me; case 1 -> bob; case 2 -> carol; default -> me; };
+            long to = switch (i % 4) { case 0 -> bob; case 3 -> me; default -> me; };
+            jdbc.update("insert into transactions (ts, from_user_id, to_user_id, amount, event_id) values (?, ?, ?, 1, ?)",
+                    EPOCH.plusMinutes(i / 3), from, to, (long) (i % 2));
+        }
+
+        List<TransactionView> all = drain(new TransactionHistoryService.Filter(me, null, null, null, null), 7);
+        assertThat(all).hasSize(30);
+        assertThat(all).extracting(TransactionView::id).doesNotHaveDuplicates();
+        for (int i = 1; i < all.size(); i++) {
+            TransactionView prev = all.get(i - 1), cur = all.get(i);
+            assertThat(prev.ts().isAfter(cur.ts()) || (prev.ts().equals(cur.ts()) && prev.id() > cur.id())).isTrue();
+        }
+
+        assertThat(drain(new TransactionHistoryService.Filter(me, bob, null, null, null), 4))
+                .hasSize(16)
+                .allMatch(t -> (t.fromUserId() == me && t.toUserId() == bob) || (t.fromUserId() == bob && t.toUserId() == me));
+        assertThat(drain(new TransactionHistoryService.Filter(me, null, 1L, null, null), 4))
+                .hasSize(15)
+                .allMatch(t -> t.eventId() == 1L);
+        assertThat(drain(new TransactionHistoryService.Filter(me, null, null, EPOCH.plusMinutes(2), EPOCH.plusMinutes(4)), 4))
+                .hasSize(6);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "history.bench.rows", matches = "\\d+")
+    void p99StaysUnderTwentyMillisOnALargeLedger() {
+        long rows = Long.getLong("history.bench.rows");
+        int userCount = (int) Math.max(1_000, rows / 500);
+        long[] users = fixtures.users("bench", userCount);
+        long firstUser = users[0];
+        for (long start = 0; start < rows; start += 1_000_000) {
+            jdbc.update("""
+                    insert into transactions (ts, from_user_id, to_user_id, amount, event_id, note)
+                    select ?::timestamp + g * interval '1 second',
+                           ? + floor(random() * ?)::bigint,
+                           ? + floor(random() * ?)::bigint,
+                           round((random() * 100)::numeric, 2),
+                           floor(random() * ?)::bigint,
+                           null
+                    from generate_series(?, ?) g
+                    """, EPOCH, firstUser, userCount, firstUser, userCount, rows / 20, start, Math.min(rows, start + 1_000_000) - 1);
+        }
+        jdbc.execute("analyze transactions");
+
+        // the plans must be index range scans whatever the table size
+        String plan = String.join("\n", jdbc.queryForList(
+                "explain select * from transactions t where t.from_user_id = " + firstUser
+                        + " and t.ts is not null order by t.ts desc, t.id desc limit 51", String.class));
+        assertThat(plan).doesNotContain("Seq Scan");
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 200; i++) query(random, users, firstUser, userCount); // warm-up
+
+        long[] nanos = new long[2_000];
+        for (int i = 0; i < nanos.length; i++) {
+            long t0 = System.nanoTime();
+            query(random, users, firstUser, userCount);
+            nanos[i] = System.nanoTime() - t0;
+        }
+        Arrays.sort(nanos);
+        double p99 = nanos[(int) (nanos.length * 0.99)] / 1e6;
+        assertThat(p99).isLessThan(20.0);
+    }
+
+    // one request of a random shape: plain history, second page, counterparty, event or time window
+    private void query(ThreadLocalRandom random, long[] users, long firstUser, int userCount) {
+        long user = users[random.nextInt(users.length)];
+        LocalDateTime from = EPOCH.plusSeconds(random.nextLong(Math.max(1, userCount * 400L)));
+        TransactionHistoryService.Filter filter = switch (random.nextInt(4)) {
+            case 0 -> new TransactionHistoryService.Filter(user, null, null, null, null);
+            case 1 -> new TransactionHistoryService.Filter(user, firstUser + random.nextInt(userCount), null, null, null);
+            case 2 -> new TransactionHistoryService.Filter(null, null, random.nextLong(Math.max(1, userCount * 25L)), null, null);
+            default -> new TransactionHistoryService.Filter(user, null, null, from, from.plusDays(30));
+        };
+        CursorPage<TransactionView> page = history.find(filter, null, null);
+        if (page.nextCursor() != null) history.find(filter, null, page.nextCursor());
+    }
+
+    private List<TransactionView> drain(TransactionHistoryService.Filter filter, int limit) {
+        List<TransactionView> out = new ArrayList<>();
+        String after = null;
+        do {
+            CursorPage<TransactionView> page = history.find(filter, limit, after);
+            assertThat(page.items().size()).isLessThanOrEqualTo(limit);
+            out.addAll(page.items());
+            after = page.nextCursor();
+        } while (after != null);
+        return out;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.splitwise.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * The dashboard queries against Postgres: what they map, and that they stay at two
+ * statements however much history the user has.
+ */
+@SpringBootTest(properties = {
+        "app.mail.outbox.enabled=false",
+        "ledger.snapshot.enabled=false",
+        "spring.jpa.show-sql=false",
+        "spring.datasource.hikari.maximum-pool-size=50"
+})
+@Import(PostgresTestConfiguration.class)
+@Testcontainers(disabledWithoutDocker = true)
+class UserDashboardServiceTest {
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private TestFixtures fixtures;
+
+    private final AtomicInteger statements = new AtomicInteger();
+
+    @Test
+    void mapsHeaderSplitsAndCreatedEvents() {
+        long ann = fixtures.user("ann");
+        long bob = fixtures.user("bob");
+        long dinner = fixtures.event(bob, "dinner", new BigDecimal("30.00"));
+        long annSplit = fixtures.split(ann, dinner, new BigDecimal("15.00"), new BigDecimal("7.50"), false);
+        fixtures.split(bob, dinner, new BigDecimal("15.00"), new BigDecimal("15.00"), true);
+        long taxi = fixtures.event(ann, "taxi", new BigDecimal("20.00"));
+        fixtures.split(bob, taxi, new BigDecimal("10.00"), new BigDecimal("4.00"), false);
+        fixtures.split(ann, taxi, new BigDecimal("10.00"), new BigDecimal("10.00"), true);
+        long cancelled = fixtures.event(ann, "cancelled", new BigDecimal("8.00"), 0, true);
+        fixtures.rebuildBalances();
+
+        UserDashboard d = countingService().getDashboard(ann);
+
+        assertThat(statements).hasValue(2);
+        assertThat(d.id()).isEqualTo(ann);
+        assertThat(d.username()).startsWith("ann-");
+        assertThat(d.email()).endsWith("@example.com");
+        assertThat(d.emailVerified()).isTrue();
+        assertThat(d.youOwe()).isEqualByComparingTo("7.50");
+        assertThat(d.owedToYou()).isEqualByComparingTo("6.00");
+        assertThat(d.net()).isEqualByComparingTo("-1.50");
+
+        assertThat(d.debitors()).hasSize(2);
+        UserDashboard.Split open = d.debitors().getFirst();
+        assertThat(open.id()).isEqualTo(annSplit);
+        assertThat(open.eventId()).isEqualTo(dinner);
+        assertThat(open.userId()).isEqualTo(ann);
+        assertThat(open.debAmount()).isEqualByComparingTo("15.00");
+        assertThat(open.amountPaid()).isEqualByComparingTo("7.50");
+        assertThat(open.remaining()).isEqualByComparingTo("7.50");
+        assertThat(open.included()).isTrue();
+        assertThat(open.settled()).isFalse();
+        UserDashboard.Split settled = d.debitors().get(1);
+        assertThat(settled.eventId()).isEqualTo(taxi);
+        assertThat(settled.remaining()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(settled.settled()).isTrue();
+
+        assertThat(d.events()).extracting(UserDashboard.CreatedEvent::id).containsExactly(taxi, cancelled);
+        UserDashboard.CreatedEvent created = d.events().getFirst();
+        assertThat(created.title()).isEqualTo("taxi");
+        assertThat(created.total()).isEqualByComparingTo("20.00");
+        assertThat(created.paid()).isEqualByComparingTo("14.00");
+        assertThat(created.cancelled()).isFalse();
+        assertThat(d.events().get(1).paid()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(d.events().get(1).cancelled()).isTrue();
+    }
+
+    @Test
+    void statementCountDoesNotGrowWithHistory() {
+        long ann = fixtures.user("ann");
+        long bob = fixtures.user("bob");
+        BigDecimal total = new BigDecimal("10.00"), share = new BigDecimal("5.00");
+        for (int i = 0; i < 200; i++) {
+            fixtures.split(ann, fixtures.event(bob, "owed-" + i, total), share, BigDecimal.ONE, false);
+            long created = fixtures.event(ann, "created-" + i, total);
+            fixtures.split(bob, created, share, new BigDecimal("2.00"), false);
+            fixtures.split(bob, created, share, new BigDecimal("3.00"), false);
+        }
+        fixtures.rebuildBalances();
+
+        UserDashboard d = countingService().getDashboard(ann);
+
+        assertThat(statements).hasValue(2);
+        assertThat(d.youOwe()).isEqualByComparingTo("800.00");
+        assertThat(d.debitors()).hasSize(200)
+                .allSatisfy(s -> assertThat(s.remaining()).isEqualByComparingTo("4.00"));
+        assertThat(d.events()).hasSize(200)
+                .allSatisfy(e -> assertThat(e.paid()).isEqualByComparingTo("5.00"));
+    }
+
+    @Test
+    void missingUserStopsAfterHeader() {
+        assertThat(countingService().getDashboard(-1L)).isNull();
+        assertThat(statements).hasValue(1);
+    }
+
+    private UserDashboardService countingService() {
+        return new UserDashboardService(new JdbcTemplate(new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection target = super.getConnection();
+                return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                            if (method.getName().startsWith("prepare") || method.getName().equals("createStatement")) {
+                                statements.incrementAndGet();
+                            }
+                            try {
+                                return method.invoke(target, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getTargetException();
+                            }
+                        });
+            }
+        }));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.splitwise.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class UserSummaryCacheTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final UserSummaryCache cache = new UserSummaryCache(100, Duration.ofMinutes(5), new SimpleMeterRegistry(),
+            nanos::get);
+
+    @Test
+    void readsThroughOnceUntilInvalidated() {
+        AtomicInteger loads = new AtomicInteger();
+        UserSummary alice = new UserSummary(1L, "alice", BigDecimal.TEN);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(cache.get(1L, id -> { loads.incrementAndGet(); return Optional.of(alice); }))
+                    .contains(alice);
+        }
+        assertThat(loads).hasValue(1);
+
+        cache.invalidate(1L);
+        cache.get(1L, id -> { loads.incrementAndGet(); return Optional.of(alice); });
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void renamedUserIsNotFoundUnderOldName() {
+        cache.get(1L, id -> Optional.of(new UserSummary(1L, "alice", BigDecimal.ZERO)));
+        assertThat(cache.getByUsername("ALICE", Optional::empty)).isPresent();
+
+        cache.invalidate(1L);
+        cache.get(1L, id -> Optional.of(new UserSummary(1L, "alicia", BigDecimal.ZERO)));
+
+        assertThat(cache.getByUsername("alice", Optional::empty)).isEmpty();
+        assertThat(cache.getByUsername("Alicia", Optional::empty)).map(UserSummary::id).contains(1L);
+    }
+
+    @Test
+    void loadThatRacedAnInvalidationIsNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+        UserSummary before = new UserSummary(1L, "alice", BigDecimal.ZERO);
+
+        // the writer commits and invalidates while this read still holds the old row
+        assertThat(cache.get(1L, id -> {
+            loads.incrementAndGet();
+            cache.invalidate(1L);
+            return Optional.of(before);
+        })).contains(before);
+
+        cache.get(1L, id -> { loads.incrementAndGet(); return Optional.of(before); });
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void entriesExpireAfterTtl() {
+        AtomicInteger loads = new AtomicInteger();
+        UserSummary alice = new UserSummary(1L, "alice", BigDecimal.ZERO);
+
+        cache.get(1L, id -> { loads.incrementAndGet(); return Optional.of(alice); });
+        nanos.addAndGet(Duration.ofMinutes(4).toNanos());
+        cache.get(1L, id -> { loads.incrementAndGet(); return Optional.of(alice); });
+        assertThat(loads).hasValue(1);
+
+        nanos.addAndGet(Duration.ofMinutes(2).toNanos());
+        cache.get(1L, id -> { loads.incrementAndGet(); return Optional.of(alice); });
+        assertThat(loads).hasValue(2);
+        assertThat(cache.getByUsername("alice", Optional::empty)).isPresent();
+    }
+
+    @Test
+    void missesAreNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(9L, id -> { loads.incrementAndGet(); return Optional.empty(); });
+        cache.get(9L, id -> { loads.incrementAndGet(); return Optional.empty(); });
+        assertThat(loads).hasValue(2);
+    }
+}
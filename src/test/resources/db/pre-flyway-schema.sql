@@ -0,0 +1,88 @@
+-- The schema as the pre-Flyway application left it: generated by Hibernate
+-- (ddl-auto=update, PostgreSQLDialect) from the original User, Event, Debitor and
+-- Transaction entities, plus a little data. Used to test upgrading such a database.
+
+create table debitors (
+    amount_paid numeric(15,2),
+    deb_amount numeric(15,2),
+    included boolean not null,
+    settled boolean not null,
+    event_id bigint,
+    id bigint generated by default as identity,
+    paid_at timestamp(6),
+    user_id bigint,
+    version bigint,
+    primary key (id)
+);
+
+create table events (
+    cancelled boolean not null,
+    total numeric(15,2),
+    created_at timestamp(6),
+    creator_id bigint,
+    id bigint generated by default as identity,
+    title varchar(255),
+    primary key (id)
+);
+
+create table transactions (
+    amount numeric(15,2),
+    event_id bigint,
+    from_user_id bigint,
+    id bigint generated by default as identity,
+    to_user_id bigint,
+    ts timestamp(6),
+    note varchar(255),
+    primary key (id)
+);
+
+create table users (
+    mail_given boolean,
+    total numeric(15,2),
+    id bigint generated by default as identity,
+    verification_expires_at timestamp(6),
+    email varchar(255),
+    password varchar(255) not null,
+    username varchar(255) unique,
+    verification_token varchar(255),
+    primary key (id)
+);
+
+alter table if exists debitors 
+   add constraint FKjgaw33w90tlagfojiixemfq5r 
+   foreign key (event_id) 
+   references events;
+
+alter table if exists debitors 
+   add constraint FKaahhrk0b528wpdpbaur6rnnt7 
+   foreign key (user_id) 
+   references users;
+
+alter table if exists events 
+   add constraint FK7ljm71n1057envlomdxcni5hs 
+   foreign key (creator_id) 
+   references users;
+
+alter table if exists transactions 
+   add constraint FKpkf4bjq8dbuyxt0qfvbcmm7d 
+   foreign key (from_user_id) 
+   references users;
+
+alter table if exists transactions 
+   add constraint FKyud5vx71vhc179ney0pdat27 
+   foreign key (to_user_id) 
+   references users;
+
+insert into users (username, email, password, mail_given, total) values
+    ('ann', 'ann@example.com', 'x', true, 0),
+    ('bob', 'bob@example.com', 'x', true, 0),
+    ('cat', 'cat@example.com', 'x', true, 0);
+
+-- ann paid 90.00 for dinner split three ways; bob has paid 10.00 of his share
+insert into events (title, created_at, creator_id, total, cancelled) values ('dinner', localtimestamp, 1, 90.00, false);
+insert into debitors (user_id, event_id, deb_amount, amount_paid, settled, included, version) values
+    (1, 1, 30.00, 30.00, true, true, 0),
+    (2, 1, 30.00, 10.00, false, true, 0),
+    (3, 1, 30.00, 0.00, false, true, 0);
+insert into transactions (ts, from_user_id, to_user_id, amount, event_id, note) values
+    (localtimestamp, 2, 1, 10.00, 1, 'part of dinner');